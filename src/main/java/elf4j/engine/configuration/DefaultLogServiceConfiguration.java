@@ -27,6 +27,7 @@ package elf4j.engine.configuration;
 
 import elf4j.Level;
 import elf4j.engine.NativeLogger;
+import elf4j.engine.service.WriterThread;
 import elf4j.engine.writer.LogWriter;
 import elf4j.util.InternalLogger;
 import lombok.ToString;
@@ -35,24 +36,33 @@ import javax.annotation.Nullable;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
  */
 @ToString
 public class DefaultLogServiceConfiguration implements LogServiceConfiguration {
+    private static final long DEFAULT_SHUTDOWN_TIMEOUT_MILLIS = 5000;
+    private static final String SHUTDOWN_HOOK_THREAD_NAME = "elf4j-engine-shutdown";
     private final Map<NativeLogger, Boolean> loggerConfigurationCache = new ConcurrentHashMap<>();
     private final PropertiesLoader propertiesLoader;
     private boolean noop;
     private CallerLevelRepository callerLevelRepository;
     private WriterRepository writerRepository;
+    private long shutdownTimeoutMillis = DEFAULT_SHUTDOWN_TIMEOUT_MILLIS;
 
     /**
-     *
+     * Unless the <code>shutdown.hook</code> property is set to false, also registers a JVM shutdown hook that shuts
+     * down the writers of the configuration current at JVM exit
      */
     public DefaultLogServiceConfiguration() {
         this.propertiesLoader = new PropertiesLoader();
-        setRepositories(this.propertiesLoader.load());
+        Properties properties = this.propertiesLoader.load();
+        setRepositories(properties);
+        if (properties == null || !"false".equalsIgnoreCase(properties.getProperty("shutdown.hook", "").trim())) {
+            Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, SHUTDOWN_HOOK_THREAD_NAME));
+        }
     }
 
     DefaultLogServiceConfiguration(CallerLevelRepository callerLevelRepository, WriterRepository writerRepository) {
@@ -71,13 +81,35 @@ public class DefaultLogServiceConfiguration implements LogServiceConfiguration {
         if (this.noop) {
             return false;
         }
+        Boolean enabled = this.loggerConfigurationCache.get(nativeLogger);
+        if (enabled != null) {
+            return enabled;
+        }
         return this.loggerConfigurationCache.computeIfAbsent(nativeLogger, this::loadLoggerConfigurationCache);
     }
 
     @Override
     public void refresh(@Nullable Properties properties) {
+        WriterRepository replaced = this.writerRepository;
         setRepositories(properties != null ? properties : this.propertiesLoader.load());
         this.loggerConfigurationCache.clear();
+        shutdown(replaced);
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown(this.writerRepository);
+    }
+
+    private void shutdown(WriterRepository writerRepository) {
+        WriterThread.DrainCounts drainCounts =
+                writerRepository.shutdown(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMillis));
+        if (drainCounts.getAbandoned() > 0) {
+            InternalLogger.INSTANCE.log(Level.WARN,
+                    "Log entries abandoned at shutdown deadline of " + shutdownTimeoutMillis + " ms: " + drainCounts);
+        } else if (drainCounts.getWritten() > 0) {
+            InternalLogger.INSTANCE.log(Level.INFO, "Log entries drained at shutdown: " + drainCounts);
+        }
     }
 
     private boolean loadLoggerConfigurationCache(NativeLogger nativeLogger) {
@@ -94,6 +126,9 @@ public class DefaultLogServiceConfiguration implements LogServiceConfiguration {
         if (this.noop) {
             InternalLogger.INSTANCE.log(Level.WARN, "No-op per configuration");
         }
+        String shutdownTimeout = properties == null ? null : properties.getProperty("shutdown.timeout");
+        this.shutdownTimeoutMillis =
+                shutdownTimeout == null ? DEFAULT_SHUTDOWN_TIMEOUT_MILLIS : Long.parseLong(shutdownTimeout.trim());
         this.callerLevelRepository = CallerLevelRepository.from(properties);
         this.writerRepository = WriterRepository.from(properties);
     }
@@ -55,4 +55,10 @@ public interface LogServiceConfiguration {
      *         and configuration file is ignored.
      */
     void refresh(@Nullable Properties properties);
+
+    /**
+     * Shuts down the writer threads of the current writers, draining their pending entries within the configured
+     * deadline, and flushes the writers
+     */
+    void shutdown();
 }
@@ -26,8 +26,8 @@
 package elf4j.engine.configuration;
 
 import elf4j.Level;
+import elf4j.engine.service.WriterThread;
 import elf4j.engine.writer.LogWriter;
-import elf4j.engine.writer.StandardStreamsWriter;
 import elf4j.engine.writer.WriterGroup;
 import elf4j.util.InternalLogger;
 
@@ -39,10 +39,9 @@ import java.util.Properties;
  *
  */
 public class WriterRepository {
-    private static final LogWriter DEFAULT_WRITER = StandardStreamsWriter.defaultWriter();
-    private final LogWriter logServiceWriter;
+    private final WriterGroup logServiceWriter;
 
-    private WriterRepository(LogWriter logServiceWriter) {
+    private WriterRepository(WriterGroup logServiceWriter) {
         this.logServiceWriter = logServiceWriter;
     }
 
@@ -53,7 +52,7 @@ public class WriterRepository {
     static @Nonnull WriterRepository from(@Nullable Properties properties) {
         if (properties == null) {
             InternalLogger.INSTANCE.log(Level.INFO, "No configuration, taking default writer");
-            return new WriterRepository(DEFAULT_WRITER);
+            return new WriterRepository(WriterGroup.withDefaultWriter(new Properties()));
         }
         WriterGroup writerGroup = WriterGroup.from(properties);
         if (writerGroup.size() > 0) {
@@ -61,10 +60,21 @@ public class WriterRepository {
             return new WriterRepository(writerGroup);
         }
         InternalLogger.INSTANCE.log(Level.WARN, "No writer configured, falling back to default writer");
-        return new WriterRepository(DEFAULT_WRITER);
+        return new WriterRepository(WriterGroup.withDefaultWriter(properties));
     }
 
     LogWriter getLogServiceWriter() {
         return logServiceWriter;
     }
+
+    /**
+     * Shuts down the writer threads of the writers in this repo, and closes the writers
+     *
+     * @param deadlineNanos
+     *         the {@link System#nanoTime()} by which to stop writing out pending entries
+     * @return numbers of entries written out and abandoned after the shutdown
+     */
+    WriterThread.DrainCounts shutdown(long deadlineNanos) {
+        return logServiceWriter.shutdown(deadlineNanos);
+    }
 }
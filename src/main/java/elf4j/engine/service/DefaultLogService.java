@@ -28,13 +28,12 @@ package elf4j.engine.service;
 import elf4j.engine.NativeLogger;
 import elf4j.engine.configuration.DefaultLogServiceConfiguration;
 import elf4j.engine.configuration.LogServiceConfiguration;
+import elf4j.engine.configuration.PropertiesLoader;
 import elf4j.engine.util.StackTraceUtils;
-import lombok.NonNull;
 
+import javax.annotation.Nullable;
 import java.util.Objects;
 import java.util.Properties;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  *
@@ -42,17 +41,35 @@ import java.util.concurrent.Executors;
 public class DefaultLogService implements LogService {
     private final LogServiceConfiguration logServiceConfiguration;
     private final WriterThread writerThread;
+    @Nullable private final LogEntryPool logEntryPool;
+    /**
+     * Caller thread information, only cached in the garbage-free mode, where a thread renamed after its first log call
+     * keeps its original name in the log
+     */
+    private final ThreadLocal<LogEntry.ThreadInformation> callerThreads =
+            ThreadLocal.withInitial(DefaultLogService::currentThreadInformation);
 
     /**
      *
      */
     public DefaultLogService() {
-        this(ServiceConfigurationHolder.INSTANCE, WriterThreadHolder.INSTANCE);
+        this(ServiceConfigurationHolder.INSTANCE, WriterThreadHolder.INSTANCE, LogEntryPoolHolder.INSTANCE);
     }
 
     DefaultLogService(LogServiceConfiguration logServiceConfiguration, WriterThread writerThread) {
+        this(logServiceConfiguration, writerThread, null);
+    }
+
+    /**
+     * @param logEntryPool
+     *         to fill the log entries from in the garbage-free mode, or null to build a new entry per log call
+     */
+    DefaultLogService(LogServiceConfiguration logServiceConfiguration,
+            WriterThread writerThread,
+            @Nullable LogEntryPool logEntryPool) {
         this.logServiceConfiguration = logServiceConfiguration;
         this.writerThread = writerThread;
+        this.logEntryPool = logEntryPool;
     }
 
     static void refreshConfiguration(Properties properties) {
@@ -61,6 +78,7 @@ public class DefaultLogService implements LogService {
 
     static void shutdown() {
         WriterThreadHolder.INSTANCE.shutdown();
+        ServiceConfigurationHolder.INSTANCE.shutdown();
     }
 
     @Override
@@ -87,41 +105,45 @@ public class DefaultLogService implements LogService {
         if (!logServiceConfiguration.isEnabled(nativeLogger)) {
             return;
         }
+        if (logEntryPool != null) {
+            logGarbageFree(logEntryPool, nativeLogger, serviceInterfaceClass, exception, message, args);
+            return;
+        }
         LogEntry.LogEntryBuilder logEntryBuilder =
                 LogEntry.builder().nativeLogger(nativeLogger).exception(exception).message(message).arguments(args);
         if (this.includeCallerDetail()) {
             logEntryBuilder.callerFrame(StackTraceUtils.callerOf(Objects.requireNonNull(serviceInterfaceClass)));
         }
         if (this.includeCallerThread()) {
-            Thread callerThread = Thread.currentThread();
-            logEntryBuilder.callerThread(new LogEntry.ThreadInformation(callerThread.getName(), callerThread.getId()));
+            logEntryBuilder.callerThread(currentThreadInformation());
         }
-        writerThread.execute(() -> logServiceConfiguration.getLogServiceWriter().write(logEntryBuilder.build()));
+        writerThread.write(logEntryBuilder.build(), logServiceConfiguration.getLogServiceWriter());
     }
 
-    /**
-     *
-     */
-    private static class ExecutorServiceWriterThread implements WriterThread {
-        private final ExecutorService executorService;
-
-        /**
-         * @param executorService
-         *         service delegate
-         */
-        public ExecutorServiceWriterThread(ExecutorService executorService) {
-            this.executorService = executorService;
-        }
-
-        @Override
-        public void shutdown() {
-            this.executorService.shutdown();
+    private void logGarbageFree(LogEntryPool logEntryPool,
+            NativeLogger nativeLogger,
+            Class<?> serviceInterfaceClass,
+            Throwable exception,
+            Object message,
+            Object[] args) {
+        LogEntry logEntry = logEntryPool.acquire();
+        logEntry.fill(nativeLogger,
+                exception,
+                message,
+                args,
+                this.includeCallerDetail() ?
+                        StackTraceUtils.callerOf(Objects.requireNonNull(serviceInterfaceClass)) : null,
+                this.includeCallerThread() ? callerThreads.get() : null);
+        try {
+            writerThread.write(logEntry, logServiceConfiguration.getLogServiceWriter());
+        } finally {
+            logEntry.release();
         }
+    }
 
-        @Override
-        public void execute(@NonNull Runnable command) {
-            this.executorService.execute(command);
-        }
+    private static LogEntry.ThreadInformation currentThreadInformation() {
+        Thread callerThread = Thread.currentThread();
+        return new LogEntry.ThreadInformation(callerThread.getName(), callerThread.getId());
     }
 
     private static class ServiceConfigurationHolder {
@@ -129,9 +151,10 @@ public class DefaultLogService implements LogService {
     }
 
     private static class WriterThreadHolder {
-        private static final ExecutorService SINGLE_THREAD_EXECUTOR =
-                Executors.newSingleThreadExecutor(r -> new Thread(r, "elf4j-engine-writer-thread"));
-        private static final ExecutorServiceWriterThread INSTANCE =
-                new ExecutorServiceWriterThread(SINGLE_THREAD_EXECUTOR);
+        private static final WriterThread INSTANCE = new SynchronousWriterThread();
+    }
+
+    private static class LogEntryPoolHolder {
+        @Nullable private static final LogEntryPool INSTANCE = LogEntryPool.from(new PropertiesLoader().load());
     }
 }
@@ -0,0 +1,79 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.service;
+
+import elf4j.engine.writer.LogWriter;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Bounded buffer of log entries, each with the writer to write it with, between the logging caller threads and a
+ * writer thread
+ */
+interface EntryBuffer {
+    /**
+     * @param logEntry
+     *         to enqueue
+     * @param logWriter
+     *         to write the entry with
+     * @return false if the buffer is full
+     */
+    boolean offer(LogEntry logEntry, LogWriter logWriter);
+
+    /**
+     * @return the oldest entry, whose writer is left behind, or null if the buffer is empty
+     */
+    @Nullable
+    LogEntry poll();
+
+    /**
+     * @param logEntries
+     *         to add drained entries to, in order
+     * @param logWriters
+     *         to add the writers of the drained entries to, in the same order
+     * @param limit
+     *         max number of entries to drain
+     * @return number of entries drained, zero if the buffer is empty
+     */
+    int drain(List<LogEntry> logEntries, List<LogWriter> logWriters, int limit);
+
+    /**
+     * @return true if no entry has been claimed by producers beyond the consumed ones; producers may still be in the
+     *         middle of publishing claimed entries
+     */
+    boolean isEmpty();
+
+    /**
+     * @return approximate number of entries in the buffer
+     */
+    int size();
+
+    /**
+     * @return max number of entries the buffer holds
+     */
+    int capacity();
+}
@@ -27,32 +27,81 @@ package elf4j.engine.service;
 
 import elf4j.engine.NativeLogger;
 import lombok.Builder;
+import lombok.Getter;
 import lombok.NonNull;
+import lombok.ToString;
 import lombok.Value;
 
 import javax.annotation.Nullable;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.function.Supplier;
 
 /**
  * Source content data to be rendered to a final log message
+ * <p>
+ * Entries made by the {@link #builder()} are never changed after build. Entries acquired from a {@link LogEntryPool}
+ * in garbage-free mode are recycled once released by all their holders, so a writer must not keep a reference to the
+ * entry beyond the write call.
  */
-@Value
-@Builder
+@ToString(onlyExplicitlyIncluded = true)
 public class LogEntry {
     private static final int ADDITIONAL_STRING_BUILDER_CAPACITY = 32;
-    @NonNull NativeLogger nativeLogger;
-    @NonNull Instant timestamp = Instant.now();
-    @Nullable Object message;
-    @Nullable Object[] arguments;
-    @Nullable Throwable exception;
-    @Nullable StackTraceFrame callerFrame;
-    @Nullable ThreadInformation callerThread;
-
-    private static @NonNull CharSequence resolve(Object msg, Object[] arguments) {
+    private static final AtomicIntegerFieldUpdater<LogEntry> REFERENCES =
+            AtomicIntegerFieldUpdater.newUpdater(LogEntry.class, "references");
+    @Nullable private final LogEntryPool pool;
+    @Nullable private final Object[] argumentSlots;
+    private volatile int references;
+    private long epochMilli;
+    private int nanoOfMilli;
+    private int argumentCount;
+    @ToString.Include @Getter private NativeLogger nativeLogger;
+    @ToString.Include private Instant timestamp;
+    @ToString.Include @Getter @Nullable private Object message;
+    @ToString.Include @Nullable private Object[] arguments;
+    @ToString.Include @Getter @Nullable private Throwable exception;
+    @ToString.Include @Getter @Nullable private StackTraceFrame callerFrame;
+    @ToString.Include @Getter @Nullable private ThreadInformation callerThread;
+
+    @Builder
+    private LogEntry(@NonNull NativeLogger nativeLogger,
+            @Nullable Object message,
+            @Nullable Object[] arguments,
+            @Nullable Throwable exception,
+            @Nullable StackTraceFrame callerFrame,
+            @Nullable ThreadInformation callerThread,
+            @Nullable Instant timestamp) {
+        this.pool = null;
+        this.argumentSlots = null;
+        this.nativeLogger = nativeLogger;
+        this.timestamp = timestamp == null ? Instant.now() : timestamp;
+        this.epochMilli = this.timestamp.toEpochMilli();
+        this.nanoOfMilli = this.timestamp.getNano() % 1_000_000;
+        this.message = message;
+        this.arguments = arguments;
+        this.argumentCount = arguments == null ? 0 : arguments.length;
+        this.exception = exception;
+        this.callerFrame = callerFrame;
+        this.callerThread = callerThread;
+    }
+
+    /**
+     * @param pool
+     *         to return this entry to once released
+     * @param maxArguments
+     *         max number of arguments copied into the preallocated argument slots; more arguments are referenced
+     *         as-is
+     */
+    LogEntry(@NonNull LogEntryPool pool, int maxArguments) {
+        this.pool = pool;
+        this.argumentSlots = new Object[maxArguments];
+    }
+
+    private static @NonNull CharSequence resolve(Object msg, Object[] arguments, int argumentCount) {
         String message = Objects.toString(supply(msg), "");
-        if (arguments == null || arguments.length == 0) {
+        if (arguments == null || argumentCount == 0) {
             return message;
         }
         int messageLength = message.length();
@@ -61,7 +110,7 @@ public class LogEntry {
         int j = 0;
         while (i < messageLength) {
             char character = message.charAt(i);
-            if (character == '{' && ((i + 1) < messageLength && message.charAt(i + 1) == '}') && j < arguments.length) {
+            if (character == '{' && ((i + 1) < messageLength && message.charAt(i + 1) == '}') && j < argumentCount) {
                 resolved.append(supply(arguments[j++]));
                 i += 2;
             } else {
@@ -87,7 +136,105 @@ public class LogEntry {
      * @return log message text with all placeholder arguments resolved and replaced by final values
      */
     public CharSequence getResolvedMessage() {
-        return resolve(this.message, this.arguments);
+        return resolve(this.message, this.arguments, this.argumentCount);
+    }
+
+    /**
+     * @return time of the log call, created on first access for a pooled entry
+     */
+    public @NonNull Instant getTimestamp() {
+        if (timestamp == null) {
+            timestamp = Instant.ofEpochMilli(epochMilli);
+        }
+        return timestamp;
+    }
+
+    /**
+     * @return time of the log call in milliseconds since epoch, without creating the timestamp instant
+     */
+    public long getEpochMilli() {
+        return epochMilli;
+    }
+
+    /**
+     * @return nanoseconds of the log call time within its millisecond, always zero for a pooled entry, whose time has
+     *         only millisecond precision
+     */
+    public int getNanoOfMilli() {
+        return nanoOfMilli;
+    }
+
+    /**
+     * @return the message arguments, copied out of the argument slots for a pooled entry
+     */
+    public @Nullable Object[] getArguments() {
+        if (arguments == null || (arguments != argumentSlots && arguments.length == argumentCount)) {
+            return arguments;
+        }
+        return Arrays.copyOf(arguments, argumentCount);
+    }
+
+    /**
+     * Fills this pooled entry on the logging caller thread, without allocation if the arguments fit in the argument
+     * slots.
+     */
+    void fill(@NonNull NativeLogger nativeLogger,
+            @Nullable Throwable exception,
+            @Nullable Object message,
+            @Nullable Object[] arguments,
+            @Nullable StackTraceFrame callerFrame,
+            @Nullable ThreadInformation callerThread) {
+        this.nativeLogger = nativeLogger;
+        this.epochMilli = System.currentTimeMillis();
+        this.nanoOfMilli = 0;
+        this.message = message;
+        if (arguments == null || argumentSlots == null || arguments.length > argumentSlots.length) {
+            this.arguments = arguments;
+        } else {
+            System.arraycopy(arguments, 0, argumentSlots, 0, arguments.length);
+            this.arguments = argumentSlots;
+        }
+        this.argumentCount = arguments == null ? 0 : arguments.length;
+        this.exception = exception;
+        this.callerFrame = callerFrame;
+        this.callerThread = callerThread;
+    }
+
+    /**
+     * Sets the number of holders of a freshly acquired pooled entry to one, the acquiring caller
+     */
+    void acquired() {
+        REFERENCES.set(this, 1);
+    }
+
+    /**
+     * Adds a holder that will {@link #release()} this entry later on; no-op unless pooled
+     */
+    void retain() {
+        if (pool != null) {
+            REFERENCES.incrementAndGet(this);
+        }
+    }
+
+    /**
+     * Removes a holder, and returns this entry to its pool after the last holder is gone; no-op unless pooled
+     */
+    void release() {
+        if (pool == null || REFERENCES.decrementAndGet(this) != 0) {
+            return;
+        }
+        nativeLogger = null;
+        timestamp = null;
+        message = null;
+        if (argumentSlots != null) {
+            Arrays.fill(argumentSlots, 0, Math.min(argumentCount, argumentSlots.length), null);
+        }
+        arguments = null;
+        argumentCount = 0;
+        exception = null;
+        callerFrame = null;
+        callerThread = null;
+        pool.recycle(this);
     }
 
     /**
@@ -0,0 +1,113 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.service;
+
+import elf4j.Level;
+import elf4j.util.InternalLogger;
+import lombok.ToString;
+
+import javax.annotation.Nullable;
+import java.util.Properties;
+
+/**
+ * Preallocated, reusable log entries for the garbage-free mode, where each log call fills a pooled entry instead of
+ * building a new one. An entry returns to the pool once released by the logging caller and all writer threads holding
+ * it. The pool never blocks: if it runs dry, a new entry is allocated, and is kept if there is room when released.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+class LogEntryPool {
+    private static final int DEFAULT_SIZE = 32768;
+    private static final int DEFAULT_MAX_ARGUMENTS = 10;
+    private final RingBuffer freeEntries;
+    @ToString.Include private final int maxArguments;
+
+    /**
+     * @param size
+     *         number of preallocated entries, rounded up to the next power of two
+     * @param maxArguments
+     *         max number of message arguments an entry holds without allocation
+     */
+    LogEntryPool(int size, int maxArguments) {
+        if (maxArguments < 0) {
+            throw new IllegalArgumentException("max arguments: " + maxArguments);
+        }
+        this.freeEntries = new RingBuffer(size);
+        this.maxArguments = maxArguments;
+        for (int i = 0; i < freeEntries.capacity(); i++) {
+            freeEntries.offer(new LogEntry(this, maxArguments), null);
+        }
+    }
+
+    /**
+     * @param properties
+     *         configuration source, taking the <code>garbage-free</code>, <code>garbage-free.pool-size</code>, and
+     *         <code>garbage-free.max-arguments</code> entries if present
+     * @return pool per the specified configuration, or null if the garbage-free mode is not enabled
+     */
+    static @Nullable LogEntryPool from(@Nullable Properties properties) {
+        if (properties == null || !Boolean.parseBoolean(properties.getProperty("garbage-free", "").trim())) {
+            return null;
+        }
+        String size = properties.getProperty("garbage-free.pool-size");
+        String maxArguments = properties.getProperty("garbage-free.max-arguments");
+        LogEntryPool logEntryPool = new LogEntryPool(size == null ? DEFAULT_SIZE : Integer.parseInt(size.trim()),
+                maxArguments == null ? DEFAULT_MAX_ARGUMENTS : Integer.parseInt(maxArguments.trim()));
+        InternalLogger.INSTANCE.log(Level.INFO, "Configured garbage-free log entry pool: " + logEntryPool);
+        return logEntryPool;
+    }
+
+    /**
+     * @return a free entry, held by the caller until released
+     */
+    LogEntry acquire() {
+        LogEntry logEntry = freeEntries.poll();
+        if (logEntry == null) {
+            logEntry = new LogEntry(this, maxArguments);
+        }
+        logEntry.acquired();
+        return logEntry;
+    }
+
+    /**
+     * @param logEntry
+     *         released by all its holders, dropped if the pool is already full
+     */
+    void recycle(LogEntry logEntry) {
+        freeEntries.offer(logEntry, null);
+    }
+
+    @ToString.Include
+    int size() {
+        return freeEntries.capacity();
+    }
+
+    /**
+     * @return approximate number of free entries
+     */
+    int available() {
+        return freeEntries.size();
+    }
+}
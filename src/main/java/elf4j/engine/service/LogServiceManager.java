@@ -51,7 +51,9 @@ public class LogServiceManager {
     }
 
     /**
-     *
+     * Shuts down the writer threads, writing out their pending entries until the configured
+     * <code>shutdown.timeout</code>, and flushes the writers. Also done by the JVM shutdown hook, unless disabled by
+     * <code>shutdown.hook=false</code>.
      */
     public static void shutdown() {
         DefaultLogService.shutdown();
@@ -0,0 +1,151 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.service;
+
+import elf4j.Level;
+import elf4j.engine.writer.LogWriter;
+import elf4j.util.InternalLogger;
+import lombok.NonNull;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Spreads the handed-off log entries over a pool of writer threads. Each entry goes to the partition selected by its
+ * {@link Partitioning} key, so entries of the same key are written in the order they were handed off, while entries of
+ * different keys are written in parallel.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+public class PartitionedWriterThread implements WriterThread {
+    private static final Partitioning DEFAULT_PARTITIONING = Partitioning.LOGGER;
+    @ToString.Include private final Partitioning partitioning;
+    @ToString.Include private final WriterThread[] partitions;
+
+    PartitionedWriterThread(@NonNull Partitioning partitioning, @NonNull WriterThread[] partitions) {
+        if (partitions.length == 0) {
+            throw new IllegalArgumentException("No partitions");
+        }
+        this.partitioning = partitioning;
+        this.partitions = partitions;
+    }
+
+    /**
+     * @param properties
+     *         configuration source, taking the <code>async.threads</code> and <code>async.partition</code> entries, as
+     *         well as those of {@link RingBufferWriterThread#from(Properties)} for each partition
+     * @param threadName
+     *         name prefix of the partitions' consumer threads
+     * @return pool of ring buffer writer threads per the specified configuration
+     */
+    public static @Nonnull PartitionedWriterThread from(@Nullable Properties properties, @NonNull String threadName) {
+        Properties configuration = properties == null ? new Properties() : properties;
+        int threads = threads(configuration);
+        if (threads < 1) {
+            throw new IllegalArgumentException("async.threads: " + threads);
+        }
+        String partition = configuration.getProperty("async.partition");
+        WriterThread[] partitions = new WriterThread[threads];
+        for (int i = 0; i < threads; i++) {
+            partitions[i] = RingBufferWriterThread.from(configuration, threadName + "-" + (i + 1));
+        }
+        PartitionedWriterThread partitionedWriterThread = new PartitionedWriterThread(
+                partition == null ? DEFAULT_PARTITIONING : Partitioning.from(partition), partitions);
+        InternalLogger.INSTANCE.log(Level.INFO, "Configured writer thread pool: " + partitionedWriterThread);
+        return partitionedWriterThread;
+    }
+
+    /**
+     * @param properties
+     *         configuration source
+     * @return the configured <code>async.threads</code>, or 1 if not configured
+     */
+    public static int threads(@NonNull Properties properties) {
+        String threads = properties.getProperty("async.threads");
+        return threads == null ? 1 : Integer.parseInt(threads.trim());
+    }
+
+    @Override
+    public void write(@NonNull LogEntry logEntry, @NonNull LogWriter logWriter) {
+        partitions[partitioning.partitionOf(logEntry, partitions.length)].write(logEntry, logWriter);
+    }
+
+    @Override
+    public void shutdown() {
+        Arrays.stream(partitions).forEach(WriterThread::shutdown);
+    }
+
+    @Override
+    public DrainCounts shutdown(long deadlineNanos) {
+        shutdown();
+        DrainCounts drainCounts = DrainCounts.NONE;
+        for (WriterThread partition : partitions) {
+            drainCounts = drainCounts.plus(partition.shutdown(deadlineNanos));
+        }
+        return drainCounts;
+    }
+
+    int partitions() {
+        return partitions.length;
+    }
+
+    /**
+     * Key that decides which partition an entry goes to
+     */
+    enum Partitioning {
+        /**
+         * Entries of the same logger owner class go to the same partition
+         */
+        LOGGER {
+            @Override
+            int keyOf(LogEntry logEntry) {
+                return logEntry.getNativeLogger().getOwnerClassName().hashCode();
+            }
+        },
+        /**
+         * Entries of the same logging caller thread go to the same partition
+         */
+        THREAD {
+            @Override
+            int keyOf(LogEntry logEntry) {
+                return Long.hashCode(Thread.currentThread().getId());
+            }
+        };
+
+        static Partitioning from(@NonNull String partitioning) {
+            return valueOf(partitioning.trim().toUpperCase());
+        }
+
+        abstract int keyOf(LogEntry logEntry);
+
+        int partitionOf(LogEntry logEntry, int partitions) {
+            int key = keyOf(logEntry);
+            return Math.floorMod(key ^ (key >>> 16), partitions);
+        }
+    }
+}
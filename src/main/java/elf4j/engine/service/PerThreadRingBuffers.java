@@ -0,0 +1,224 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.service;
+
+import elf4j.engine.writer.LogWriter;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One {@link RingBuffer} per producer thread, so that producers never contend with each other, only with the single
+ * consumer on their own buffer.
+ * <p>
+ * Each buffer has a single producer, which publishes without CAS. The consumer merges the buffers by log call time,
+ * keeping the order of each producer: it looks ahead only at the head entry of each buffer, and always takes the
+ * earliest. Entries logged within the same millisecond by different threads, or published after a later entry of
+ * another thread has been taken, may be written in any order relative to each other. The buffer of a terminated thread
+ * is dropped once empty.
+ */
+class PerThreadRingBuffers implements EntryBuffer {
+    private static final ProducerBuffer[] NO_BUFFERS = new ProducerBuffer[0];
+    private final int capacity;
+    private final ThreadLocal<RingBuffer> producerBuffers = ThreadLocal.withInitial(this::register);
+    private volatile ProducerBuffer[] buffers = NO_BUFFERS;
+    private RingBuffer[] heapBuffers = new RingBuffer[0];
+    private long[] heapKeys = new long[0];
+    private int heapSize;
+
+    /**
+     * @param capacity
+     *         number of slots in the buffer of each producer thread, rounded up to the next power of two
+     */
+    PerThreadRingBuffers(int capacity) {
+        this.capacity = new RingBuffer(capacity).capacity();
+    }
+
+    @Override
+    public boolean offer(LogEntry logEntry, LogWriter logWriter) {
+        return producerBuffers.get().offer(logEntry, logWriter);
+    }
+
+    /**
+     * @return the oldest entry of the calling producer thread, or null if its buffer is empty
+     */
+    @Override
+    public @Nullable LogEntry poll() {
+        return producerBuffers.get().poll();
+    }
+
+    /**
+     * Keeps the producer buffers in a min-heap by the log call time of their head entries, and repeatedly claims from
+     * the earliest buffer the run of entries up to the head time of the next, with a single CAS per run. The order
+     * holds across batches as well: a producer with a full buffer cannot push older entries of other producers into a
+     * later batch.
+     */
+    @Override
+    public int drain(List<LogEntry> logEntries, List<LogWriter> logWriters, int limit) {
+        ProducerBuffer[] current = buffers;
+        int count = current.length;
+        if (count == 0) {
+            return 0;
+        }
+        if (heapBuffers.length < count) {
+            heapBuffers = new RingBuffer[count];
+            heapKeys = new long[count];
+        }
+        heapSize = 0;
+        for (ProducerBuffer producerBuffer : current) {
+            LogEntry head = producerBuffer.ringBuffer.peek();
+            if (head != null) {
+                push(producerBuffer.ringBuffer, head.getEpochMilli());
+            } else if (!producerBuffer.owner.isAlive() && producerBuffer.ringBuffer.isEmpty()) {
+                deregister(producerBuffer);
+            }
+        }
+        int drained = 0;
+        while (drained < limit && heapSize > 0) {
+            RingBuffer earliest = heapBuffers[0];
+            pop();
+            long nextHead = heapSize == 0 ? Long.MAX_VALUE : heapKeys[0];
+            drained += earliest.drain(logEntries, logWriters, limit - drained, nextHead);
+            LogEntry head = earliest.peek();
+            if (head != null) {
+                push(earliest, head.getEpochMilli());
+            }
+        }
+        Arrays.fill(heapBuffers, 0, count, null);
+        return drained;
+    }
+
+    /**
+     * @return true if the buffers of all producer threads are empty
+     */
+    @Override
+    public boolean isEmpty() {
+        for (ProducerBuffer producerBuffer : buffers) {
+            if (!producerBuffer.ringBuffer.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return approximate number of entries in the buffer of the calling producer thread
+     */
+    @Override
+    public int size() {
+        return producerBuffers.get().size();
+    }
+
+    /**
+     * @return max number of entries the buffer of each producer thread holds
+     */
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of producer threads currently having a buffer
+     */
+    int producers() {
+        return buffers.length;
+    }
+
+    private void push(RingBuffer ringBuffer, long key) {
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapKeys[parent] <= key) {
+                break;
+            }
+            heapBuffers[i] = heapBuffers[parent];
+            heapKeys[i] = heapKeys[parent];
+            i = parent;
+        }
+        heapBuffers[i] = ringBuffer;
+        heapKeys[i] = key;
+    }
+
+    private void pop() {
+        int size = --heapSize;
+        RingBuffer last = heapBuffers[size];
+        long key = heapKeys[size];
+        heapBuffers[size] = null;
+        if (size == 0) {
+            return;
+        }
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heapKeys[child + 1] < heapKeys[child]) {
+                child++;
+            }
+            if (key <= heapKeys[child]) {
+                break;
+            }
+            heapBuffers[i] = heapBuffers[child];
+            heapKeys[i] = heapKeys[child];
+            i = child;
+        }
+        heapBuffers[i] = last;
+        heapKeys[i] = key;
+    }
+
+    private synchronized RingBuffer register() {
+        RingBuffer ringBuffer = new RingBuffer(capacity, true);
+        ProducerBuffer[] current = buffers;
+        ProducerBuffer[] registered = Arrays.copyOf(current, current.length + 1);
+        registered[current.length] = new ProducerBuffer(Thread.currentThread(), ringBuffer);
+        buffers = registered;
+        return ringBuffer;
+    }
+
+    private synchronized void deregister(ProducerBuffer producerBuffer) {
+        ProducerBuffer[] current = buffers;
+        ProducerBuffer[] remaining = new ProducerBuffer[current.length - 1];
+        int i = 0;
+        for (ProducerBuffer each : current) {
+            if (each != producerBuffer) {
+                remaining[i++] = each;
+            }
+        }
+        buffers = remaining;
+    }
+
+    private static class ProducerBuffer {
+        final Thread owner;
+        final RingBuffer ringBuffer;
+
+        ProducerBuffer(Thread owner, RingBuffer ringBuffer) {
+            this.owner = owner;
+            this.ringBuffer = ringBuffer;
+        }
+    }
+}
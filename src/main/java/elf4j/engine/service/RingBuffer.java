@@ -0,0 +1,225 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.service;
+
+import elf4j.engine.writer.LogWriter;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded, lock-free queue of preallocated slots, each holding a log entry and the writer to write it with.
+ * <p>
+ * Follows D. Vyukov's bounded MPMC queue design: every slot carries a sequence number telling whether it is free for
+ * the producer at a given position, or published for the consumer at that position. Producers claim a position by CAS
+ * on the tail; the consumer claims by CAS on the head. No lock is taken and nothing is allocated per entry.
+ * <p>
+ * If made for a single producer thread, the producer publishes by an ordered store of the tail instead of a CAS; the
+ * head is still claimed by CAS, as the producer itself may poll its own oldest entry.
+ * <p>
+ * Also serves as the free list of a {@link LogEntryPool}, with no writers.
+ */
+class RingBuffer implements EntryBuffer {
+    private final int capacity;
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final LogEntry[] logEntries;
+    private final LogWriter[] logWriters;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final boolean singleProducer;
+
+    /**
+     * @param capacity
+     *         number of slots, rounded up to the next power of two, and to at least two as a slot's sequence number
+     *         could not otherwise tell a free slot from a published one
+     */
+    RingBuffer(int capacity) {
+        this(capacity, false);
+    }
+
+    /**
+     * @param capacity
+     *         same as {@link #RingBuffer(int)}
+     * @param singleProducer
+     *         true if only ever offered to by one same thread
+     */
+    RingBuffer(int capacity, boolean singleProducer) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity: " + capacity);
+        }
+        this.capacity = capacity == 1 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            this.sequences.set(i, i);
+        }
+        this.logEntries = new LogEntry[this.capacity];
+        this.logWriters = new LogWriter[this.capacity];
+        this.singleProducer = singleProducer;
+    }
+
+    @Override
+    public boolean offer(LogEntry logEntry, LogWriter logWriter) {
+        if (singleProducer) {
+            return offerSingle(logEntry, logWriter);
+        }
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    logEntries[index] = logEntry;
+                    logWriters[index] = logWriter;
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+            position = tail.get();
+        }
+    }
+
+    private boolean offerSingle(LogEntry logEntry, LogWriter logWriter) {
+        long position = tail.get();
+        int index = (int) (position & mask);
+        if (sequences.get(index) != position) {
+            return false;
+        }
+        logEntries[index] = logEntry;
+        logWriters[index] = logWriter;
+        sequences.lazySet(index, position + 1);
+        tail.lazySet(position + 1);
+        return true;
+    }
+
+    @Override
+    public @Nullable LogEntry poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    LogEntry logEntry = logEntries[index];
+                    logEntries[index] = null;
+                    logWriters[index] = null;
+                    sequences.lazySet(index, position + capacity);
+                    return logEntry;
+                }
+            } else if (difference < 0) {
+                return null;
+            }
+            position = head.get();
+        }
+    }
+
+    /**
+     * @return the published entry at the head without claiming it, or null if there is none; the entry may be claimed
+     *         by another caller of {@link #poll()} right after
+     */
+    @Nullable LogEntry peek() {
+        while (true) {
+            long position = head.get();
+            int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1) {
+                return null;
+            }
+            LogEntry logEntry = logEntries[index];
+            if (head.get() == position) {
+                return logEntry;
+            }
+        }
+    }
+
+    /**
+     * Claims all published entries available at the head, up to the specified limit, with a single CAS.
+     */
+    @Override
+    public int drain(List<LogEntry> logEntries, List<LogWriter> logWriters, int limit) {
+        return drain(logEntries, logWriters, limit, Long.MAX_VALUE);
+    }
+
+    /**
+     * Same as {@link #drain(List, List, int)}, only stopping at the first entry logged after the specified time
+     *
+     * @param maxEpochMilli
+     *         log call time of the latest entry to claim
+     */
+    int drain(List<LogEntry> logEntries, List<LogWriter> logWriters, int limit, long maxEpochMilli) {
+        while (true) {
+            long position = head.get();
+            int available = 0;
+            while (available < limit) {
+                int index = (int) ((position + available) & mask);
+                if (sequences.get(index) != position + available + 1) {
+                    break;
+                }
+                if (maxEpochMilli != Long.MAX_VALUE) {
+                    LogEntry logEntry = this.logEntries[index];
+                    if (logEntry == null || logEntry.getEpochMilli() > maxEpochMilli) {
+                        break;
+                    }
+                }
+                available++;
+            }
+            if (available == 0) {
+                return 0;
+            }
+            if (head.compareAndSet(position, position + available)) {
+                for (int i = 0; i < available; i++) {
+                    int index = (int) ((position + i) & mask);
+                    logEntries.add(this.logEntries[index]);
+                    logWriters.add(this.logWriters[index]);
+                    this.logEntries[index] = null;
+                    this.logWriters[index] = null;
+                    sequences.lazySet(index, position + i + capacity);
+                }
+                return available;
+            }
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return tail.get() == head.get();
+    }
+
+    @Override
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+}
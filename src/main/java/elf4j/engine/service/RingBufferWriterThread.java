@@ -0,0 +1,625 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.service;
+
+import elf4j.Level;
+import elf4j.engine.writer.LogWriter;
+import elf4j.util.InternalLogger;
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.Value;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single consumer thread draining a preallocated, bounded {@link RingBuffer} filled by any number of logging caller
+ * threads, or one such buffer per caller thread as per the {@link BufferMode}. The consumer takes all available entries
+ * at once, and hands them to each writer as a batch. What happens to a caller's entry when the buffer is full is
+ * decided by the configured {@link OverflowPolicy}; callers that wait for free slots do so per the configured
+ * {@link WaitStrategy}. Pooled entries are retained while in the buffer, and released after written or lost.
+ * <p>
+ * The consumer is a daemon thread, so it does not hold up JVM exit; pending entries are drained on shutdown, within a
+ * deadline if shut down by {@link #shutdown(long)}.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+public class RingBufferWriterThread implements WriterThread {
+    private static final BufferMode DEFAULT_BUFFER_MODE = BufferMode.SHARED;
+    private static final WaitStrategy DEFAULT_WAIT_STRATEGY = WaitStrategy.PARK;
+    private static final OverflowPolicy DEFAULT_OVERFLOW_POLICY = OverflowPolicy.BLOCK;
+    private static final double DEFAULT_OVERFLOW_WATERMARK = 0.8;
+    private static final Level DEFAULT_OVERFLOW_LEVEL = Level.WARN;
+    private static final String DEFAULT_THREAD_NAME = "elf4j-engine-writer-thread";
+    private static final long MAX_CONSUMER_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long ABANDON_GRACE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int MAX_BATCH_SIZE = 1024;
+    private final EntryBuffer ringBuffer;
+    @ToString.Include private final BufferMode bufferMode;
+    @ToString.Include private final WaitStrategy waitStrategy;
+    @ToString.Include private final OverflowPolicy overflowPolicy;
+    /**
+     * Buffer size from which the {@link OverflowPolicy#DISCARD_BELOW_LEVEL} policy starts discarding
+     */
+    @ToString.Include private final int overflowWatermark;
+    /**
+     * Entries of lower levels are discarded by the {@link OverflowPolicy#DISCARD_BELOW_LEVEL} policy
+     */
+    @ToString.Include private final Level overflowLevel;
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder droppedNew = new LongAdder();
+    private final LongAdder droppedOldest = new LongAdder();
+    private final LongAdder discardedBelowLevel = new LongAdder();
+    /**
+     * Entries of callers left waiting for a free slot, or offered just as the consumer thread exited, on shutdown
+     */
+    private final LongAdder abandonedAfterExit = new LongAdder();
+    private final AtomicBoolean overflowReported = new AtomicBoolean();
+    private final Thread consumer;
+    private final Object exitLock = new Object();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean consumerParked;
+    private volatile boolean shutdown;
+    private volatile boolean abandon;
+    /**
+     * Set by the consumer thread, while holding the exit lock, as it exits on finding the buffer empty after shutdown
+     */
+    private boolean exited;
+    /**
+     * Only updated by the consumer thread
+     */
+    private volatile long written;
+    /**
+     * Only updated by the consumer thread
+     */
+    private volatile long abandoned;
+
+    RingBufferWriterThread(int capacity, @NonNull WaitStrategy waitStrategy, @NonNull String threadName) {
+        this(capacity,
+                waitStrategy,
+                DEFAULT_OVERFLOW_POLICY,
+                DEFAULT_OVERFLOW_WATERMARK,
+                DEFAULT_OVERFLOW_LEVEL,
+                threadName);
+    }
+
+    RingBufferWriterThread(int capacity,
+            @NonNull WaitStrategy waitStrategy,
+            @NonNull OverflowPolicy overflowPolicy,
+            double overflowWatermark,
+            @NonNull Level overflowLevel,
+            @NonNull String threadName) {
+        this(DEFAULT_BUFFER_MODE, capacity, waitStrategy, overflowPolicy, overflowWatermark, overflowLevel, threadName);
+    }
+
+    /**
+     * @param capacity
+     *         of the shared buffer, or of the buffer of each caller thread, as per the buffer mode
+     * @param overflowWatermark
+     *         fraction of the capacity from which the {@link OverflowPolicy#DISCARD_BELOW_LEVEL} policy starts
+     *         discarding
+     */
+    RingBufferWriterThread(@NonNull BufferMode bufferMode,
+            int capacity,
+            @NonNull WaitStrategy waitStrategy,
+            @NonNull OverflowPolicy overflowPolicy,
+            double overflowWatermark,
+            @NonNull Level overflowLevel,
+            @NonNull String threadName) {
+        if (overflowWatermark < 0 || overflowWatermark > 1) {
+            throw new IllegalArgumentException("overflow watermark: " + overflowWatermark);
+        }
+        this.bufferMode = bufferMode;
+        this.ringBuffer = bufferMode.newBuffer(capacity);
+        this.waitStrategy = waitStrategy;
+        this.overflowPolicy = overflowPolicy;
+        this.overflowWatermark = (int) (this.ringBuffer.capacity() * overflowWatermark);
+        this.overflowLevel = overflowLevel;
+        this.consumer = new Thread(this::consume, threadName);
+        this.consumer.setDaemon(true);
+    }
+
+    /**
+     * @param properties
+     *         configuration source, taking the <code>async.buffer</code>, <code>async.capacity</code>,
+     *         <code>async.wait</code>, <code>async.overflow</code>, <code>async.overflow.watermark</code>, and
+     *         <code>async.overflow.level</code> entries if present
+     * @return ring buffer writer thread per the specified configuration, or the defaults if not configured
+     */
+    public static @Nonnull RingBufferWriterThread from(@Nullable Properties properties) {
+        return from(properties, DEFAULT_THREAD_NAME);
+    }
+
+    /**
+     * @param properties
+     *         configuration source, same as {@link #from(Properties)}
+     * @param threadName
+     *         name of the consumer thread
+     * @return ring buffer writer thread per the specified configuration, or the defaults if not configured
+     */
+    public static @Nonnull RingBufferWriterThread from(@Nullable Properties properties, @NonNull String threadName) {
+        Properties configuration = properties == null ? new Properties() : properties;
+        String bufferMode = configuration.getProperty("async.buffer");
+        String capacity = configuration.getProperty("async.capacity");
+        String waitStrategy = configuration.getProperty("async.wait");
+        String overflowPolicy = configuration.getProperty("async.overflow");
+        String overflowWatermark = configuration.getProperty("async.overflow.watermark");
+        String overflowLevel = configuration.getProperty("async.overflow.level");
+        BufferMode mode = bufferMode == null ? DEFAULT_BUFFER_MODE : BufferMode.from(bufferMode);
+        RingBufferWriterThread ringBufferWriterThread = new RingBufferWriterThread(mode,
+                capacity == null ? mode.defaultCapacity : Integer.parseInt(capacity.trim()),
+                waitStrategy == null ? DEFAULT_WAIT_STRATEGY : WaitStrategy.from(waitStrategy),
+                overflowPolicy == null ? DEFAULT_OVERFLOW_POLICY : OverflowPolicy.from(overflowPolicy),
+                overflowWatermark == null ? DEFAULT_OVERFLOW_WATERMARK : Double.parseDouble(overflowWatermark.trim()),
+                overflowLevel == null ? DEFAULT_OVERFLOW_LEVEL : Level.valueOf(overflowLevel.trim().toUpperCase()),
+                threadName);
+        InternalLogger.INSTANCE.log(Level.INFO, "Configured writer thread: " + ringBufferWriterThread);
+        return ringBufferWriterThread;
+    }
+
+    @Override
+    public void write(@NonNull LogEntry logEntry, @NonNull LogWriter logWriter) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Writer thread already shut down: " + this);
+        }
+        if (!started.get() && started.compareAndSet(false, true)) {
+            consumer.start();
+        }
+        offer(logEntry, logWriter);
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        LockSupport.unpark(consumer);
+    }
+
+    @Override
+    public DrainCounts shutdown(long deadlineNanos) {
+        long writtenBeforeShutdown = written;
+        shutdown();
+        if (!started.get()) {
+            return DrainCounts.NONE;
+        }
+        awaitConsumer(deadlineNanos);
+        if (consumer.isAlive()) {
+            abandon = true;
+            LockSupport.unpark(consumer);
+            awaitConsumer(System.nanoTime() + ABANDON_GRACE_NANOS);
+        }
+        return new DrainCounts(written - writtenBeforeShutdown, abandoned + abandonedAfterExit.sum());
+    }
+
+    /**
+     * @return what the overflow policy has done to entries that met a full, or filling-up, buffer so far
+     */
+    public OverflowCounts getOverflowCounts() {
+        return new OverflowCounts(blocked.sum(), droppedNew.sum(), droppedOldest.sum(), discardedBelowLevel.sum());
+    }
+
+    @ToString.Include
+    String name() {
+        return consumer.getName();
+    }
+
+    @ToString.Include
+    int capacity() {
+        return ringBuffer.capacity();
+    }
+
+    int size() {
+        return ringBuffer.size();
+    }
+
+    private void awaitConsumer(long deadlineNanos) {
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+        if (remainingMillis <= 0) {
+            return;
+        }
+        try {
+            consumer.join(remainingMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for a free slot, unless the consumer thread has exited on shutdown, in which case no slot would ever free
+     * up
+     *
+     * @return false if the entry is abandoned as the consumer thread has exited
+     */
+    private boolean offerOrWait(LogEntry logEntry, LogWriter logWriter) {
+        if (ringBuffer.offer(logEntry, logWriter)) {
+            return true;
+        }
+        blocked.increment();
+        for (int attempt = 0; !ringBuffer.offer(logEntry, logWriter); attempt++) {
+            if (shutdown && !consumer.isAlive()) {
+                abandonedAfterExit.increment();
+                return false;
+            }
+            waitStrategy.idle(attempt);
+        }
+        return true;
+    }
+
+    /**
+     * Offers the entry per the overflow policy; if shut down since the caller checked, makes sure the entry is not left
+     * in the buffer with no consumer thread to write it
+     */
+    void offer(LogEntry logEntry, LogWriter logWriter) {
+        logEntry.retain();
+        if (!overflowPolicy.offer(this, logEntry, logWriter)) {
+            logEntry.release();
+            if (!shutdown) {
+                reportOverflow();
+            }
+            return;
+        }
+        if (shutdown) {
+            abandonIfExited();
+            return;
+        }
+        if (consumerParked) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Takes back and abandons the entries offered after the consumer thread found the buffer empty and exited; the
+     * exit lock makes sure the consumer either sees the entry offered before the check, or has exited before it
+     */
+    private void abandonIfExited() {
+        synchronized (exitLock) {
+            if (!exited) {
+                return;
+            }
+            List<LogEntry> logEntries = new ArrayList<>();
+            ringBuffer.drain(logEntries, new ArrayList<>(), Integer.MAX_VALUE);
+            abandonedAfterExit.add(logEntries.size());
+            logEntries.forEach(LogEntry::release);
+        }
+    }
+
+    private void reportOverflow() {
+        if (!overflowReported.get() && overflowReported.compareAndSet(false, true)) {
+            InternalLogger.INSTANCE.log(Level.WARN,
+                    "Writer thread buffer overflowing, losing log entries per policy: " + this);
+        }
+    }
+
+    private void consume() {
+        List<LogEntry> batchEntries = new ArrayList<>(MAX_BATCH_SIZE);
+        List<LogWriter> batchWriters = new ArrayList<>(MAX_BATCH_SIZE);
+        List<LogWriter> unflushedWriters = new ArrayList<>();
+        int attempt = 0;
+        while (true) {
+            int drained = ringBuffer.drain(batchEntries, batchWriters, MAX_BATCH_SIZE);
+            if (drained > 0) {
+                if (abandon) {
+                    abandoned += drained;
+                } else {
+                    writeOut(batchEntries, batchWriters, unflushedWriters);
+                    written += drained;
+                }
+                batchEntries.forEach(LogEntry::release);
+                batchEntries.clear();
+                batchWriters.clear();
+                attempt = 0;
+                continue;
+            }
+            if (!unflushedWriters.isEmpty()) {
+                flush(unflushedWriters);
+                unflushedWriters.clear();
+            }
+            if (shutdown && ringBuffer.isEmpty() && exitIfEmpty()) {
+                OverflowCounts overflowCounts = getOverflowCounts();
+                if (overflowCounts.getLost() > 0) {
+                    InternalLogger.INSTANCE.log(Level.WARN, "Log entries lost to buffer overflow: " + overflowCounts);
+                }
+                return;
+            }
+            if (waitStrategy == WaitStrategy.PARK && attempt >= WaitStrategy.YIELD_THRESHOLD) {
+                park();
+            } else {
+                waitStrategy.idle(attempt++);
+            }
+        }
+    }
+
+    private boolean exitIfEmpty() {
+        synchronized (exitLock) {
+            exited = ringBuffer.isEmpty();
+            return exited;
+        }
+    }
+
+    private void park() {
+        consumerParked = true;
+        if (ringBuffer.isEmpty() && !shutdown) {
+            LockSupport.parkNanos(this, MAX_CONSUMER_PARK_NANOS);
+        }
+        consumerParked = false;
+    }
+
+    /**
+     * @param logEntries
+     *         drained in order
+     * @param logWriters
+     *         of the drained entries in the same order; each run of entries sharing the same writer is written as one
+     *         batch
+     * @param writtenWriters
+     *         to add each writer written to, if not yet in there
+     */
+    private static void writeOut(List<LogEntry> logEntries,
+            List<LogWriter> logWriters,
+            List<LogWriter> writtenWriters) {
+        int size = logEntries.size();
+        int start = 0;
+        for (int i = 1; i <= size; i++) {
+            if (i == size || logWriters.get(i) != logWriters.get(start)) {
+                LogWriter logWriter = logWriters.get(start);
+                writeOut(logEntries.subList(start, i), logWriter);
+                if (!writtenWriters.contains(logWriter)) {
+                    writtenWriters.add(logWriter);
+                }
+                start = i;
+            }
+        }
+    }
+
+    /**
+     * Flushes the writers written to since the buffer last ran empty, so that writers buffering their output need not
+     * flush per batch
+     */
+    private static void flush(List<LogWriter> logWriters) {
+        for (LogWriter logWriter : logWriters) {
+            try {
+                logWriter.flush();
+            } catch (RuntimeException e) {
+                InternalLogger.INSTANCE.log(Level.ERROR, e, "Error flushing " + logWriter);
+            }
+        }
+    }
+
+    private static void writeOut(List<LogEntry> logEntries, LogWriter logWriter) {
+        try {
+            logWriter.write(logEntries);
+        } catch (RuntimeException e) {
+            InternalLogger.INSTANCE.log(Level.ERROR,
+                    e,
+                    "Error writing " + logEntries.size() + " log entries to " + logWriter);
+        }
+    }
+
+    /**
+     * What to do with a caller's log entry when the buffer is full
+     */
+    enum OverflowPolicy {
+        /**
+         * Caller waits until a slot frees up; no entry is lost, unless the writer thread exits on shutdown meanwhile
+         */
+        BLOCK {
+            @Override
+            boolean offer(RingBufferWriterThread writerThread, LogEntry logEntry, LogWriter logWriter) {
+                return writerThread.offerOrWait(logEntry, logWriter);
+            }
+        },
+        /**
+         * The new entry is dropped
+         */
+        DROP_NEW {
+            @Override
+            boolean offer(RingBufferWriterThread writerThread, LogEntry logEntry, LogWriter logWriter) {
+                if (writerThread.ringBuffer.offer(logEntry, logWriter)) {
+                    return true;
+                }
+                writerThread.droppedNew.increment();
+                return false;
+            }
+        },
+        /**
+         * The oldest entry still in the buffer is dropped to make room for the new one
+         */
+        DROP_OLDEST {
+            @Override
+            boolean offer(RingBufferWriterThread writerThread, LogEntry logEntry, LogWriter logWriter) {
+                boolean dropped = false;
+                while (!writerThread.ringBuffer.offer(logEntry, logWriter)) {
+                    LogEntry oldest = writerThread.ringBuffer.poll();
+                    if (oldest != null) {
+                        oldest.release();
+                        writerThread.droppedOldest.increment();
+                        dropped = true;
+                    }
+                }
+                if (dropped) {
+                    writerThread.reportOverflow();
+                }
+                return true;
+            }
+        },
+        /**
+         * Once the buffer fills up to the watermark, new entries below the configured level are discarded; others wait
+         * for free slots as in {@link #BLOCK}
+         */
+        DISCARD_BELOW_LEVEL {
+            @Override
+            boolean offer(RingBufferWriterThread writerThread, LogEntry logEntry, LogWriter logWriter) {
+                if (logEntry.getNativeLogger().getLevel().compareTo(writerThread.overflowLevel) < 0
+                        && writerThread.ringBuffer.size() >= writerThread.overflowWatermark) {
+                    writerThread.discardedBelowLevel.increment();
+                    return false;
+                }
+                return writerThread.offerOrWait(logEntry, logWriter);
+            }
+        };
+
+        static OverflowPolicy from(@NonNull String overflowPolicy) {
+            return valueOf(overflowPolicy.trim().toUpperCase().replace('-', '_'));
+        }
+
+        /**
+         * @param writerThread
+         *         whose buffer to hand the entry off to
+         * @param logEntry
+         *         to hand off
+         * @param logWriter
+         *         to write the entry with
+         * @return false if the entry is not handed off
+         */
+        abstract boolean offer(RingBufferWriterThread writerThread, LogEntry logEntry, LogWriter logWriter);
+    }
+
+    /**
+     * Running totals of each overflow policy's actions
+     */
+    @Value
+    public static class OverflowCounts {
+        /**
+         * Number of callers that had to wait for a free slot
+         */
+        long blocked;
+        /**
+         * Number of new entries dropped on a full buffer
+         */
+        long droppedNew;
+        /**
+         * Number of buffered entries dropped to make room for new ones
+         */
+        long droppedOldest;
+        /**
+         * Number of entries below the overflow level discarded above the watermark
+         */
+        long discardedBelowLevel;
+
+        /**
+         * @return total number of entries that never got written
+         */
+        public long getLost() {
+            return droppedNew + droppedOldest + discardedBelowLevel;
+        }
+    }
+
+    /**
+     * How the caller threads share the buffer
+     */
+    enum BufferMode {
+        /**
+         * One buffer for all caller threads, contended on by them all
+         */
+        SHARED(16384) {
+            @Override
+            EntryBuffer newBuffer(int capacity) {
+                return new RingBuffer(capacity);
+            }
+        },
+        /**
+         * One buffer per caller thread, merged by the consumer in log call time order; each caller only contends with
+         * the consumer. Overflow policies apply to the caller's own buffer.
+         */
+        PER_THREAD(1024) {
+            @Override
+            EntryBuffer newBuffer(int capacity) {
+                return new PerThreadRingBuffers(capacity);
+            }
+        };
+        private final int defaultCapacity;
+
+        BufferMode(int defaultCapacity) {
+            this.defaultCapacity = defaultCapacity;
+        }
+
+        static BufferMode from(@NonNull String bufferMode) {
+            return valueOf(bufferMode.trim().toUpperCase().replace('-', '_'));
+        }
+
+        abstract EntryBuffer newBuffer(int capacity);
+    }
+
+    /**
+     * How the consumer thread waits for entries when the buffer is empty, and how the caller threads wait for free
+     * slots when the buffer is full
+     */
+    enum WaitStrategy {
+        /**
+         * Spins, then yields, then parks until signaled; trades latency for the least CPU use
+         */
+        PARK {
+            @Override
+            void idle(int attempt) {
+                if (attempt < SPIN_THRESHOLD) {
+                    return;
+                }
+                if (attempt < YIELD_THRESHOLD) {
+                    Thread.yield();
+                    return;
+                }
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        },
+        /**
+         * Spins, then keeps yielding the processor to other threads
+         */
+        YIELD {
+            @Override
+            void idle(int attempt) {
+                if (attempt >= SPIN_THRESHOLD) {
+                    Thread.yield();
+                }
+            }
+        },
+        /**
+         * Keeps spinning; lowest latency at the cost of a fully busy core
+         */
+        BUSY_SPIN {
+            @Override
+            void idle(int attempt) {
+            }
+        };
+        static final int SPIN_THRESHOLD = 100;
+        static final int YIELD_THRESHOLD = 200;
+        static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+        static WaitStrategy from(@NonNull String waitStrategy) {
+            return valueOf(waitStrategy.trim().toUpperCase().replace('-', '_'));
+        }
+
+        /**
+         * @param attempt
+         *         number of consecutive idle loops so far
+         */
+        abstract void idle(int attempt);
+    }
+}
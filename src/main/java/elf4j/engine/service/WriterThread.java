@@ -25,14 +25,65 @@
 
 package elf4j.engine.service;
 
-import java.util.concurrent.Executor;
+import elf4j.engine.writer.LogWriter;
+import lombok.NonNull;
+import lombok.Value;
 
 /**
- *
+ * Hands off log entries from the logging caller threads to the log writers
  */
-public interface WriterThread extends Executor {
+public interface WriterThread {
+    /**
+     * @param logEntry
+     *         the log entry to hand off
+     * @param logWriter
+     *         the writer to write out the specified log entry
+     */
+    void write(LogEntry logEntry, LogWriter logWriter);
+
     /**
      *
      */
     void shutdown();
+
+    /**
+     * Stops taking new entries, and writes out the pending ones until the deadline. Entries still pending by then are
+     * abandoned.
+     *
+     * @param deadlineNanos
+     *         the {@link System#nanoTime()} by which to stop writing out pending entries
+     * @return numbers of entries written out and abandoned after the shutdown
+     */
+    default DrainCounts shutdown(long deadlineNanos) {
+        shutdown();
+        return DrainCounts.NONE;
+    }
+
+    /**
+     * What became of the entries pending at shutdown
+     */
+    @Value
+    class DrainCounts {
+        /**
+         * Nothing to drain
+         */
+        public static final DrainCounts NONE = new DrainCounts(0, 0);
+        /**
+         * Number of entries written out after the shutdown
+         */
+        long written;
+        /**
+         * Number of entries abandoned at the deadline
+         */
+        long abandoned;
+
+        /**
+         * @param other
+         *         counts to add
+         * @return the sums of this and the other counts
+         */
+        public DrainCounts plus(@NonNull DrainCounts other) {
+            return new DrainCounts(written + other.written, abandoned + other.abandoned);
+        }
+    }
 }
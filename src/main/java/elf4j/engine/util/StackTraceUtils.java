@@ -28,8 +28,6 @@ package elf4j.engine.util;
 import elf4j.engine.service.LogEntry;
 import lombok.NonNull;
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
 import java.util.NoSuchElementException;
 
 /**
@@ -67,17 +65,4 @@ public class StackTraceUtils {
         }
         throw new NoSuchElementException("Caller of class '" + calleeClass + "' not found in call stack");
     }
-
-    /**
-     * @param throwable
-     *         to extract stack trace text from
-     * @return stack trace buffer as the specified throwable prints it
-     */
-    public static StringBuffer getTraceAsBuffer(@NonNull Throwable throwable) {
-        StringWriter stringWriter = new StringWriter();
-        try (PrintWriter printWriter = new PrintWriter(stringWriter)) {
-            throwable.printStackTrace(printWriter);
-            return stringWriter.getBuffer();
-        }
-    }
 }
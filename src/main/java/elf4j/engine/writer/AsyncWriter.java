@@ -0,0 +1,178 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import elf4j.Level;
+import elf4j.engine.service.LogEntry;
+import elf4j.engine.service.WriterThread;
+import elf4j.util.InternalLogger;
+import lombok.NonNull;
+import lombok.ToString;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands off log entries to a writer thread, which then writes them with the wrapped writer. Once the writer thread is
+ * shut down, e.g. by a configuration refresh or at JVM exit, the wrapped writer is closed too, and entries still coming
+ * from callers holding on to this writer are counted and dropped.
+ * <p>
+ * If set to render on the caller thread, an {@link EncodingWriter} renders and encodes each entry into the caller
+ * thread's {@link ByteArena}, and only the encoded bytes are handed off; the queued entry no longer references the
+ * message arguments or any other object of the caller's.
+ */
+@ToString
+class AsyncWriter implements LogWriter {
+    private static final ThreadLocal<ByteArena> BYTE_ARENAS = ThreadLocal.withInitial(ByteArena::new);
+    private final LogWriter writer;
+    private final WriterThread writerThread;
+    @Nullable private final EncodedEntryWriter encodedEntryWriter;
+    private final AtomicLong dropped = new AtomicLong();
+
+    AsyncWriter(@NonNull LogWriter writer, @NonNull WriterThread writerThread) {
+        this.writer = writer;
+        this.writerThread = writerThread;
+        this.encodedEntryWriter = null;
+    }
+
+    /**
+     * @param writer
+     *         to render entries on the logging caller thread
+     * @param writerThread
+     *         to hand off the encoded entries to
+     */
+    AsyncWriter(@NonNull EncodingWriter writer, @NonNull WriterThread writerThread) {
+        this.writer = writer;
+        this.writerThread = writerThread;
+        this.encodedEntryWriter = new EncodedEntryWriter(writer);
+    }
+
+    @Override
+    public Level getMinimumOutputLevel() {
+        return writer.getMinimumOutputLevel();
+    }
+
+    @Override
+    public void write(LogEntry logEntry) {
+        if (encodedEntryWriter == null) {
+            handOff(logEntry, writer);
+            return;
+        }
+        EncodedEntry encodedEntry = encodedEntryWriter.encodingWriter.encode(logEntry, BYTE_ARENAS.get());
+        if (encodedEntry != null) {
+            handOff(LogEntry.builder().nativeLogger(logEntry.getNativeLogger()).message(encodedEntry).build(),
+                    encodedEntryWriter);
+        }
+    }
+
+    @Override
+    public void flush() {
+        writer.flush();
+    }
+
+    @Override
+    public void close() {
+        writer.close();
+    }
+
+    @Override
+    public boolean includeCallerDetail() {
+        return writer.includeCallerDetail();
+    }
+
+    @Override
+    public boolean includeCallerThread() {
+        return writer.includeCallerThread();
+    }
+
+    /**
+     * @return number of entries dropped since the writer thread was shut down
+     */
+    long dropped() {
+        return dropped.get();
+    }
+
+    private void handOff(LogEntry logEntry, LogWriter logWriter) {
+        try {
+            writerThread.write(logEntry, logWriter);
+        } catch (RejectedExecutionException e) {
+            if (dropped.incrementAndGet() == 1) {
+                InternalLogger.INSTANCE.log(Level.WARN,
+                        "Writer thread already shut down, dropping log entries of closed writer: " + this);
+            }
+        }
+    }
+
+    /**
+     * Writes out the handed-off entries whose messages are encoded entries
+     */
+    @ToString
+    private static class EncodedEntryWriter implements LogWriter {
+        private final EncodingWriter encodingWriter;
+
+        EncodedEntryWriter(EncodingWriter encodingWriter) {
+            this.encodingWriter = encodingWriter;
+        }
+
+        @Override
+        public Level getMinimumOutputLevel() {
+            return encodingWriter.getMinimumOutputLevel();
+        }
+
+        @Override
+        public void write(LogEntry logEntry) {
+            encodingWriter.writeEncoded(Collections.singletonList((EncodedEntry) logEntry.getMessage()));
+        }
+
+        @Override
+        public void write(List<LogEntry> logEntries) {
+            List<EncodedEntry> encodedEntries = new ArrayList<>(logEntries.size());
+            for (LogEntry logEntry : logEntries) {
+                encodedEntries.add((EncodedEntry) logEntry.getMessage());
+            }
+            encodingWriter.writeEncoded(encodedEntries);
+        }
+
+        @Override
+        public void flush() {
+            encodingWriter.flush();
+        }
+
+        @Override
+        public boolean includeCallerDetail() {
+            return false;
+        }
+
+        @Override
+        public boolean includeCallerThread() {
+            return false;
+        }
+    }
+}
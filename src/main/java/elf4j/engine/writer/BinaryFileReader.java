@@ -0,0 +1,346 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import elf4j.Level;
+import elf4j.engine.NativeLogger;
+import elf4j.engine.service.LogEntry;
+import elf4j.engine.service.LogService;
+import elf4j.engine.writer.pattern.LogPattern;
+import elf4j.engine.writer.pattern.PatternSegmentGroup;
+import lombok.NonNull;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Decodes the entries of a file written by {@link BinaryFileWriter}, and renders them with a log pattern
+ */
+public class BinaryFileReader {
+    private static final String DEFAULT_PATTERN =
+            "{timestamp:yyyy-MM-dd'T'HH:mm:ss.SSSZZZZZ} {level} {class} - {message}";
+    private static final String PATTERN_OPTION = "--pattern";
+    private static final LogService DECODED_LOG_SERVICE = new DecodedLogService();
+    private static final Level[] LEVELS = Level.values();
+
+    private BinaryFileReader() {
+    }
+
+    /**
+     * Prints the entries of each file to stdout, rendered with the pattern if specified, otherwise with the default
+     * pattern of the file writer
+     *
+     * @param args
+     *         optionally <code>--pattern &lt;pattern&gt;</code>, followed by the paths of the files written by
+     *         {@link BinaryFileWriter}
+     * @throws IOException
+     *         if any of the files cannot be read, or is not written by {@link BinaryFileWriter}
+     */
+    public static void main(String[] args) throws IOException {
+        String pattern = DEFAULT_PATTERN;
+        int first = 0;
+        if (args.length > 1 && PATTERN_OPTION.equals(args[0])) {
+            pattern = args[1];
+            first = 2;
+        }
+        LogPattern logPattern = PatternSegmentGroup.from(pattern);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        StringBuilder text = new StringBuilder();
+        for (int i = first; i < args.length; i++) {
+            read(Paths.get(args[i]), logEntry -> {
+                text.setLength(0);
+                render(logEntry, logPattern, text);
+                try {
+                    out.append(text);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+        out.flush();
+    }
+
+    /**
+     * @param path
+     *         of the file written by {@link BinaryFileWriter}
+     * @return the decoded entries, in order
+     * @throws IOException
+     *         if the file cannot be read, or is not written by {@link BinaryFileWriter}
+     */
+    public static List<LogEntry> read(@NonNull Path path) throws IOException {
+        List<LogEntry> logEntries = new ArrayList<>();
+        read(path, logEntries::add);
+        return logEntries;
+    }
+
+    /**
+     * @param path
+     *         of the file written by {@link BinaryFileWriter}
+     * @param consumer
+     *         of each decoded entry, in order. Message templates and arguments are decoded as written, so that the
+     *         resolved message of the entry renders the same as the original. The stack trace of the exception, if
+     *         any, is decoded into a throwable printing the original stack trace text. Reading stops at an incomplete
+     *         last entry, e.g. one cut short by the writing process dying.
+     * @throws IOException
+     *         if the file cannot be read, or is not written by {@link BinaryFileWriter}
+     */
+    public static void read(@NonNull Path path, @NonNull Consumer<LogEntry> consumer) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            Session session = null;
+            int recordType;
+            while ((recordType = in.read()) != -1) {
+                try {
+                    if (recordType == BinaryFileWriter.SESSION) {
+                        if (in.readInt() != BinaryFileWriter.MAGIC || in.readByte() != BinaryFileWriter.VERSION) {
+                            throw new IOException("Not a binary log file, or unsupported version: " + path);
+                        }
+                        session = new Session();
+                    } else if (session == null) {
+                        throw new IOException("Not a binary log file: " + path);
+                    } else if (recordType == BinaryFileWriter.DEFINITION) {
+                        session.define(in);
+                    } else if (recordType == BinaryFileWriter.ENTRY) {
+                        consumer.accept(session.readEntry(in));
+                    } else {
+                        throw new IOException("Corrupt binary log file, unknown record type " + recordType + ": "
+                                + path);
+                    }
+                } catch (EOFException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Renders the entry, with placeholders for the caller thread and frame if the pattern requires but the entry was
+     * written without them
+     */
+    static void render(LogEntry logEntry, LogPattern logPattern, StringBuilder target) {
+        boolean missingThread = logPattern.includeCallerThread() && logEntry.getCallerThread() == null;
+        boolean missingFrame = logPattern.includeCallerDetail() && logEntry.getCallerFrame() == null;
+        if (missingThread || missingFrame) {
+            logEntry = LogEntry.builder()
+                    .nativeLogger(logEntry.getNativeLogger())
+                    .timestamp(logEntry.getTimestamp())
+                    .message(logEntry.getMessage())
+                    .arguments(logEntry.getArguments())
+                    .exception(logEntry.getException())
+                    .callerThread(missingThread ? LogEntry.ThreadInformation.builder().name("?").id(-1).build() :
+                            logEntry.getCallerThread())
+                    .callerFrame(missingFrame ? LogEntry.StackTraceFrame.builder()
+                            .className(logEntry.getNativeLogger().getOwnerClassName())
+                            .methodName("?")
+                            .lineNumber(-1)
+                            .build() : logEntry.getCallerFrame())
+                    .build();
+        }
+        logPattern.render(logEntry, target);
+        target.append(System.lineSeparator());
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt binary log file, malformed varint");
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Decoding state of a session of the file: the dictionary and the timestamp of the last entry
+     */
+    private static class Session {
+        private final List<String> dictionary = new ArrayList<>();
+        private long lastEpochNanos;
+
+        private static String readUtf8(DataInputStream in) throws IOException {
+            byte[] bytes = new byte[Math.toIntExact(readVarLong(in))];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        void define(DataInputStream in) throws IOException {
+            long id = readVarLong(in);
+            if (id != dictionary.size()) {
+                throw new IOException("Corrupt binary log file, dictionary ID " + id + " out of sequence");
+            }
+            dictionary.add(readUtf8(in));
+        }
+
+        LogEntry readEntry(DataInputStream in) throws IOException {
+            int level = in.readUnsignedByte();
+            if (level >= LEVELS.length) {
+                throw new IOException("Corrupt binary log file, unknown level " + level);
+            }
+            lastEpochNanos += unzigzag(readVarLong(in));
+            String ownerClassName = String.valueOf(readValue(in));
+            int flags = in.readUnsignedByte();
+            LogEntry.LogEntryBuilder builder = LogEntry.builder()
+                    .nativeLogger(new NativeLogger(ownerClassName, LEVELS[level], DECODED_LOG_SERVICE))
+                    .timestamp(Instant.ofEpochSecond(0, lastEpochNanos));
+            if ((flags & BinaryFileWriter.HAS_THREAD) != 0) {
+                builder.callerThread(LogEntry.ThreadInformation.builder()
+                        .name(String.valueOf(readValue(in)))
+                        .id(readVarLong(in))
+                        .build());
+            }
+            if ((flags & BinaryFileWriter.HAS_FRAME) != 0) {
+                builder.callerFrame(LogEntry.StackTraceFrame.builder()
+                        .className(String.valueOf(readValue(in)))
+                        .methodName(String.valueOf(readValue(in)))
+                        .lineNumber((int) unzigzag(readVarLong(in)))
+                        .fileName((String) readValue(in))
+                        .build());
+            }
+            builder.message(readValue(in));
+            int argumentCount = Math.toIntExact(readVarLong(in));
+            if (argumentCount > 0) {
+                Object[] arguments = new Object[argumentCount];
+                for (int i = 0; i < argumentCount; i++) {
+                    arguments[i] = readValue(in);
+                }
+                builder.arguments(arguments);
+            }
+            if ((flags & BinaryFileWriter.HAS_EXCEPTION) != 0) {
+                builder.exception(new DecodedException(String.valueOf(readValue(in))));
+            }
+            return builder.build();
+        }
+
+        private @Nullable Object readValue(DataInputStream in) throws IOException {
+            byte type = in.readByte();
+            switch (type) {
+                case BinaryFileWriter.NULL_VALUE:
+                    return null;
+                case BinaryFileWriter.STRING_VALUE:
+                    return readUtf8(in);
+                case BinaryFileWriter.DICTIONARY_VALUE:
+                    long id = readVarLong(in);
+                    if (id >= dictionary.size()) {
+                        throw new IOException("Corrupt binary log file, undefined dictionary ID " + id);
+                    }
+                    return dictionary.get((int) id);
+                case BinaryFileWriter.TRUE_VALUE:
+                    return Boolean.TRUE;
+                case BinaryFileWriter.FALSE_VALUE:
+                    return Boolean.FALSE;
+                case BinaryFileWriter.INT_VALUE:
+                    return (int) unzigzag(readVarLong(in));
+                case BinaryFileWriter.LONG_VALUE:
+                    return unzigzag(readVarLong(in));
+                case BinaryFileWriter.FLOAT_VALUE:
+                    return in.readFloat();
+                case BinaryFileWriter.DOUBLE_VALUE:
+                    return in.readDouble();
+                default:
+                    throw new IOException("Corrupt binary log file, unknown value type " + type);
+            }
+        }
+    }
+
+    /**
+     * Stand-in for a logged exception, printing the stack trace text recorded for it
+     */
+    private static class DecodedException extends Throwable {
+        private static final long serialVersionUID = 1L;
+        private final String stackTrace;
+
+        DecodedException(String stackTrace) {
+            super(null, null, false, false);
+            this.stackTrace = stackTrace;
+        }
+
+        @Override
+        public void printStackTrace(PrintStream s) {
+            s.print(stackTrace);
+        }
+
+        @Override
+        public void printStackTrace(PrintWriter s) {
+            s.print(stackTrace);
+        }
+
+        @Override
+        public String toString() {
+            int lineEnd = stackTrace.indexOf(System.lineSeparator());
+            return lineEnd < 0 ? stackTrace : stackTrace.substring(0, lineEnd);
+        }
+    }
+
+    /**
+     * Log service of the loggers of the decoded entries, which never log
+     */
+    private static class DecodedLogService implements LogService {
+        @Override
+        public boolean isEnabled(NativeLogger nativeLogger) {
+            return false;
+        }
+
+        @Override
+        public void log(NativeLogger nativeLogger,
+                Class<?> serviceInterfaceClass,
+                Throwable exception,
+                Object message,
+                Object[] args) {
+            throw new UnsupportedOperationException("Decoded entries are not to be logged again");
+        }
+
+        @Override
+        public boolean includeCallerDetail() {
+            return false;
+        }
+
+        @Override
+        public boolean includeCallerThread() {
+            return false;
+        }
+    }
+}
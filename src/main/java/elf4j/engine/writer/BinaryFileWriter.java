@@ -0,0 +1,441 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import elf4j.Level;
+import elf4j.engine.service.LogEntry;
+import elf4j.engine.writer.pattern.StackTraceRenderer;
+import elf4j.util.InternalLogger;
+import lombok.NonNull;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Appends entries to a file in a compact binary format, without rendering them: the entries are decoded and rendered
+ * later, off the production host, by the {@link BinaryFileReader} with any pattern.
+ * <p>
+ * The file is a sequence of sessions, each starting when a writer opens the file, or after a write error. Within a session, the logger
+ * class names, message templates, thread names, caller frame names, and stack traces are each written once as a
+ * dictionary definition, and then referred to by ID; each entry records its level, its timestamp as the delta from the
+ * previous entry's in nanoseconds, and its message arguments in typed encodings. Once the dictionary holds 1 MiB of
+ * strings, new strings are written inline, so that one-off strings such as dynamic messages and stack traces cannot
+ * grow it without limit.
+ * <p>
+ * Session: <code>SESSION MAGIC(int) VERSION(byte)</code>. Dictionary definition: <code>DEFINITION id(varint)
+ * length(varint) UTF-8</code>. Entry: <code>ENTRY level(byte) timestamp-delta(zigzag varlong) owner-class(value)
+ * flags(byte) [thread-name(value) thread-id(varlong)] [class(value) method(value) line(zigzag varint) file(value)]
+ * message(value) argument-count(varint) argument(value)... [stack-trace(value)]</code>, where each value is a type
+ * byte followed by its encoding.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+public class BinaryFileWriter implements LogWriter {
+    static final int MAGIC = 0x454c4642;
+    static final byte VERSION = 1;
+    static final byte SESSION = 0;
+    static final byte DEFINITION = 1;
+    static final byte ENTRY = 2;
+    static final int HAS_THREAD = 1;
+    static final int HAS_FRAME = 1 << 1;
+    static final int HAS_EXCEPTION = 1 << 2;
+    static final byte NULL_VALUE = 0;
+    static final byte STRING_VALUE = 1;
+    static final byte DICTIONARY_VALUE = 2;
+    static final byte TRUE_VALUE = 3;
+    static final byte FALSE_VALUE = 4;
+    static final byte INT_VALUE = 5;
+    static final byte LONG_VALUE = 6;
+    static final byte FLOAT_VALUE = 7;
+    static final byte DOUBLE_VALUE = 8;
+    private static final Level DEFAULT_MINIMUM_LEVEL = Level.TRACE;
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int MIN_BUFFER_SIZE = 64;
+    private static final int MAX_DICTIONARY_BYTES = 1024 * 1024;
+    private static final int INITIAL_RECORD_CAPACITY = 1024;
+    private static final int MAX_VARLONG_SIZE = 10;
+    @ToString.Include private final Path path;
+    @ToString.Include private final Level minimumLevel;
+    @ToString.Include private final FlushPolicy flushPolicy;
+    private final boolean includeCallerDetail;
+    private final boolean includeCallerThread;
+    private final ByteBuffer buffer;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private int dictionaryBytes;
+    private final StackTraceRenderer stackTraceRenderer = new StackTraceRenderer(0, Collections.emptyList(), false);
+    private final TextEncoder encoder = new TextEncoder();
+    private ByteBuffer record = ByteBuffer.allocate(INITIAL_RECORD_CAPACITY);
+    @Nullable private FileChannel channel;
+    private boolean sessionStarted;
+    private boolean closed;
+    private long lastEpochNanos;
+    private long lastFlushNanos = System.nanoTime();
+
+    BinaryFileWriter(@NonNull Path path,
+            @NonNull Level minimumLevel,
+            int bufferSize,
+            @NonNull FlushPolicy flushPolicy,
+            boolean includeCallerDetail,
+            boolean includeCallerThread) {
+        if (bufferSize < MIN_BUFFER_SIZE) {
+            throw new IllegalArgumentException("buffer-size: " + bufferSize);
+        }
+        this.path = path;
+        this.minimumLevel = minimumLevel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.flushPolicy = flushPolicy;
+        this.includeCallerDetail = includeCallerDetail;
+        this.includeCallerThread = includeCallerThread;
+    }
+
+    /**
+     * @param configuration
+     *         properties map to make a binary file writer, taking the <code>path</code> entry, and the
+     *         <code>level</code>, <code>buffer-size</code>, <code>caller-detail</code> (default to false),
+     *         <code>caller-thread</code> (default to true), and <code>flush.*</code> entries if present
+     * @return binary file writer per the specified configuration
+     */
+    public static @Nonnull BinaryFileWriter from(@NonNull Map<String, String> configuration) {
+        String path = configuration.get("path");
+        if (path == null) {
+            throw new IllegalArgumentException("No path configured for binary writer: " + configuration);
+        }
+        String level = configuration.get("level");
+        String bufferSize = configuration.get("buffer-size");
+        String callerDetail = configuration.get("caller-detail");
+        String callerThread = configuration.get("caller-thread");
+        return new BinaryFileWriter(Paths.get(path),
+                level == null ? DEFAULT_MINIMUM_LEVEL : Level.valueOf(level.toUpperCase()),
+                bufferSize == null ? DEFAULT_BUFFER_SIZE : Integer.parseInt(bufferSize.trim()),
+                FlushPolicy.from(configuration),
+                callerDetail != null && Boolean.parseBoolean(callerDetail),
+                callerThread == null || Boolean.parseBoolean(callerThread));
+    }
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    @Override
+    public Level getMinimumOutputLevel() {
+        return minimumLevel;
+    }
+
+    @Override
+    public synchronized void write(@NonNull LogEntry logEntry) {
+        if (logEntry.getNativeLogger().getLevel().compareTo(this.minimumLevel) < 0) {
+            return;
+        }
+        append(logEntry);
+        flushIfDue(isFlushImmediately(logEntry));
+    }
+
+    @Override
+    public synchronized void write(@NonNull List<LogEntry> logEntries) {
+        boolean flushImmediately = false;
+        for (LogEntry logEntry : logEntries) {
+            if (logEntry.getNativeLogger().getLevel().compareTo(this.minimumLevel) < 0) {
+                continue;
+            }
+            append(logEntry);
+            flushImmediately |= isFlushImmediately(logEntry);
+        }
+        flushIfDue(flushImmediately);
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (buffer.position() > 0) {
+            writeOut();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        flush();
+        sessionStarted = false;
+        closed = true;
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            InternalLogger.INSTANCE.log(Level.ERROR, e, "Error closing " + this);
+        }
+        channel = null;
+    }
+
+    @Override
+    public boolean includeCallerDetail() {
+        return includeCallerDetail;
+    }
+
+    @Override
+    public boolean includeCallerThread() {
+        return includeCallerThread;
+    }
+
+    private static boolean isFlushImmediately(LogEntry logEntry) {
+        return FlushPolicy.isFlushImmediately(logEntry.getNativeLogger().getLevel());
+    }
+
+    private static @Nullable Object supply(@Nullable Object o) {
+        return o instanceof Supplier<?> ? ((Supplier<?>) o).get() : o;
+    }
+
+    /**
+     * Encodes the entry, preceded by the dictionary definitions of its new strings, into the reusable record buffer,
+     * and then copies the record into the output buffer
+     */
+    private void append(LogEntry logEntry) {
+        record.clear();
+        if (!sessionStarted) {
+            startSession();
+        }
+        Object message = supply(logEntry.getMessage());
+        Object[] arguments = logEntry.getArguments();
+        LogEntry.ThreadInformation callerThread = includeCallerThread ? logEntry.getCallerThread() : null;
+        LogEntry.StackTraceFrame callerFrame = includeCallerDetail ? logEntry.getCallerFrame() : null;
+        Throwable exception = logEntry.getException();
+        int ownerClass = define(logEntry.getNativeLogger().getOwnerClassName());
+        int threadName = callerThread == null ? -1 : define(callerThread.getName());
+        int frameClass = callerFrame == null ? -1 : define(callerFrame.getClassName());
+        int frameMethod = callerFrame == null ? -1 : define(callerFrame.getMethodName());
+        String fileName = callerFrame == null ? null : callerFrame.getFileName();
+        int frameFile = fileName == null ? -1 : define(fileName);
+        int template = message instanceof String ? define((String) message) : -1;
+        String stackTrace = exception == null ? null : stackTraceRenderer.render(exception).toString();
+        int stackTraceId = stackTrace == null ? -1 : define(stackTrace);
+        long epochNanos = logEntry.getEpochMilli() * 1_000_000L + logEntry.getNanoOfMilli();
+        ensureRemaining(2 + MAX_VARLONG_SIZE);
+        record.put(ENTRY);
+        record.put((byte) logEntry.getNativeLogger().getLevel().ordinal());
+        putVarLong(zigzag(epochNanos - lastEpochNanos));
+        lastEpochNanos = epochNanos;
+        putString(logEntry.getNativeLogger().getOwnerClassName(), ownerClass);
+        ensureRemaining(1);
+        record.put((byte) ((callerThread == null ? 0 : HAS_THREAD) | (callerFrame == null ? 0 : HAS_FRAME) | (
+                exception == null ? 0 : HAS_EXCEPTION)));
+        if (callerThread != null) {
+            putString(callerThread.getName(), threadName);
+            putVarLong(callerThread.getId());
+        }
+        if (callerFrame != null) {
+            putString(callerFrame.getClassName(), frameClass);
+            putString(callerFrame.getMethodName(), frameMethod);
+            putVarLong(zigzag(callerFrame.getLineNumber()));
+            putString(fileName, frameFile);
+        }
+        if (template >= 0) {
+            putString((String) message, template);
+        } else {
+            putValue(message);
+        }
+        int argumentCount = arguments == null ? 0 : arguments.length;
+        putVarLong(argumentCount);
+        for (int i = 0; i < argumentCount; i++) {
+            putValue(supply(arguments[i]));
+        }
+        if (stackTrace != null) {
+            putString(stackTrace, stackTraceId);
+        }
+        record.flip();
+        while (record.hasRemaining()) {
+            if (!buffer.hasRemaining()) {
+                writeOut();
+                if (!sessionStarted) {
+                    return;
+                }
+            }
+            int length = Math.min(record.remaining(), buffer.remaining());
+            int limit = record.limit();
+            record.limit(record.position() + length);
+            buffer.put(record);
+            record.limit(limit);
+        }
+    }
+
+    private void startSession() {
+        dictionary.clear();
+        dictionaryBytes = 0;
+        lastEpochNanos = 0;
+        ensureRemaining(6);
+        record.put(SESSION);
+        record.putInt(MAGIC);
+        record.put(VERSION);
+        sessionStarted = true;
+    }
+
+    /**
+     * @return the dictionary ID of the string, defining it into the record if new, or -1 if the dictionary has no room
+     *         left for it
+     */
+    private int define(String string) {
+        Integer id = dictionary.get(string);
+        if (id != null) {
+            return id;
+        }
+        int length = TextEncoder.utf8Length(string);
+        if (length > MAX_DICTIONARY_BYTES - dictionaryBytes) {
+            return -1;
+        }
+        dictionaryBytes += length;
+        int newId = dictionary.size();
+        dictionary.put(string, newId);
+        ensureRemaining(1 + MAX_VARLONG_SIZE);
+        record.put(DEFINITION);
+        putVarLong(newId);
+        putUtf8(string);
+        return newId;
+    }
+
+    private void putString(@Nullable String string, int id) {
+        if (id < 0) {
+            putValue(string);
+            return;
+        }
+        ensureRemaining(1 + MAX_VARLONG_SIZE);
+        record.put(DICTIONARY_VALUE);
+        putVarLong(id);
+    }
+
+    private void putValue(@Nullable Object value) {
+        ensureRemaining(1 + MAX_VARLONG_SIZE);
+        if (value == null) {
+            record.put(NULL_VALUE);
+        } else if (value instanceof Boolean) {
+            record.put((Boolean) value ? TRUE_VALUE : FALSE_VALUE);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            record.put(INT_VALUE);
+            putVarLong(zigzag(((Number) value).intValue()));
+        } else if (value instanceof Long) {
+            record.put(LONG_VALUE);
+            putVarLong(zigzag((long) (Long) value));
+        } else if (value instanceof Float) {
+            record.put(FLOAT_VALUE);
+            record.putFloat((Float) value);
+        } else if (value instanceof Double) {
+            record.put(DOUBLE_VALUE);
+            record.putDouble((Double) value);
+        } else {
+            record.put(STRING_VALUE);
+            putUtf8(value instanceof CharSequence ? (CharSequence) value : String.valueOf(value));
+        }
+    }
+
+    private void putUtf8(CharSequence text) {
+        int length = TextEncoder.utf8Length(text);
+        ensureRemaining(MAX_VARLONG_SIZE + length);
+        putVarLong(length);
+        encoder.encode(text, record, () -> {
+            throw new IllegalStateException("Record buffer overflow encoding " + length + " bytes");
+        });
+    }
+
+    private void putVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            record.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        record.put((byte) value);
+    }
+
+    private void ensureRemaining(int length) {
+        if (record.remaining() >= length) {
+            return;
+        }
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(record.capacity() * 2, record.position() + length));
+        record.flip();
+        grown.put(record);
+        record = grown;
+    }
+
+    private void flushIfDue(boolean flushImmediately) {
+        if (buffer.position() > 0 && (flushImmediately || flushPolicy.isDue(buffer.position(), lastFlushNanos))) {
+            writeOut();
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the file; on error, reports and drops them, and starts a new session so that the
+     * entries following do not refer to the dropped dictionary definitions
+     */
+    private void writeOut() {
+        buffer.flip();
+        try {
+            FileChannel fileChannel = channel();
+            while (buffer.hasRemaining()) {
+                fileChannel.write(buffer);
+            }
+        } catch (IOException e) {
+            InternalLogger.INSTANCE.log(Level.ERROR, e, "Error writing " + buffer.remaining() + " bytes to " + this);
+            sessionStarted = false;
+        } finally {
+            buffer.clear();
+            lastFlushNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * @return the channel of the file, opened if not yet, or if closed by error
+     * @throws ClosedChannelException
+     *         if the writer has been closed, as it never reopens the file
+     */
+    private FileChannel channel() throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+        if (channel == null || !channel.isOpen()) {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+}
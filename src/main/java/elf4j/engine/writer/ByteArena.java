@@ -0,0 +1,125 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Thread-confined buffer that a logging caller thread renders log entries into, and encodes them, as UTF-8 unless
+ * otherwise specified. The encoded entries are bump-allocated slices of a chunk; a full chunk is never reused, but left
+ * to the garbage collector once all its entries are written out, so no release is needed on the writer thread.
+ */
+class ByteArena {
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final int INITIAL_TEXT_CAPACITY = 256;
+    private static final int MAX_BYTES_PER_CHAR = 3;
+    private StringBuilder text = new StringBuilder(INITIAL_TEXT_CAPACITY);
+    private byte[] chunk = new byte[CHUNK_SIZE];
+    private int position;
+
+    /**
+     * @return the reusable text buffer to render an entry into, emptied
+     */
+    StringBuilder text() {
+        if (text.capacity() > CHUNK_SIZE) {
+            text = new StringBuilder(INITIAL_TEXT_CAPACITY);
+        } else {
+            text.setLength(0);
+        }
+        return text;
+    }
+
+    /**
+     * @param chars
+     *         rendered entry to encode
+     * @param target
+     *         writer-specific output of the entry
+     * @param charset
+     *         to encode the entry in
+     * @return the entry encoded in the charset; ASCII text in an ASCII-compatible charset takes the same path as UTF-8,
+     *         other text in other charsets is encoded through an intermediate {@link String}
+     */
+    EncodedEntry encode(CharSequence chars, int target, Charset charset) {
+        if (charset.equals(StandardCharsets.UTF_8) || (TextEncoder.isAsciiCompatible(charset) && isAscii(chars))) {
+            return encode(chars, target);
+        }
+        byte[] bytes = chars.toString().getBytes(charset);
+        return new EncodedEntry(bytes, 0, bytes.length, target);
+    }
+
+    /**
+     * @param chars
+     *         rendered entry to encode
+     * @param target
+     *         writer-specific output of the entry
+     * @return the entry encoded as UTF-8, with malformed surrogates replaced by '?'
+     */
+    EncodedEntry encode(CharSequence chars, int target) {
+        int length = chars.length();
+        int maxBytes = length * MAX_BYTES_PER_CHAR;
+        if (chunk.length - position < maxBytes) {
+            chunk = new byte[Math.max(CHUNK_SIZE, maxBytes)];
+            position = 0;
+        }
+        byte[] bytes = chunk;
+        int start = position;
+        int p = start;
+        for (int i = 0; i < length; i++) {
+            char c = chars.charAt(i);
+            if (c < 0x80) {
+                bytes[p++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[p++] = (byte) (0xC0 | (c >> 6));
+                bytes[p++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, chars.charAt(++i));
+                bytes[p++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[p++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[p++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[p++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                bytes[p++] = '?';
+            } else {
+                bytes[p++] = (byte) (0xE0 | (c >> 12));
+                bytes[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[p++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        position = p;
+        return new EncodedEntry(bytes, start, p - start, target);
+    }
+
+    private static boolean isAscii(CharSequence chars) {
+        int length = chars.length();
+        for (int i = 0; i < length; i++) {
+            if (chars.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
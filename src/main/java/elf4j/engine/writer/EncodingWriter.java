@@ -0,0 +1,53 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import elf4j.engine.service.LogEntry;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Writer able to render and encode log entries apart from writing them out, so that the rendering can happen on the
+ * logging caller thread, and only the encoded bytes are handed off to the writer thread
+ */
+interface EncodingWriter extends LogWriter {
+    /**
+     * @param logEntry
+     *         to render and encode
+     * @param byteArena
+     *         of the calling thread to encode into
+     * @return the encoded entry, or null if the entry is not to be written by this writer
+     */
+    @Nullable
+    EncodedEntry encode(LogEntry logEntry, ByteArena byteArena);
+
+    /**
+     * @param encodedEntries
+     *         previously encoded by this writer, to write out in order
+     */
+    void writeEncoded(List<EncodedEntry> encodedEntries);
+}
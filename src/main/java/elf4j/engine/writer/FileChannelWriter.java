@@ -0,0 +1,317 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import elf4j.Level;
+import elf4j.engine.service.LogEntry;
+import elf4j.engine.writer.pattern.LogPattern;
+import elf4j.engine.writer.pattern.PatternSegmentGroup;
+import elf4j.util.InternalLogger;
+import lombok.NonNull;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends entries to a file. Each entry is rendered into a reusable text buffer, and encoded as UTF-8 straight into a
+ * reusable direct byte buffer, which is written to the file channel when full or when due per the
+ * {@link FlushPolicy}.
+ * <p>
+ * If configured with a {@link RolloverPolicy}, the active file is renamed to a closed segment when due, and a new
+ * active file takes its place; the {@link SegmentArchiver} then compresses and prunes the closed segments in the
+ * background.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+public class FileChannelWriter implements EncodingWriter {
+    private static final Level DEFAULT_MINIMUM_LEVEL = Level.TRACE;
+    private static final String DEFAULT_PATTERN =
+            "{timestamp:yyyy-MM-dd'T'HH:mm:ss.SSSZZZZZ} {level} {class} - {message}";
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int MIN_BUFFER_SIZE = 64;
+    private static final int FLUSH_IMMEDIATELY = 1;
+    private static final long ROLLOVER_RETRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    @ToString.Include private final Path path;
+    @ToString.Include private final Level minimumLevel;
+    @ToString.Include private final FlushPolicy flushPolicy;
+    @ToString.Include @Nullable private final RolloverPolicy rolloverPolicy;
+    private final LogPattern logPattern;
+    private final ByteBuffer buffer;
+    private final TextEncoder encoder = new TextEncoder();
+    private final StringBuilder text = new StringBuilder();
+    @Nullable private FileChannel channel;
+    private boolean closed;
+    private long lastFlushNanos = System.nanoTime();
+    private long fileSize;
+    private long segmentStartMillis;
+    private long periodEndMillis = Long.MAX_VALUE;
+    /**
+     * Until when not to try rolling over again, after failing to move the active file
+     */
+    private long rolloverRetryMillis;
+
+    FileChannelWriter(@NonNull Path path,
+            @NonNull Level minimumLevel,
+            @NonNull LogPattern logPattern,
+            int bufferSize,
+            @NonNull FlushPolicy flushPolicy,
+            @Nullable RolloverPolicy rolloverPolicy) {
+        if (bufferSize < MIN_BUFFER_SIZE) {
+            throw new IllegalArgumentException("buffer-size: " + bufferSize);
+        }
+        this.path = path;
+        this.minimumLevel = minimumLevel;
+        this.logPattern = logPattern;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.flushPolicy = flushPolicy;
+        this.rolloverPolicy = rolloverPolicy;
+    }
+
+    /**
+     * @param configuration
+     *         properties map to make a file writer, taking the <code>path</code> entry, and the <code>level</code>,
+     *         <code>pattern</code>, <code>buffer-size</code>, <code>flush.*</code>, and <code>rollover.*</code>
+     *         entries if present
+     * @return file writer per the specified configuration
+     */
+    public static @Nonnull FileChannelWriter from(@NonNull Map<String, String> configuration) {
+        String path = configuration.get("path");
+        if (path == null) {
+            throw new IllegalArgumentException("No path configured for file writer: " + configuration);
+        }
+        String level = configuration.get("level");
+        String pattern = configuration.get("pattern");
+        String bufferSize = configuration.get("buffer-size");
+        return new FileChannelWriter(Paths.get(path),
+                level == null ? DEFAULT_MINIMUM_LEVEL : Level.valueOf(level.toUpperCase()),
+                PatternSegmentGroup.from(pattern == null ? DEFAULT_PATTERN : pattern),
+                bufferSize == null ? DEFAULT_BUFFER_SIZE : Integer.parseInt(bufferSize.trim()),
+                FlushPolicy.from(configuration),
+                RolloverPolicy.from(configuration));
+    }
+
+    @Override
+    public Level getMinimumOutputLevel() {
+        return minimumLevel;
+    }
+
+    @Override
+    public synchronized void write(@NonNull LogEntry logEntry) {
+        if (logEntry.getNativeLogger().getLevel().compareTo(this.minimumLevel) < 0) {
+            return;
+        }
+        append(logEntry);
+        flushIfDue(isFlushImmediately(logEntry));
+    }
+
+    @Override
+    public synchronized void write(@NonNull List<LogEntry> logEntries) {
+        boolean flushImmediately = false;
+        for (LogEntry logEntry : logEntries) {
+            if (logEntry.getNativeLogger().getLevel().compareTo(this.minimumLevel) < 0) {
+                continue;
+            }
+            append(logEntry);
+            flushImmediately |= isFlushImmediately(logEntry);
+        }
+        flushIfDue(flushImmediately);
+    }
+
+    @Override
+    public @Nullable EncodedEntry encode(@NonNull LogEntry logEntry, @NonNull ByteArena byteArena) {
+        if (logEntry.getNativeLogger().getLevel().compareTo(this.minimumLevel) < 0) {
+            return null;
+        }
+        StringBuilder target = byteArena.text();
+        logPattern.render(logEntry, target);
+        target.append(System.lineSeparator());
+        return byteArena.encode(target, isFlushImmediately(logEntry) ? FLUSH_IMMEDIATELY : 0);
+    }
+
+    @Override
+    public synchronized void writeEncoded(@NonNull List<EncodedEntry> encodedEntries) {
+        boolean flushImmediately = false;
+        for (EncodedEntry encodedEntry : encodedEntries) {
+            int offset = encodedEntry.getOffset();
+            int remaining = encodedEntry.getLength();
+            while (remaining > 0) {
+                if (!buffer.hasRemaining()) {
+                    writeOut();
+                }
+                int length = Math.min(remaining, buffer.remaining());
+                buffer.put(encodedEntry.getBytes(), offset, length);
+                offset += length;
+                remaining -= length;
+            }
+            flushImmediately |= encodedEntry.getTarget() == FLUSH_IMMEDIATELY;
+        }
+        flushIfDue(flushImmediately);
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (buffer.position() > 0) {
+            writeOut();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        flush();
+        closed = true;
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            InternalLogger.INSTANCE.log(Level.ERROR, e, "Error closing " + this);
+        }
+        channel = null;
+    }
+
+    @Override
+    public boolean includeCallerDetail() {
+        return logPattern.includeCallerDetail();
+    }
+
+    @Override
+    public boolean includeCallerThread() {
+        return logPattern.includeCallerThread();
+    }
+
+    private static boolean isFlushImmediately(LogEntry logEntry) {
+        return FlushPolicy.isFlushImmediately(logEntry.getNativeLogger().getLevel());
+    }
+
+    private void append(LogEntry logEntry) {
+        text.setLength(0);
+        logPattern.render(logEntry, text);
+        text.append(System.lineSeparator());
+        encoder.encode(text, buffer, this::writeOut);
+    }
+
+    private void flushIfDue(boolean flushImmediately) {
+        if (buffer.position() > 0 && (flushImmediately || flushPolicy.isDue(buffer.position(), lastFlushNanos))) {
+            writeOut();
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the file; on error, reports and drops them
+     */
+    private void writeOut() {
+        buffer.flip();
+        try {
+            FileChannel fileChannel = channel();
+            if (rolloverPolicy != null) {
+                fileChannel = rollOverIfDue(fileChannel, rolloverPolicy, buffer.remaining());
+            }
+            while (buffer.hasRemaining()) {
+                fileSize += fileChannel.write(buffer);
+            }
+        } catch (IOException e) {
+            InternalLogger.INSTANCE.log(Level.ERROR, e, "Error writing " + buffer.remaining() + " bytes to " + this);
+        } finally {
+            buffer.clear();
+            lastFlushNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Moves the active file to a new segment if due, in constant time regardless of the file size; compressing and
+     * pruning the segments is left to the background archiver. If the active file cannot be moved, e.g. held open by
+     * another process, the pending bytes are still appended to it, and rolling over is retried only a while later.
+     *
+     * @return the channel to write the pending bytes to
+     */
+    private FileChannel rollOverIfDue(FileChannel fileChannel, RolloverPolicy rolloverPolicy, int pendingBytes)
+            throws IOException {
+        long now = System.currentTimeMillis();
+        if (now < rolloverRetryMillis || !rolloverPolicy.isDue(fileSize, pendingBytes, now, periodEndMillis)) {
+            return fileChannel;
+        }
+        if (fileSize == 0) {
+            segmentStartMillis = now;
+            periodEndMillis = rolloverPolicy.periodEnd(now);
+            return fileChannel;
+        }
+        fileChannel.close();
+        channel = null;
+        try {
+            Files.move(path, RolloverPolicy.segmentPath(path, segmentStartMillis));
+        } catch (IOException e) {
+            rolloverRetryMillis = now + ROLLOVER_RETRY_MILLIS;
+            InternalLogger.INSTANCE.log(Level.ERROR,
+                    e,
+                    "Error rolling over " + this + ", appending to the active file and retrying in "
+                            + ROLLOVER_RETRY_MILLIS + " ms");
+            return channel();
+        }
+        SegmentArchiver.archive(path, rolloverPolicy);
+        return channel();
+    }
+
+    /**
+     * @return the channel of the active file, opened if not yet, or if closed by error or rollover
+     * @throws ClosedChannelException
+     *         if the writer has been closed, as it never reopens the file
+     */
+    private FileChannel channel() throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+        if (channel == null || !channel.isOpen()) {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            fileSize = channel.size();
+            segmentStartMillis = fileSize == 0 ? System.currentTimeMillis() :
+                    Files.readAttributes(path, BasicFileAttributes.class).creationTime().toMillis();
+            if (rolloverPolicy != null) {
+                periodEndMillis = rolloverPolicy.periodEnd(segmentStartMillis);
+            }
+        }
+        return channel;
+    }
+}
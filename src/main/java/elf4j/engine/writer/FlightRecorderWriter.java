@@ -0,0 +1,230 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import elf4j.Level;
+import elf4j.engine.service.LogEntry;
+import lombok.NonNull;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps the latest entries in memory, in a fixed-size ring, and only writes them out to its target writer when an
+ * entry at or above the trigger level arrives, or when dumped on demand; so entries down to a verbose level can be
+ * recorded all the time, at no output cost unless something goes wrong.
+ * <p>
+ * The ring keeps a raw copy of each entry, which the target renders at dump time; message arguments, therefore, are
+ * converted to text at dump time too, not at log time. The ring never keeps the written entries themselves, which may
+ * be recycled once written.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+public class FlightRecorderWriter implements LogWriter {
+    private static final Level DEFAULT_MINIMUM_LEVEL = Level.TRACE;
+    private static final Level DEFAULT_TRIGGER_LEVEL = Level.ERROR;
+    private static final int DEFAULT_SIZE = 1000;
+    private static final String TARGET_PREFIX = "target.";
+    private static final List<FlightRecorderWriter> RECORDERS = new CopyOnWriteArrayList<>();
+    @ToString.Include private final Level minimumLevel;
+    @ToString.Include private final Level triggerLevel;
+    @ToString.Include private final LogWriter target;
+    private final LogEntry[] ring;
+    private final List<LogEntry> dumped;
+    private int next;
+    private int size;
+
+    FlightRecorderWriter(@NonNull Level minimumLevel,
+            @NonNull Level triggerLevel,
+            int size,
+            @NonNull LogWriter target) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size: " + size);
+        }
+        this.minimumLevel = minimumLevel;
+        this.triggerLevel = triggerLevel;
+        this.target = target;
+        this.ring = new LogEntry[size];
+        this.dumped = new ArrayList<>(size + 1);
+        RECORDERS.add(this);
+    }
+
+    /**
+     * @param configuration
+     *         properties map to make a flight recorder writer, taking the <code>target</code> entry as the type of the
+     *         target writer, and the entries starting with <code>target.</code> as the configuration of the target
+     *         writer; and the <code>level</code>, <code>trigger</code> (default to error), and <code>size</code>
+     *         (default to 1000) entries if present
+     * @param properties
+     *         configuration source, for the global settings of the target writer
+     * @return flight recorder writer per the specified configuration
+     */
+    public static @Nonnull FlightRecorderWriter from(@NonNull Map<String, String> configuration,
+            @NonNull Properties properties) {
+        String targetType = configuration.get("target");
+        if (targetType == null) {
+            throw new IllegalArgumentException("No target configured for flight recorder writer: " + configuration);
+        }
+        Map<String, String> targetConfiguration = new HashMap<>();
+        configuration.forEach((key, value) -> {
+            if (key.startsWith(TARGET_PREFIX)) {
+                targetConfiguration.put(key.substring(TARGET_PREFIX.length()), value);
+            }
+        });
+        String level = configuration.get("level");
+        String trigger = configuration.get("trigger");
+        String size = configuration.get("size");
+        return new FlightRecorderWriter(level == null ? DEFAULT_MINIMUM_LEVEL : Level.valueOf(level.toUpperCase()),
+                trigger == null ? DEFAULT_TRIGGER_LEVEL : Level.valueOf(trigger.trim().toUpperCase()),
+                size == null ? DEFAULT_SIZE : Integer.parseInt(size.trim()),
+                WriterType.valueOf(targetType.trim().toUpperCase()).parseWriter(targetConfiguration, properties));
+    }
+
+    /**
+     * Dumps the recorded entries of all flight recorder writers in effect to their targets, e.g. from an application
+     * error handler that does not log
+     */
+    public static void dumpAll() {
+        RECORDERS.forEach(FlightRecorderWriter::dump);
+    }
+
+    private static LogEntry copyOf(LogEntry logEntry) {
+        return LogEntry.builder()
+                .nativeLogger(logEntry.getNativeLogger())
+                .timestamp(logEntry.getTimestamp())
+                .message(logEntry.getMessage())
+                .arguments(logEntry.getArguments())
+                .exception(logEntry.getException())
+                .callerFrame(logEntry.getCallerFrame())
+                .callerThread(logEntry.getCallerThread())
+                .build();
+    }
+
+    @Override
+    public Level getMinimumOutputLevel() {
+        return minimumLevel;
+    }
+
+    /**
+     * Records the entry; and if at or above the trigger level, writes the recorded entries followed by this one to
+     * the target, and then flushes the target
+     */
+    @Override
+    public synchronized void write(@NonNull LogEntry logEntry) {
+        Level level = logEntry.getNativeLogger().getLevel();
+        if (level.compareTo(this.minimumLevel) < 0) {
+            return;
+        }
+        if (level.compareTo(triggerLevel) < 0) {
+            record(logEntry);
+            return;
+        }
+        drainTo(dumped);
+        dumped.add(logEntry);
+        writeOut();
+    }
+
+    /**
+     * Writes the recorded entries to the target, oldest first, and then flushes the target
+     */
+    public synchronized void dump() {
+        drainTo(dumped);
+        writeOut();
+    }
+
+    @Override
+    public void flush() {
+        target.flush();
+    }
+
+    /**
+     * Stops this writer from being dumped by {@link #dumpAll()}, and closes the target; the entries recorded but not
+     * dumped are discarded
+     */
+    @Override
+    public synchronized void close() {
+        RECORDERS.remove(this);
+        drainTo(dumped);
+        dumped.clear();
+        target.close();
+    }
+
+    @Override
+    public boolean includeCallerDetail() {
+        return target.includeCallerDetail();
+    }
+
+    @Override
+    public boolean includeCallerThread() {
+        return target.includeCallerThread();
+    }
+
+    /**
+     * @return number of entries currently recorded
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    private void record(LogEntry logEntry) {
+        ring[next] = copyOf(logEntry);
+        next = (next + 1) % ring.length;
+        if (size < ring.length) {
+            size++;
+        }
+    }
+
+    /**
+     * Moves the recorded entries, oldest first, to the target list, emptying the ring
+     */
+    private void drainTo(List<LogEntry> target) {
+        int oldest = (next - size + ring.length) % ring.length;
+        for (int i = 0; i < size; i++) {
+            int index = (oldest + i) % ring.length;
+            target.add(ring[index]);
+            ring[index] = null;
+        }
+        next = 0;
+        size = 0;
+    }
+
+    private void writeOut() {
+        if (dumped.isEmpty()) {
+            return;
+        }
+        try {
+            target.write(dumped);
+            target.flush();
+        } finally {
+            dumped.clear();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import elf4j.Level;
+import elf4j.util.InternalLogger;
+import lombok.NonNull;
+import lombok.Value;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * When a writer buffering its output flushes it after writing entries below {@link Level#ERROR}; entries at or above
+ * that level are always flushed right away. Unless flushing after every write, the async writer thread flushes
+ * whatever is left as soon as its buffer runs empty. A synchronous writer has no such signal: the idle mode falls back
+ * to flushing after every write, and the interval mode is backed by a timer flushing the tail of the output.
+ */
+@Value
+class FlushPolicy {
+    static final FlushPolicy ALWAYS = new FlushPolicy(Mode.ALWAYS, 0, 0);
+    private static final long DEFAULT_FLUSH_BYTES = 8192;
+    private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+    Mode mode;
+    long bytes;
+    long intervalNanos;
+
+    /**
+     * @param configuration
+     *         writer configuration, taking the <code>flush</code>, <code>flush.bytes</code>, and
+     *         <code>flush.interval</code> entries, if present
+     * @return flush policy per the specified configuration, or flushing after every write if not configured
+     */
+    static FlushPolicy from(@NonNull Map<String, String> configuration) {
+        String mode = configuration.get("flush");
+        if (mode == null) {
+            return ALWAYS;
+        }
+        String bytes = configuration.get("flush.bytes");
+        String interval = configuration.get("flush.interval");
+        return new FlushPolicy(Mode.valueOf(mode.trim().toUpperCase()),
+                bytes == null ? DEFAULT_FLUSH_BYTES : Long.parseLong(bytes.trim()),
+                TimeUnit.MILLISECONDS.toNanos(
+                        interval == null ? DEFAULT_FLUSH_INTERVAL_MILLIS : Long.parseLong(interval.trim())));
+    }
+
+    /**
+     * @param configuration
+     *         of a synchronous writer
+     * @return the configuration as is, or with the idle flush mode replaced by flushing after every write, as there is
+     *         no writer thread to tell when the writer goes idle
+     */
+    static Map<String, String> forSynchronous(@NonNull Map<String, String> configuration) {
+        String mode = configuration.get("flush");
+        if (mode == null || Mode.valueOf(mode.trim().toUpperCase()) != Mode.IDLE) {
+            return configuration;
+        }
+        InternalLogger.INSTANCE.log(Level.WARN,
+                "Flush mode idle unsupported by synchronous writer, flushing after every write instead: "
+                        + configuration);
+        Map<String, String> always = new HashMap<>(configuration);
+        always.put("flush", Mode.ALWAYS.name());
+        return always;
+    }
+
+    /**
+     * @param unflushedBytes
+     *         written since the last flush
+     * @param lastFlushNanos
+     *         {@link System#nanoTime()} of the last flush
+     * @return true if the output should be flushed now
+     */
+    boolean isDue(long unflushedBytes, long lastFlushNanos) {
+        switch (mode) {
+            case ALWAYS:
+                return true;
+            case IDLE:
+                return false;
+            case BYTES:
+                return unflushedBytes >= bytes;
+            case INTERVAL:
+                return System.nanoTime() - lastFlushNanos >= intervalNanos;
+            default:
+                throw new IllegalArgumentException("Unsupported flush mode: " + mode);
+        }
+    }
+
+    /**
+     * @param level
+     *         of the entry written
+     * @return true if entries of the specified level are flushed right away regardless of the policy
+     */
+    static boolean isFlushImmediately(@NonNull Level level) {
+        return level.compareTo(Level.ERROR) >= 0;
+    }
+
+    enum Mode {
+        /**
+         * Flush after every write, i.e. per entry if synchronous, per batch if async
+         */
+        ALWAYS,
+        /**
+         * Flush only when the async writer thread runs out of entries to write; same as {@link #ALWAYS} if synchronous
+         */
+        IDLE,
+        /**
+         * Flush once the unflushed output reaches the configured number of bytes
+         */
+        BYTES,
+        /**
+         * Flush once the configured milliseconds have passed since the last flush; if synchronous, also on a timer of
+         * the same interval
+         */
+        INTERVAL
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import elf4j.Level;
+import elf4j.engine.service.LogEntry;
+import elf4j.util.InternalLogger;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flushes a synchronous writer on a timer, once per flush interval, so that the tail of a burst of entries is written
+ * out even if no entry follows; async writers need no such timer, as their writer thread flushes whenever its buffer
+ * runs empty.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+class IntervalFlushingWriter implements LogWriter {
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "elf4j-engine-flush-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    @ToString.Include private final LogWriter writer;
+    private final ScheduledFuture<?> timer;
+
+    /**
+     * @param writer
+     *         to write synchronously and flush on the timer
+     * @param intervalNanos
+     *         of the timer
+     */
+    IntervalFlushingWriter(@NonNull LogWriter writer, long intervalNanos) {
+        if (intervalNanos <= 0) {
+            throw new IllegalArgumentException("flush interval nanos: " + intervalNanos);
+        }
+        this.writer = writer;
+        this.timer =
+                TIMER.scheduleWithFixedDelay(this::flushOnTimer, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public Level getMinimumOutputLevel() {
+        return writer.getMinimumOutputLevel();
+    }
+
+    @Override
+    public void write(LogEntry logEntry) {
+        writer.write(logEntry);
+    }
+
+    @Override
+    public void write(List<LogEntry> logEntries) {
+        writer.write(logEntries);
+    }
+
+    @Override
+    public void flush() {
+        writer.flush();
+    }
+
+    @Override
+    public void close() {
+        timer.cancel(false);
+        writer.close();
+    }
+
+    @Override
+    public boolean includeCallerDetail() {
+        return writer.includeCallerDetail();
+    }
+
+    @Override
+    public boolean includeCallerThread() {
+        return writer.includeCallerThread();
+    }
+
+    private void flushOnTimer() {
+        try {
+            writer.flush();
+        } catch (RuntimeException e) {
+            InternalLogger.INSTANCE.log(Level.ERROR, e, "Error flushing " + writer);
+        }
+    }
+}
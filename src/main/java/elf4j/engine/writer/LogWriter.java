@@ -28,6 +28,8 @@ package elf4j.engine.writer;
 import elf4j.Level;
 import elf4j.engine.service.LogEntry;
 
+import java.util.List;
+
 /**
  *
  */
@@ -40,7 +42,36 @@ public interface LogWriter extends PerformanceSensitive {
 
     /**
      * @param logEntry
-     *         the log data entry to write out
+     *         the log data entry to write out; may be recycled after this call returns, so must not be kept for later
      */
     void write(LogEntry logEntry);
+
+    /**
+     * Writers able to amortize output cost over multiple entries, e.g. by flushing only once, should override this
+     * default implementation which writes the entries one at a time.
+     *
+     * @param logEntries
+     *         the log data entries to write out, in order
+     */
+    default void write(List<LogEntry> logEntries) {
+        for (LogEntry logEntry : logEntries) {
+            write(logEntry);
+        }
+    }
+
+    /**
+     * Writes out any output buffered by this writer. Writers that buffer output should override this default
+     * implementation which does nothing.
+     */
+    default void flush() {
+    }
+
+    /**
+     * Releases the resources held by this writer, e.g. open files, after writing out its buffered output. Writers
+     * holding such resources should override this default implementation which only flushes, and should not reacquire
+     * the resources if written to again after closed, as nothing would ever release them again.
+     */
+    default void close() {
+        flush();
+    }
 }
@@ -0,0 +1,106 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recovers the committed entries of a file written by {@link MappedFileWriter}, e.g. after the process writing it died
+ */
+public class MappedFileReader {
+    private MappedFileReader() {
+    }
+
+    /**
+     * Prints the recovered entries of each file to stdout
+     *
+     * @param args
+     *         paths of the files written by {@link MappedFileWriter}
+     * @throws IOException
+     *         if any of the files cannot be read, or is not written by {@link MappedFileWriter}
+     */
+    public static void main(String[] args) throws IOException {
+        for (String path : args) {
+            for (String entry : read(Paths.get(path))) {
+                System.out.print(entry);
+            }
+        }
+        System.out.flush();
+    }
+
+    /**
+     * @param path
+     *         of the file written by {@link MappedFileWriter}
+     * @return the committed entries, oldest first, each as rendered including its line separator. Reading stops at
+     *         the first entry whose recorded length is inconsistent with the committed offsets.
+     * @throws IOException
+     *         if the file cannot be read, or is not written by {@link MappedFileWriter}
+     */
+    public static List<String> read(@NonNull Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < MappedFileWriter.HEADER_SIZE) {
+                throw new IOException("Not a mapped log file: " + path);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int capacity = buffer.getInt(MappedFileWriter.CAPACITY_INDEX);
+        long start = buffer.getLong(MappedFileWriter.START_INDEX);
+        long end = buffer.getLong(MappedFileWriter.END_INDEX);
+        if (buffer.getInt(MappedFileWriter.MAGIC_INDEX) != MappedFileWriter.MAGIC || capacity <= 0
+                || buffer.capacity() < MappedFileWriter.HEADER_SIZE + (long) capacity
+                || !MappedFileWriter.isValid(start, end, capacity)) {
+            throw new IOException("Not a mapped log file, or corrupt header: " + path);
+        }
+        List<String> entries = new ArrayList<>();
+        ByteBuffer lengthBytes = ByteBuffer.allocate(MappedFileWriter.LENGTH_SIZE);
+        long offset = start;
+        while (end - offset >= MappedFileWriter.LENGTH_SIZE) {
+            lengthBytes.clear();
+            MappedFileWriter.get(buffer, offset, lengthBytes, capacity);
+            int length = lengthBytes.getInt(0);
+            offset += MappedFileWriter.LENGTH_SIZE;
+            if (length < 0 || length > end - offset) {
+                break;
+            }
+            byte[] bytes = new byte[length];
+            MappedFileWriter.get(buffer, offset, ByteBuffer.wrap(bytes), capacity);
+            entries.add(new String(bytes, StandardCharsets.UTF_8));
+            offset += length;
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import elf4j.Level;
+import elf4j.engine.service.LogEntry;
+import elf4j.engine.writer.pattern.LogPattern;
+import elf4j.engine.writer.pattern.PatternSegmentGroup;
+import elf4j.util.InternalLogger;
+import lombok.NonNull;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Appends entries to a fixed-size, memory-mapped file used as a circular buffer, where the oldest entries are
+ * overwritten once full. Entries written here reach the OS page cache without any system call, so they survive the
+ * death of the JVM process, e.g. from a native crash or an OOM kill; {@link MappedFileReader} recovers them after
+ * restart.
+ * <p>
+ * The file starts with a header of {@value #HEADER_SIZE} bytes: the magic number, the capacity of the data region, and
+ * the logical start and end offsets of the committed entries. Logical offsets only ever grow; the data region position
+ * of a logical offset is the offset modulo the capacity. Each entry is its UTF-8 length as an int, followed by its
+ * UTF-8 bytes, and may wrap around the end of the data region. The end offset is only advanced after the entry bytes
+ * are written, and the start offset is advanced before overwriting the oldest entries, so a crash in between leaves
+ * the committed entries intact.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+public class MappedFileWriter implements EncodingWriter {
+    static final int MAGIC = 0x454c4634;
+    static final int HEADER_SIZE = 32;
+    static final int MAGIC_INDEX = 0;
+    static final int CAPACITY_INDEX = 4;
+    static final int START_INDEX = 8;
+    static final int END_INDEX = 16;
+    static final int LENGTH_SIZE = Integer.BYTES;
+    private static final Level DEFAULT_MINIMUM_LEVEL = Level.TRACE;
+    private static final String DEFAULT_PATTERN =
+            "{timestamp:yyyy-MM-dd'T'HH:mm:ss.SSSZZZZZ} {level} {class} - {message}";
+    private static final int DEFAULT_CAPACITY = 16 * 1024 * 1024;
+    private static final int MIN_CAPACITY = 1024;
+    @ToString.Include private final Path path;
+    @ToString.Include private final Level minimumLevel;
+    @ToString.Include private final int capacity;
+    private final LogPattern logPattern;
+    private final TextEncoder encoder = new TextEncoder();
+    private final StringBuilder text = new StringBuilder();
+    private final ByteBuffer lengthBytes = ByteBuffer.allocate(LENGTH_SIZE);
+    private ByteBuffer bytes = ByteBuffer.allocate(1024);
+    @Nullable private MappedByteBuffer mapped;
+    private long start;
+    private long end;
+    /**
+     * Written after each entry's bytes and before the header's end offset, to keep the two stores in order
+     */
+    private volatile long committed;
+
+    MappedFileWriter(@NonNull Path path, @NonNull Level minimumLevel, @NonNull LogPattern logPattern, int capacity) {
+        if (capacity < MIN_CAPACITY) {
+            throw new IllegalArgumentException("size: " + capacity);
+        }
+        this.path = path;
+        this.minimumLevel = minimumLevel;
+        this.logPattern = logPattern;
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param configuration
+     *         properties map to make a memory-mapped file writer, taking the <code>path</code> entry, and the
+     *         <code>level</code>, <code>pattern</code>, and <code>size</code> entries if present
+     * @return memory-mapped file writer per the specified configuration
+     */
+    public static @Nonnull MappedFileWriter from(@NonNull Map<String, String> configuration) {
+        String path = configuration.get("path");
+        if (path == null) {
+            throw new IllegalArgumentException("No path configured for mapped file writer: " + configuration);
+        }
+        String level = configuration.get("level");
+        String pattern = configuration.get("pattern");
+        String size = configuration.get("size");
+        return new MappedFileWriter(Paths.get(path),
+                level == null ? DEFAULT_MINIMUM_LEVEL : Level.valueOf(level.toUpperCase()),
+                PatternSegmentGroup.from(pattern == null ? DEFAULT_PATTERN : pattern),
+                size == null ? DEFAULT_CAPACITY : Integer.parseInt(size.trim()));
+    }
+
+    @Override
+    public Level getMinimumOutputLevel() {
+        return minimumLevel;
+    }
+
+    @Override
+    public synchronized void write(@NonNull LogEntry logEntry) {
+        if (logEntry.getNativeLogger().getLevel().compareTo(this.minimumLevel) < 0) {
+            return;
+        }
+        text.setLength(0);
+        logPattern.render(logEntry, text);
+        text.append(System.lineSeparator());
+        MappedByteBuffer buffer = mapped();
+        if (buffer != null) {
+            append(buffer, encode(text));
+        }
+    }
+
+    @Override
+    public @Nullable EncodedEntry encode(@NonNull LogEntry logEntry, @NonNull ByteArena byteArena) {
+        if (logEntry.getNativeLogger().getLevel().compareTo(this.minimumLevel) < 0) {
+            return null;
+        }
+        StringBuilder target = byteArena.text();
+        logPattern.render(logEntry, target);
+        target.append(System.lineSeparator());
+        return byteArena.encode(target, 0);
+    }
+
+    @Override
+    public synchronized void writeEncoded(@NonNull List<EncodedEntry> encodedEntries) {
+        MappedByteBuffer buffer = mapped();
+        if (buffer == null) {
+            return;
+        }
+        for (EncodedEntry encodedEntry : encodedEntries) {
+            append(buffer, ByteBuffer.wrap(encodedEntry.getBytes(), encodedEntry.getOffset(), encodedEntry.getLength()));
+        }
+    }
+
+    @Override
+    public boolean includeCallerDetail() {
+        return logPattern.includeCallerDetail();
+    }
+
+    @Override
+    public boolean includeCallerThread() {
+        return logPattern.includeCallerThread();
+    }
+
+    private ByteBuffer encode(CharSequence chars) {
+        int length = TextEncoder.utf8Length(chars);
+        if (bytes.capacity() < length) {
+            bytes = ByteBuffer.allocate(Math.max(length, bytes.capacity() * 2));
+        }
+        bytes.clear();
+        encoder.encode(chars, bytes, () -> {
+            throw new IllegalStateException("Encoded length " + length + " overflown");
+        });
+        bytes.flip();
+        return bytes;
+    }
+
+    /**
+     * @param buffer
+     *         the mapped file
+     * @param entry
+     *         encoded bytes of one entry, truncated if longer than the data region can hold
+     */
+    private void append(MappedByteBuffer buffer, ByteBuffer entry) {
+        int length = Math.min(entry.remaining(), capacity - LENGTH_SIZE);
+        long recordSize = LENGTH_SIZE + (long) length;
+        if (end + recordSize - start > capacity) {
+            while (end + recordSize - start > capacity) {
+                start += LENGTH_SIZE + readLength(buffer, start);
+            }
+            buffer.putLong(START_INDEX, start);
+        }
+        lengthBytes.clear();
+        put(buffer, end, lengthBytes.putInt(0, length));
+        entry.limit(entry.position() + length);
+        put(buffer, end + LENGTH_SIZE, entry);
+        end += recordSize;
+        committed = end;
+        buffer.putLong(END_INDEX, end);
+    }
+
+    private int readLength(MappedByteBuffer buffer, long offset) {
+        lengthBytes.clear();
+        get(buffer, offset, lengthBytes, capacity);
+        return lengthBytes.getInt(0);
+    }
+
+    /**
+     * Copies all remaining bytes of the source into the data region at the logical offset, wrapping around the end of
+     * the region if need be
+     */
+    private void put(MappedByteBuffer buffer, long offset, ByteBuffer source) {
+        int position = (int) (offset % capacity);
+        while (source.hasRemaining()) {
+            int length = Math.min(source.remaining(), capacity - position);
+            ByteBuffer slice = source.duplicate();
+            slice.limit(slice.position() + length);
+            ByteBuffer target = buffer.duplicate();
+            target.position(HEADER_SIZE + position);
+            target.put(slice);
+            source.position(source.position() + length);
+            position = 0;
+        }
+    }
+
+    /**
+     * Fills the remaining bytes of the target from the data region at the logical offset, wrapping around the end of
+     * the region if need be
+     */
+    static void get(ByteBuffer buffer, long offset, ByteBuffer target, int capacity) {
+        int position = (int) (offset % capacity);
+        while (target.hasRemaining()) {
+            int length = Math.min(target.remaining(), capacity - position);
+            ByteBuffer source = buffer.duplicate();
+            source.position(HEADER_SIZE + position);
+            source.limit(HEADER_SIZE + position + length);
+            target.put(source);
+            position = 0;
+        }
+    }
+
+    /**
+     * @return the mapped file, mapping it on first use, or null if it cannot be mapped
+     */
+    private @Nullable MappedByteBuffer mapped() {
+        if (mapped != null) {
+            return mapped;
+        }
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) HEADER_SIZE + capacity);
+            }
+        } catch (IOException e) {
+            InternalLogger.INSTANCE.log(Level.ERROR, e, "Error mapping " + this);
+            return null;
+        }
+        if (mapped.getInt(MAGIC_INDEX) == MAGIC && mapped.getInt(CAPACITY_INDEX) == capacity
+                && isValid(mapped.getLong(START_INDEX), mapped.getLong(END_INDEX), capacity)) {
+            start = mapped.getLong(START_INDEX);
+            end = mapped.getLong(END_INDEX);
+            InternalLogger.INSTANCE.log(Level.INFO, "Appending after " + (end - start) + " recovered bytes: " + this);
+        } else {
+            start = 0;
+            end = 0;
+            mapped.putLong(START_INDEX, start);
+            mapped.putLong(END_INDEX, end);
+            mapped.putInt(CAPACITY_INDEX, capacity);
+            mapped.putInt(MAGIC_INDEX, MAGIC);
+        }
+        committed = end;
+        return mapped;
+    }
+
+    static boolean isValid(long start, long end, int capacity) {
+        return start >= 0 && end >= start && end - start <= capacity;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import lombok.NonNull;
+import lombok.Value;
+
+import javax.annotation.Nullable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+/**
+ * When a file writer rolls its active file over to a closed segment, and how many segments it retains
+ */
+@Value
+class RolloverPolicy {
+    private static final DateTimeFormatter SEGMENT_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+    /**
+     * Bytes an active file may reach before rolled over, or 0 if unbounded
+     */
+    long maxSize;
+    /**
+     * Period at the end of which the active file is rolled over, or null if rolled over by size only
+     */
+    @Nullable Period period;
+    /**
+     * Number of closed segments retained, or 0 if unbounded
+     */
+    int maxFiles;
+    /**
+     * Total bytes of closed segments retained, or 0 if unbounded
+     */
+    long maxTotalSize;
+    /**
+     * Whether closed segments are gzip-compressed
+     */
+    boolean compress;
+
+    /**
+     * @param configuration
+     *         writer configuration, taking the <code>rollover.size</code>, <code>rollover.period</code>,
+     *         <code>rollover.max-files</code>, <code>rollover.max-total-size</code>, and
+     *         <code>rollover.compress</code> entries, if present
+     * @return the rollover policy per the specified configuration, or null if neither rollover size nor period is
+     *         configured
+     */
+    static @Nullable RolloverPolicy from(@NonNull Map<String, String> configuration) {
+        String size = configuration.get("rollover.size");
+        String period = configuration.get("rollover.period");
+        if (size == null && period == null) {
+            return null;
+        }
+        String maxFiles = configuration.get("rollover.max-files");
+        String maxTotalSize = configuration.get("rollover.max-total-size");
+        String compress = configuration.get("rollover.compress");
+        return new RolloverPolicy(size == null ? 0 : Long.parseLong(size.trim()),
+                period == null ? null : Period.valueOf(period.trim().toUpperCase()),
+                maxFiles == null ? 0 : Integer.parseInt(maxFiles.trim()),
+                maxTotalSize == null ? 0 : Long.parseLong(maxTotalSize.trim()),
+                compress == null || Boolean.parseBoolean(compress.trim()));
+    }
+
+    /**
+     * @param fileSize
+     *         bytes already in the active file
+     * @param pendingBytes
+     *         bytes about to be written to the active file
+     * @param nowMillis
+     *         current time
+     * @param periodEndMillis
+     *         end of the active file's period, as of {@link #periodEnd(long)}
+     * @return true if the active file should be rolled over before writing the pending bytes
+     */
+    boolean isDue(long fileSize, long pendingBytes, long nowMillis, long periodEndMillis) {
+        return nowMillis >= periodEndMillis || (maxSize > 0 && fileSize > 0 && fileSize + pendingBytes > maxSize);
+    }
+
+    /**
+     * @param nowMillis
+     *         current time
+     * @return the end of the period containing the specified time, or {@link Long#MAX_VALUE} if not rolled over by
+     *         period
+     */
+    long periodEnd(long nowMillis) {
+        return period == null ? Long.MAX_VALUE : period.endOf(nowMillis);
+    }
+
+    /**
+     * @param activePath
+     *         path of the active file
+     * @param segmentStartMillis
+     *         time the active file started taking entries
+     * @return path, not taken yet, to move the active file to when closing it as a segment
+     */
+    static Path segmentPath(@NonNull Path activePath, long segmentStartMillis) {
+        String segmentName = activePath.getFileName() + "." + SEGMENT_TIMESTAMP.format(ZonedDateTime.ofInstant(
+                Instant.ofEpochMilli(segmentStartMillis),
+                ZoneId.systemDefault()));
+        Path segmentPath = activePath.resolveSibling(segmentName);
+        for (int i = 1; Files.exists(segmentPath) || Files.exists(compressed(segmentPath)); i++) {
+            segmentPath = activePath.resolveSibling(segmentName + "-" + i);
+        }
+        return segmentPath;
+    }
+
+    private static Path compressed(Path segmentPath) {
+        return segmentPath.resolveSibling(segmentPath.getFileName() + ".gz");
+    }
+
+    enum Period {
+        HOURLY(ChronoUnit.HOURS),
+        DAILY(ChronoUnit.DAYS);
+
+        private final ChronoUnit unit;
+
+        Period(ChronoUnit unit) {
+            this.unit = unit;
+        }
+
+        long endOf(long millis) {
+            return ZonedDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault())
+                    .truncatedTo(unit)
+                    .plus(1, unit)
+                    .toInstant()
+                    .toEpochMilli();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import elf4j.Level;
+import elf4j.util.InternalLogger;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses the closed segments of rolled-over files, and deletes those beyond retention, on a single low-priority
+ * daemon thread off the writers' hot path
+ */
+class SegmentArchiver {
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    /**
+     * What {@link RolloverPolicy#segmentPath(Path, long)} appends to the active file name: the segment start time,
+     * then a collision count if needed, and the compression suffix once archived
+     */
+    private static final String SEGMENT_SUFFIX = "\\.(\\d{8}-\\d{6}-\\d{3})(?:-(\\d{1,9}))?(?:\\.gz)?";
+    private static final ExecutorService ARCHIVER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "elf4j-engine-segment-archiver");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private SegmentArchiver() {
+    }
+
+    /**
+     * @param activePath
+     *         path of the active file whose segments to archive
+     * @param rolloverPolicy
+     *         whether to compress, and how many segments to retain
+     */
+    static void archive(@NonNull Path activePath, @NonNull RolloverPolicy rolloverPolicy) {
+        ARCHIVER.execute(() -> archiveNow(activePath, rolloverPolicy));
+    }
+
+    /**
+     * Compresses all uncompressed segments of the active file, including those left over by an earlier process, and
+     * then deletes the oldest segments beyond retention
+     */
+    static void archiveNow(@NonNull Path activePath, @NonNull RolloverPolicy rolloverPolicy) {
+        try {
+            if (rolloverPolicy.isCompress()) {
+                for (Path segment : segmentsOf(activePath)) {
+                    if (!segment.getFileName().toString().endsWith(GZIP_SUFFIX)) {
+                        compress(segment);
+                    }
+                }
+            }
+            retain(segmentsOf(activePath), rolloverPolicy);
+        } catch (IOException e) {
+            InternalLogger.INSTANCE.log(Level.ERROR, e, "Error archiving segments of " + activePath);
+        }
+    }
+
+    /**
+     * @return closed segments of the active file, newest first; other files sharing the name prefix are left alone
+     */
+    static List<Path> segmentsOf(Path activePath) throws IOException {
+        Path directory = activePath.toAbsolutePath().getParent();
+        Pattern segmentName = Pattern.compile(Pattern.quote(activePath.getFileName().toString()) + SEGMENT_SUFFIX);
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> segmentName.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .sorted(Comparator.comparing((Matcher segment) -> segment.group(1))
+                            .thenComparingLong(segment -> segment.group(2) == null ? 0 :
+                                    Long.parseLong(segment.group(2)))
+                            .reversed())
+                    .map(segment -> directory.resolve(segment.group()))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static void compress(Path segment) throws IOException {
+        Path compressed = segment.resolveSibling(segment.getFileName() + GZIP_SUFFIX);
+        Path temporary = segment.resolveSibling(compressed.getFileName() + TEMPORARY_SUFFIX);
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temporary))) {
+            Files.copy(segment, out);
+        }
+        try {
+            Files.move(temporary, compressed, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, compressed, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.delete(segment);
+    }
+
+    private static void retain(List<Path> segmentsNewestFirst, RolloverPolicy rolloverPolicy) throws IOException {
+        long totalSize = 0;
+        for (int i = 0; i < segmentsNewestFirst.size(); i++) {
+            Path segment = segmentsNewestFirst.get(i);
+            totalSize += Files.size(segment);
+            if ((rolloverPolicy.getMaxFiles() > 0 && i >= rolloverPolicy.getMaxFiles())
+                    || (rolloverPolicy.getMaxTotalSize() > 0 && totalSize > rolloverPolicy.getMaxTotalSize())) {
+                Files.deleteIfExists(segment);
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Tails the ring file published by a {@link SharedMemoryWriter}, typically from another process, advancing the
+ * consumer cursor as it goes so the writer can reuse the consumed room. Only one reader may consume a ring file at a
+ * time. Not thread-safe.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+public class SharedMemoryReader implements Closeable {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    @ToString.Include private final Path path;
+    private final int capacity;
+    private final MappedByteBuffer ring;
+    private final MappedByteBuffer cursor;
+    private long consumed;
+    /**
+     * Always zero; read right after the header's producer offset and before the entry bytes, to keep the entry bytes
+     * from being loaded ahead of the producer offset
+     */
+    private volatile long loadFence;
+
+    private SharedMemoryReader(Path path, MappedByteBuffer ring, MappedByteBuffer cursor) {
+        this.path = path;
+        this.ring = ring;
+        this.cursor = cursor;
+        this.capacity = ring.getInt(SharedMemoryWriter.CAPACITY_INDEX);
+        this.consumed = cursor.getLong(0);
+    }
+
+    /**
+     * Prints the entries published to the ring file to stdout, as they arrive, until the process is stopped
+     *
+     * @param args
+     *         path of the ring file published by {@link SharedMemoryWriter}
+     * @throws IOException
+     *         if the file cannot be mapped, or is not published by {@link SharedMemoryWriter}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("Usage: SharedMemoryReader <path>");
+        }
+        try (SharedMemoryReader reader = open(Paths.get(args[0]))) {
+            Consumer<ByteBuffer> printer = entry -> {
+                byte[] bytes = new byte[entry.remaining()];
+                entry.get(bytes);
+                System.out.print(new String(bytes, StandardCharsets.UTF_8));
+            };
+            while (!Thread.currentThread().isInterrupted()) {
+                if (reader.poll(printer, Integer.MAX_VALUE) == 0) {
+                    System.out.flush();
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param path
+     *         of the ring file published by {@link SharedMemoryWriter}, whose cursor file is next to it
+     * @return reader resuming from the consumer cursor
+     * @throws IOException
+     *         if the files cannot be mapped, or are not published by {@link SharedMemoryWriter}
+     */
+    public static SharedMemoryReader open(@NonNull Path path) throws IOException {
+        MappedByteBuffer ring;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < SharedMemoryWriter.HEADER_SIZE) {
+                throw new IOException("Not a shared memory log file: " + path);
+            }
+            ring = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int capacity = ring.getInt(SharedMemoryWriter.CAPACITY_INDEX);
+        if (ring.getInt(SharedMemoryWriter.MAGIC_INDEX) != SharedMemoryWriter.MAGIC || capacity <= 0
+                || ring.capacity() < SharedMemoryWriter.HEADER_SIZE + (long) capacity) {
+            throw new IOException("Not a shared memory log file, or corrupt header: " + path);
+        }
+        MappedByteBuffer cursor;
+        try (FileChannel channel = FileChannel.open(SharedMemoryWriter.cursorPath(path),
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            cursor = channel.map(FileChannel.MapMode.READ_WRITE, 0, SharedMemoryWriter.CURSOR_SIZE);
+        }
+        return new SharedMemoryReader(path, ring, cursor);
+    }
+
+    /**
+     * @param consumer
+     *         of each published entry, in order, as a read-only view of the entry's UTF-8 bytes in the shared memory,
+     *         only valid until the consumer returns
+     * @param maxEntries
+     *         max number of entries to consume in this call
+     * @return number of entries consumed, zero if none is published past the cursor
+     */
+    public int poll(@NonNull Consumer<ByteBuffer> consumer, int maxEntries) {
+        long end = producer();
+        if (end < consumed || end - consumed > capacity) {
+            consumed = 0;
+            end = producer();
+            if (!SharedMemoryWriter.isValid(consumed, end, capacity)) {
+                return 0;
+            }
+        }
+        int count = 0;
+        while (consumed < end && count < maxEntries) {
+            int position = (int) (consumed % capacity);
+            int length = ring.getInt(SharedMemoryWriter.HEADER_SIZE + position);
+            if (length == SharedMemoryWriter.PADDING) {
+                consumed += capacity - position;
+                continue;
+            }
+            ByteBuffer entry = ring.asReadOnlyBuffer();
+            entry.position(SharedMemoryWriter.HEADER_SIZE + position + SharedMemoryWriter.LENGTH_SIZE);
+            entry.limit(entry.position() + length);
+            consumer.accept(entry);
+            consumed += SharedMemoryWriter.align(SharedMemoryWriter.LENGTH_SIZE + length);
+            count++;
+        }
+        cursor.putLong(0, consumed);
+        return count;
+    }
+
+    /**
+     * @return number of published bytes not yet consumed
+     */
+    public long lag() {
+        return ring.getLong(SharedMemoryWriter.PRODUCER_INDEX) - consumed;
+    }
+
+    @Override
+    public void close() {
+        cursor.force();
+    }
+
+    /**
+     * @return the header's producer offset, followed by a volatile load so that no entry byte is loaded ahead of it
+     */
+    private long producer() {
+        long producer = ring.getLong(SharedMemoryWriter.PRODUCER_INDEX);
+        return producer + loadFence;
+    }
+}
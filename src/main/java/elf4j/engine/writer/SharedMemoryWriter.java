@@ -0,0 +1,407 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import elf4j.Level;
+import elf4j.engine.service.LogEntry;
+import elf4j.engine.writer.pattern.LogPattern;
+import elf4j.engine.writer.pattern.PatternSegmentGroup;
+import elf4j.util.InternalLogger;
+import lombok.NonNull;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Publishes entries into a memory-mapped ring file, for a consumer in another process, e.g. a log shipping sidecar, to
+ * tail with {@link SharedMemoryReader}. Neither side makes any system call per entry.
+ * <p>
+ * The ring file starts with a header of {@value #HEADER_SIZE} bytes: the magic number, the capacity of the data
+ * region, and the logical producer offset up to which entries are published. The consumer keeps the logical offset up
+ * to which it has consumed in a separate cursor file, written by the consumer; the writer only resets the cursor to
+ * zero when it initializes a new or invalid ring file, before publishing anything to it. Logical offsets only ever
+ * grow; the data region position of a logical offset is the offset modulo the capacity. Each entry is its UTF-8 length
+ * as an int, followed by its UTF-8 bytes, padded to a multiple of {@value #ALIGNMENT} bytes. An entry never wraps
+ * around the end of the data region: if it does not fit before the end, the rest of the region is skipped, marked by a
+ * length of {@value #PADDING}.
+ * <p>
+ * If the consumer falls behind and the ring is full, the writer applies back-pressure: by default, it waits for the
+ * consumer to make room, up to the <code>backpressure.timeout</code>, and then drops the entry; with
+ * <code>backpressure=drop</code>, it drops the entry right away. Once a wait has timed out, e.g. with no consumer
+ * running, the writer takes the consumer as stalled, and drops entries right away until the consumer cursor moves
+ * again, rather than waiting the full timeout on every entry. Dropped entries are counted and reported. Only one
+ * writer process may publish to a ring file at a time.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+public class SharedMemoryWriter implements EncodingWriter {
+    static final int MAGIC = 0x454c4653;
+    static final int HEADER_SIZE = 64;
+    static final int MAGIC_INDEX = 0;
+    static final int CAPACITY_INDEX = 4;
+    static final int PRODUCER_INDEX = 8;
+    static final int CURSOR_SIZE = Long.BYTES;
+    static final int LENGTH_SIZE = Integer.BYTES;
+    static final int ALIGNMENT = 4;
+    static final int PADDING = -1;
+    static final String CURSOR_SUFFIX = ".cursor";
+    private static final Level DEFAULT_MINIMUM_LEVEL = Level.TRACE;
+    private static final String DEFAULT_PATTERN =
+            "{timestamp:yyyy-MM-dd'T'HH:mm:ss.SSSZZZZZ} {level} {class} - {message}";
+    private static final int DEFAULT_CAPACITY = 16 * 1024 * 1024;
+    private static final int MIN_CAPACITY = 1024;
+    private static final long DEFAULT_BACKPRESSURE_TIMEOUT_MILLIS = 1000;
+    private static final int BACKPRESSURE_SPINS = 100;
+    private static final long BACKPRESSURE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    @ToString.Include private final Path path;
+    @ToString.Include private final Level minimumLevel;
+    @ToString.Include private final int capacity;
+    @ToString.Include private final Backpressure backpressure;
+    private final long backpressureTimeoutNanos;
+    private final LogPattern logPattern;
+    private final TextEncoder encoder = new TextEncoder();
+    private final StringBuilder text = new StringBuilder();
+    @Nullable private MappedByteBuffer ring;
+    @Nullable private MappedByteBuffer cursor;
+    private long producer;
+    private long dropped;
+    /**
+     * Consumer cursor at the last back-pressure timeout, or -1 if the consumer is not taken as stalled
+     */
+    private long stalledCursor = -1;
+    /**
+     * Written after each entry's bytes, and then read back to store as the header's producer offset: a volatile store
+     * only keeps the stores before it in order, so the volatile load is what keeps the producer offset from becoming
+     * visible before the entry bytes
+     */
+    private volatile long published;
+
+    SharedMemoryWriter(@NonNull Path path,
+            @NonNull Level minimumLevel,
+            @NonNull LogPattern logPattern,
+            int capacity,
+            @NonNull Backpressure backpressure,
+            long backpressureTimeoutMillis) {
+        if (capacity < MIN_CAPACITY || capacity % ALIGNMENT != 0) {
+            throw new IllegalArgumentException("size: " + capacity);
+        }
+        this.path = path;
+        this.minimumLevel = minimumLevel;
+        this.logPattern = logPattern;
+        this.capacity = capacity;
+        this.backpressure = backpressure;
+        this.backpressureTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(backpressureTimeoutMillis);
+    }
+
+    /**
+     * @param configuration
+     *         properties map to make a shared memory writer, taking the <code>path</code> entry, and the
+     *         <code>level</code>, <code>pattern</code>, <code>size</code>, <code>backpressure</code>, and
+     *         <code>backpressure.timeout</code> entries if present
+     * @return shared memory writer per the specified configuration
+     */
+    public static @Nonnull SharedMemoryWriter from(@NonNull Map<String, String> configuration) {
+        String path = configuration.get("path");
+        if (path == null) {
+            throw new IllegalArgumentException("No path configured for shared memory writer: " + configuration);
+        }
+        String level = configuration.get("level");
+        String pattern = configuration.get("pattern");
+        String size = configuration.get("size");
+        String backpressure = configuration.get("backpressure");
+        String timeout = configuration.get("backpressure.timeout");
+        return new SharedMemoryWriter(Paths.get(path),
+                level == null ? DEFAULT_MINIMUM_LEVEL : Level.valueOf(level.toUpperCase()),
+                PatternSegmentGroup.from(pattern == null ? DEFAULT_PATTERN : pattern),
+                size == null ? DEFAULT_CAPACITY : Integer.parseInt(size.trim()),
+                backpressure == null ? Backpressure.BLOCK : Backpressure.valueOf(backpressure.trim().toUpperCase()),
+                timeout == null ? DEFAULT_BACKPRESSURE_TIMEOUT_MILLIS : Long.parseLong(timeout.trim()));
+    }
+
+    static Path cursorPath(Path ringPath) {
+        return ringPath.resolveSibling(ringPath.getFileName() + CURSOR_SUFFIX);
+    }
+
+    static int align(int length) {
+        return (length + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    static boolean isValid(long consumed, long producer, int capacity) {
+        return consumed >= 0 && producer >= consumed && producer - consumed <= capacity;
+    }
+
+    @Override
+    public Level getMinimumOutputLevel() {
+        return minimumLevel;
+    }
+
+    @Override
+    public synchronized void write(@NonNull LogEntry logEntry) {
+        if (logEntry.getNativeLogger().getLevel().compareTo(this.minimumLevel) < 0) {
+            return;
+        }
+        text.setLength(0);
+        logPattern.render(logEntry, text);
+        text.append(System.lineSeparator());
+        if (map()) {
+            publish(text);
+        }
+    }
+
+    @Override
+    public @Nullable EncodedEntry encode(@NonNull LogEntry logEntry, @NonNull ByteArena byteArena) {
+        if (logEntry.getNativeLogger().getLevel().compareTo(this.minimumLevel) < 0) {
+            return null;
+        }
+        StringBuilder target = byteArena.text();
+        logPattern.render(logEntry, target);
+        target.append(System.lineSeparator());
+        return byteArena.encode(target, 0);
+    }
+
+    @Override
+    public synchronized void writeEncoded(@NonNull List<EncodedEntry> encodedEntries) {
+        if (!map()) {
+            return;
+        }
+        for (EncodedEntry encodedEntry : encodedEntries) {
+            publish(ByteBuffer.wrap(encodedEntry.getBytes(), encodedEntry.getOffset(), encodedEntry.getLength()));
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        reportDropped();
+    }
+
+    @Override
+    public boolean includeCallerDetail() {
+        return logPattern.includeCallerDetail();
+    }
+
+    @Override
+    public boolean includeCallerThread() {
+        return logPattern.includeCallerThread();
+    }
+
+    private int maxLength() {
+        return capacity - LENGTH_SIZE;
+    }
+
+    private void publish(CharSequence chars) {
+        int length = TextEncoder.utf8Length(chars);
+        if (length > maxLength()) {
+            publish(ByteBuffer.wrap(chars.toString().getBytes(StandardCharsets.UTF_8)));
+            return;
+        }
+        ByteBuffer target = reserve(length);
+        if (target != null) {
+            encoder.encode(chars, target, () -> {
+                throw new IllegalStateException("Reserved " + length + " bytes overflown");
+            });
+            commit(length);
+        }
+    }
+
+    private void publish(ByteBuffer entry) {
+        int length = Math.min(entry.remaining(), maxLength());
+        ByteBuffer target = reserve(length);
+        if (target != null) {
+            entry.limit(entry.position() + length);
+            target.put(entry);
+            commit(length);
+        }
+    }
+
+    /**
+     * Waits for room per the back-pressure setting, skipping the rest of the data region if the entry does not fit
+     * before its end
+     *
+     * @return the data region slice to write the entry bytes into, or null if the entry is dropped
+     */
+    private @Nullable ByteBuffer reserve(int length) {
+        MappedByteBuffer buffer = ring;
+        assert buffer != null;
+        int recordSize = align(LENGTH_SIZE + length);
+        int position = (int) (producer % capacity);
+        int remainingToEnd = capacity - position;
+        long deadline = System.nanoTime() + backpressureTimeoutNanos;
+        if (recordSize > remainingToEnd) {
+            if (!awaitRoom(remainingToEnd, deadline)) {
+                return drop();
+            }
+            buffer.putInt(HEADER_SIZE + position, PADDING);
+            producer += remainingToEnd;
+            position = 0;
+        }
+        if (!awaitRoom(recordSize, deadline)) {
+            return drop();
+        }
+        ByteBuffer target = buffer.duplicate();
+        target.position(HEADER_SIZE + position + LENGTH_SIZE);
+        target.limit(HEADER_SIZE + position + LENGTH_SIZE + length);
+        return target;
+    }
+
+    /**
+     * Writes the length of the entry whose bytes are in place, and then publishes it to the consumer
+     */
+    private void commit(int length) {
+        MappedByteBuffer buffer = ring;
+        assert buffer != null;
+        buffer.putInt(HEADER_SIZE + (int) (producer % capacity), length);
+        producer += align(LENGTH_SIZE + length);
+        published = producer;
+        buffer.putLong(PRODUCER_INDEX, published);
+        if (dropped > 0) {
+            reportDropped();
+        }
+    }
+
+    private @Nullable ByteBuffer drop() {
+        dropped++;
+        if (producer != published) {
+            published = producer;
+            MappedByteBuffer buffer = ring;
+            assert buffer != null;
+            buffer.putLong(PRODUCER_INDEX, published);
+        }
+        return null;
+    }
+
+    private void reportDropped() {
+        if (dropped > 0) {
+            InternalLogger.INSTANCE.log(Level.WARN,
+                    "Dropped " + dropped + " entries while the consumer fell behind: " + this);
+            dropped = 0;
+        }
+    }
+
+    private boolean awaitRoom(int size, long deadline) {
+        MappedByteBuffer consumer = cursor;
+        assert consumer != null;
+        int spins = 0;
+        long consumed;
+        while (producer + size - (consumed = consumer.getLong(0)) > capacity) {
+            if (backpressure == Backpressure.DROP) {
+                return false;
+            }
+            if (stalledCursor >= 0) {
+                if (consumed == stalledCursor) {
+                    return false;
+                }
+                stalledCursor = -1;
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                stalledCursor = consumed;
+                return false;
+            }
+            if (spins++ < BACKPRESSURE_SPINS) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(BACKPRESSURE_PARK_NANOS);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the ring and cursor files are mapped, mapping them on first use, or false if they cannot be
+     *         mapped
+     */
+    private boolean map() {
+        if (ring != null) {
+            return true;
+        }
+        MappedByteBuffer mappedCursor;
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                ring = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) HEADER_SIZE + capacity);
+            }
+            try (FileChannel channel = FileChannel.open(cursorPath(path),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                mappedCursor = channel.map(FileChannel.MapMode.READ_WRITE, 0, CURSOR_SIZE);
+            }
+        } catch (IOException e) {
+            InternalLogger.INSTANCE.log(Level.ERROR, e, "Error mapping " + this);
+            ring = null;
+            return false;
+        }
+        MappedByteBuffer mappedRing = ring;
+        if (mappedRing.getInt(MAGIC_INDEX) == MAGIC && mappedRing.getInt(CAPACITY_INDEX) == capacity
+                && isValid(mappedCursor.getLong(0), mappedRing.getLong(PRODUCER_INDEX), capacity)) {
+            producer = mappedRing.getLong(PRODUCER_INDEX);
+            InternalLogger.INSTANCE.log(Level.INFO,
+                    "Publishing after " + (producer - mappedCursor.getLong(0)) + " unconsumed bytes: " + this);
+        } else {
+            producer = 0;
+            mappedCursor.putLong(0, 0);
+            mappedRing.putLong(PRODUCER_INDEX, 0);
+            mappedRing.putInt(CAPACITY_INDEX, capacity);
+            mappedRing.putInt(MAGIC_INDEX, MAGIC);
+        }
+        published = producer;
+        cursor = mappedCursor;
+        return true;
+    }
+
+    /**
+     * What to do when the ring is full
+     */
+    enum Backpressure {
+        /**
+         * Wait for the consumer to make room, up to the timeout, and then drop the entry; drop right away after a
+         * timeout until the consumer moves again
+         */
+        BLOCK,
+        /**
+         * Drop the entry right away
+         */
+        DROP
+    }
+}
@@ -0,0 +1,463 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import elf4j.Level;
+import elf4j.engine.service.LogEntry;
+import elf4j.engine.writer.pattern.LogPattern;
+import elf4j.engine.writer.pattern.PatternSegmentGroup;
+import elf4j.util.InternalLogger;
+import lombok.NonNull;
+import lombok.ToString;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ships entries, by default as JSON lines, to a collector over TCP, without ever blocking the thread writing to it.
+ * <p>
+ * Rendered entries are encoded into batch buffers of the buffer size. A batch is sealed for sending when full, when
+ * flushed, or a linger interval after its first entry; sealed batches are written to a non-blocking socket channel
+ * as far as the socket takes them, and the rest is retried on the next write or by a background timer. Connecting,
+ * and reconnecting after an error with exponential backoff, are only done by the timer, which looks up the host name
+ * without holding the writer's lock. While disconnected, sealed batches are kept up to the max buffered bytes, beyond
+ * which the oldest batches are dropped. A batch cut short by a disconnect is resent in full after reconnecting, so a
+ * collector may receive some entries twice but never a partial line: each entry is kept whole in one batch, unless it
+ * is larger than the buffer size.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+public class SocketChannelWriter implements EncodingWriter {
+    private static final Level DEFAULT_MINIMUM_LEVEL = Level.TRACE;
+    private static final String DEFAULT_HOST = "localhost";
+    private static final String DEFAULT_PATTERN = "{json}";
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int MIN_BUFFER_SIZE = 64;
+    private static final long DEFAULT_LINGER_MILLIS = 50;
+    private static final long DEFAULT_MAX_BUFFERED_BYTES = 8 * 1024 * 1024;
+    private static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 100;
+    private static final long DEFAULT_MAX_BACKOFF_MILLIS = 10_000;
+    private static final long CLOSE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long CLOSE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "elf4j-engine-socket-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    @ToString.Include private final String host;
+    @ToString.Include private final int port;
+    @ToString.Include private final Level minimumLevel;
+    private final LogPattern logPattern;
+    private final int bufferSize;
+    private final long lingerNanos;
+    private final long maxBufferedBytes;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final TextEncoder encoder = new TextEncoder();
+    private final StringBuilder text = new StringBuilder();
+    private final ArrayDeque<ByteBuffer> sealed = new ArrayDeque<>();
+    private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+    @Nullable private ByteBuffer current;
+    private long currentStartNanos;
+    private long sealedBytes;
+    @Nullable private SocketChannel channel;
+    private volatile boolean connected;
+    private long backoffNanos;
+    private long nextConnectNanos;
+    private int connectFailures;
+    private long droppedBytes;
+    @Nullable private ScheduledFuture<?> timer;
+
+    SocketChannelWriter(@NonNull String host,
+            int port,
+            @NonNull Level minimumLevel,
+            @NonNull LogPattern logPattern,
+            int bufferSize,
+            long lingerMillis,
+            long maxBufferedBytes,
+            long initialBackoffMillis,
+            long maxBackoffMillis) {
+        if (bufferSize < MIN_BUFFER_SIZE) {
+            throw new IllegalArgumentException("buffer-size: " + bufferSize);
+        }
+        if (maxBufferedBytes < bufferSize) {
+            throw new IllegalArgumentException("max-buffered-bytes: " + maxBufferedBytes);
+        }
+        this.host = host;
+        this.port = port;
+        this.minimumLevel = minimumLevel;
+        this.logPattern = logPattern;
+        this.bufferSize = bufferSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, lingerMillis));
+        this.maxBufferedBytes = maxBufferedBytes;
+        this.initialBackoffNanos = TimeUnit.MILLISECONDS.toNanos(initialBackoffMillis);
+        this.maxBackoffNanos = TimeUnit.MILLISECONDS.toNanos(maxBackoffMillis);
+        this.backoffNanos = initialBackoffNanos;
+    }
+
+    /**
+     * @param configuration
+     *         properties map to make a TCP writer, taking the <code>port</code> entry, and the <code>host</code>,
+     *         <code>level</code>, <code>pattern</code>, <code>buffer-size</code>, <code>linger</code>,
+     *         <code>max-buffered-bytes</code>, <code>reconnect.initial-backoff</code>, and
+     *         <code>reconnect.max-backoff</code> entries if present
+     * @return TCP writer per the specified configuration
+     */
+    public static @Nonnull SocketChannelWriter from(@NonNull Map<String, String> configuration) {
+        String port = configuration.get("port");
+        if (port == null) {
+            throw new IllegalArgumentException("No port configured for TCP writer: " + configuration);
+        }
+        String host = configuration.get("host");
+        String level = configuration.get("level");
+        String pattern = configuration.get("pattern");
+        return new SocketChannelWriter(host == null ? DEFAULT_HOST : host,
+                Integer.parseInt(port.trim()),
+                level == null ? DEFAULT_MINIMUM_LEVEL : Level.valueOf(level.toUpperCase()),
+                PatternSegmentGroup.from(pattern == null ? DEFAULT_PATTERN : pattern),
+                (int) getLong(configuration, "buffer-size", DEFAULT_BUFFER_SIZE),
+                getLong(configuration, "linger", DEFAULT_LINGER_MILLIS),
+                getLong(configuration, "max-buffered-bytes", DEFAULT_MAX_BUFFERED_BYTES),
+                getLong(configuration, "reconnect.initial-backoff", DEFAULT_INITIAL_BACKOFF_MILLIS),
+                getLong(configuration, "reconnect.max-backoff", DEFAULT_MAX_BACKOFF_MILLIS));
+    }
+
+    private static long getLong(Map<String, String> configuration, String key, long defaultValue) {
+        String value = configuration.get(key);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    @Override
+    public Level getMinimumOutputLevel() {
+        return minimumLevel;
+    }
+
+    @Override
+    public synchronized void write(@NonNull LogEntry logEntry) {
+        if (logEntry.getNativeLogger().getLevel().compareTo(this.minimumLevel) < 0) {
+            return;
+        }
+        append(logEntry);
+        send();
+    }
+
+    @Override
+    public synchronized void write(@NonNull List<LogEntry> logEntries) {
+        for (LogEntry logEntry : logEntries) {
+            if (logEntry.getNativeLogger().getLevel().compareTo(this.minimumLevel) >= 0) {
+                append(logEntry);
+            }
+        }
+        send();
+    }
+
+    @Override
+    public @Nullable EncodedEntry encode(@NonNull LogEntry logEntry, @NonNull ByteArena byteArena) {
+        if (logEntry.getNativeLogger().getLevel().compareTo(this.minimumLevel) < 0) {
+            return null;
+        }
+        StringBuilder target = byteArena.text();
+        logPattern.render(logEntry, target);
+        target.append('\n');
+        return byteArena.encode(target, 0);
+    }
+
+    @Override
+    public synchronized void writeEncoded(@NonNull List<EncodedEntry> encodedEntries) {
+        for (EncodedEntry encodedEntry : encodedEntries) {
+            put(encodedEntry.getBytes(), encodedEntry.getOffset(), encodedEntry.getLength());
+        }
+        send();
+    }
+
+    /**
+     * Seals the batch being filled, and sends as much as the socket takes without blocking
+     */
+    @Override
+    public synchronized void flush() {
+        seal();
+        send();
+    }
+
+    /**
+     * Sends the buffered entries, waiting up to one second for the collector to take them, and then disconnects
+     */
+    @Override
+    public synchronized void close() {
+        seal();
+        if (timer != null) {
+            timer.cancel(false);
+            timer = null;
+        }
+        long deadline = System.nanoTime() + CLOSE_TIMEOUT_NANOS;
+        while (!sealed.isEmpty() && System.nanoTime() - deadline < 0) {
+            if (!connected) {
+                connect(channel == null ? new InetSocketAddress(host, port) : null);
+            }
+            send();
+            if (!sealed.isEmpty()) {
+                LockSupport.parkNanos(CLOSE_PARK_NANOS);
+            }
+        }
+        if (!sealed.isEmpty()) {
+            droppedBytes += sealedBytes;
+            free.addAll(sealed);
+            sealed.clear();
+            sealedBytes = 0;
+        }
+        reportDropped();
+        disconnect();
+        backoffNanos = initialBackoffNanos;
+        nextConnectNanos = 0;
+    }
+
+    /**
+     * @param bytes
+     *         already encoded and framed by the caller, e.g. a syslog writer, to ship as they are
+     * @param offset
+     *         of the bytes to ship
+     * @param length
+     *         of the bytes to ship
+     */
+    synchronized void writeBytes(byte[] bytes, int offset, int length) {
+        put(bytes, offset, length);
+        send();
+    }
+
+    @Override
+    public boolean includeCallerDetail() {
+        return logPattern.includeCallerDetail();
+    }
+
+    @Override
+    public boolean includeCallerThread() {
+        return logPattern.includeCallerThread();
+    }
+
+    private void append(LogEntry logEntry) {
+        text.setLength(0);
+        logPattern.render(logEntry, text);
+        text.append('\n');
+        int length = TextEncoder.utf8Length(text);
+        if (length > bufferSize) {
+            byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+            put(bytes, 0, bytes.length);
+            return;
+        }
+        ByteBuffer batch = batch();
+        if (batch.remaining() < length) {
+            seal();
+            batch = batch();
+        }
+        encoder.encode(text, batch, () -> {
+            throw new IllegalStateException("Batch overflown encoding " + length + " bytes");
+        });
+    }
+
+    /**
+     * Puts the bytes of one entry, or one frame, whole into a batch, sealing the batch being filled first if the bytes
+     * do not fit in it. Only bytes larger than a whole batch are split across consecutive batches; such an entry may
+     * reach the collector partially, if part of it is dropped over the max buffered bytes, or is resent after a
+     * disconnect.
+     */
+    private void put(byte[] bytes, int offset, int length) {
+        ByteBuffer batch = batch();
+        if (batch.remaining() < length) {
+            seal();
+        }
+        while (length > 0) {
+            batch = batch();
+            if (!batch.hasRemaining()) {
+                seal();
+                batch = batch();
+            }
+            int chunk = Math.min(length, batch.remaining());
+            batch.put(bytes, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * @return the batch being filled, taking a new one if none
+     */
+    private ByteBuffer batch() {
+        if (current == null) {
+            current = free.isEmpty() ? ByteBuffer.allocateDirect(bufferSize) : free.poll();
+            currentStartNanos = System.nanoTime();
+            if (timer == null) {
+                long period = Math.min(lingerNanos, initialBackoffNanos);
+                timer = TIMER.scheduleWithFixedDelay(this::tick, period, period, TimeUnit.NANOSECONDS);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Moves the batch being filled, if not empty, to the batches to send; and then drops the oldest batches not being
+     * sent if over the max buffered bytes
+     */
+    private void seal() {
+        if (current == null || current.position() == 0) {
+            return;
+        }
+        current.flip();
+        sealed.add(current);
+        sealedBytes += current.limit();
+        current = null;
+        Iterator<ByteBuffer> oldest = sealed.iterator();
+        while (sealedBytes > maxBufferedBytes && oldest.hasNext()) {
+            ByteBuffer batch = oldest.next();
+            if (batch.position() > 0) {
+                continue;
+            }
+            oldest.remove();
+            sealedBytes -= batch.limit();
+            droppedBytes += batch.limit();
+            batch.clear();
+            free.add(batch);
+        }
+    }
+
+    /**
+     * Writes the sealed batches to the socket, as far as it takes them without blocking; disconnects on error
+     */
+    private void send() {
+        SocketChannel socketChannel = channel;
+        if (!connected || socketChannel == null) {
+            return;
+        }
+        ByteBuffer head;
+        while ((head = sealed.peek()) != null) {
+            try {
+                socketChannel.write(head);
+            } catch (IOException e) {
+                InternalLogger.INSTANCE.log(Level.WARN, e, "Disconnected from collector, reconnecting: " + this);
+                head.rewind();
+                disconnect();
+                return;
+            }
+            if (head.hasRemaining()) {
+                return;
+            }
+            sealed.poll();
+            sealedBytes -= head.limit();
+            head.clear();
+            free.add(head);
+        }
+    }
+
+    /**
+     * Runs on the timer thread: seals the batch being filled if lingered long enough, (re)connects if due, and sends.
+     * The host name is looked up before taking the lock, so the lookup never blocks the writing threads.
+     */
+    private void tick() {
+        InetSocketAddress address = connected ? null : new InetSocketAddress(host, port);
+        synchronized (this) {
+            if (current != null && System.nanoTime() - currentStartNanos >= lingerNanos) {
+                seal();
+            }
+            if (!connected) {
+                connect(address);
+            }
+            send();
+        }
+    }
+
+    /**
+     * Connects, or finishes connecting, without blocking; on error, backs off exponentially before the next attempt
+     *
+     * @param address
+     *         looked up address of the collector, to start connecting to if not yet; null to only finish connecting
+     */
+    private void connect(@Nullable InetSocketAddress address) {
+        long now = System.nanoTime();
+        if (channel == null && (address == null || now - nextConnectNanos < 0)) {
+            return;
+        }
+        try {
+            if (channel == null) {
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+                connected = channel.connect(address);
+            } else {
+                connected = channel.finishConnect();
+            }
+        } catch (IOException | RuntimeException e) {
+            if (connectFailures++ == 0) {
+                InternalLogger.INSTANCE.log(Level.WARN, e, "Error connecting to collector, retrying with backoff: "
+                        + this);
+            }
+            disconnect();
+            nextConnectNanos = now + backoffNanos;
+            backoffNanos = Math.min(backoffNanos * 2, maxBackoffNanos);
+            return;
+        }
+        if (connected) {
+            InternalLogger.INSTANCE.log(Level.INFO, "Connected to collector: " + this);
+            connectFailures = 0;
+            backoffNanos = initialBackoffNanos;
+            reportDropped();
+        }
+    }
+
+    private void disconnect() {
+        connected = false;
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            InternalLogger.INSTANCE.log(Level.ERROR, e, "Error closing " + this);
+        }
+        channel = null;
+    }
+
+    private void reportDropped() {
+        if (droppedBytes > 0) {
+            InternalLogger.INSTANCE.log(Level.WARN,
+                    "Dropped " + droppedBytes + " buffered bytes over the max while disconnected: " + this);
+            droppedBytes = 0;
+        }
+    }
+}
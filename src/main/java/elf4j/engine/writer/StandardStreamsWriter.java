@@ -29,32 +29,55 @@ import elf4j.Level;
 import elf4j.engine.service.LogEntry;
 import elf4j.engine.writer.pattern.LogPattern;
 import elf4j.engine.writer.pattern.PatternSegmentGroup;
+import elf4j.util.InternalLogger;
 import lombok.NonNull;
 import lombok.ToString;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.List;
 import java.util.Map;
 
 /**
  *
  */
 @ToString
-public class StandardStreamsWriter implements LogWriter {
+public class StandardStreamsWriter implements EncodingWriter {
     private static final Level DEFAULT_MINIMUM_LEVEL = Level.TRACE;
     private static final OutStreamType DEFAULT_WRITER_OUT_STREAM = OutStreamType.STDOUT;
+    private static final int STDOUT_TARGET = 0;
+    private static final int STDERR_TARGET = 1;
+    /**
+     * Target flag of an encoded entry to flush right after written, regardless of the flush policy
+     */
+    private static final int FLUSH_IMMEDIATELY = 0b10;
+    private static final int INITIAL_TEXT_CAPACITY = 256;
+    private static final int MAX_REUSED_TEXT_CAPACITY = 16 * 1024;
+    private static final ThreadLocal<StringBuilder> TEXT =
+            ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_TEXT_CAPACITY));
     private static final String DEFAULT_PATTERN =
             "{timestamp:yyyy-MM-dd'T'HH:mm:ss.SSSZZZZZ} {level} {class} - {message}";
     private final LogPattern logPattern;
     private final Level minimumLevel;
     private final OutStreamType outStreamType;
+    private final FlushPolicy flushPolicy;
 
-    private StandardStreamsWriter(Level minimumLevel, PatternSegmentGroup logPattern, OutStreamType outStreamType) {
+    private StandardStreamsWriter(Level minimumLevel,
+            PatternSegmentGroup logPattern,
+            OutStreamType outStreamType,
+            FlushPolicy flushPolicy) {
         this.logPattern = logPattern;
         this.minimumLevel = minimumLevel;
         this.outStreamType = outStreamType;
+        this.flushPolicy = flushPolicy;
     }
 
     /**
@@ -63,12 +86,14 @@ public class StandardStreamsWriter implements LogWriter {
     public static @Nonnull StandardStreamsWriter defaultWriter() {
         return new StandardStreamsWriter(DEFAULT_MINIMUM_LEVEL,
                 PatternSegmentGroup.from(DEFAULT_PATTERN),
-                DEFAULT_WRITER_OUT_STREAM);
+                DEFAULT_WRITER_OUT_STREAM,
+                FlushPolicy.ALWAYS);
     }
 
     /**
      * @param configuration
-     *         properties map to make a console writer
+     *         properties map to make a console writer, taking the <code>flush</code>, <code>flush.bytes</code>, and
+     *         <code>flush.interval</code> entries, if present, for the {@link FlushPolicy}
      * @param defaultOutStreamType
      *         override of global default out stream type for standard writers. Writer-specific type, if present, takes
      *         precedence over global level. If no out stream type configured on either global or writer level, default
@@ -88,7 +113,8 @@ public class StandardStreamsWriter implements LogWriter {
         }
         return new StandardStreamsWriter(level == null ? DEFAULT_MINIMUM_LEVEL : Level.valueOf(level.toUpperCase()),
                 PatternSegmentGroup.from(pattern == null ? DEFAULT_PATTERN : pattern),
-                OutStreamType.valueOf(writerOutStreamType.trim().toUpperCase()));
+                OutStreamType.valueOf(writerOutStreamType.trim().toUpperCase()),
+                FlushPolicy.from(configuration));
     }
 
     @Override
@@ -101,53 +127,273 @@ public class StandardStreamsWriter implements LogWriter {
         if (logEntry.getNativeLogger().getLevel().compareTo(this.minimumLevel) < 0) {
             return;
         }
-        StringBuilder target = new StringBuilder();
+        (isForStderr(logEntry) ? BufferedStandardOutputStream.ERR : BufferedStandardOutputStream.OUT).write(render(
+                logEntry), flushPolicy, isFlushImmediately(logEntry));
+    }
+
+    /**
+     * Encodes the entries of the batch into the stream buffers one by one, and then flushes each stream written to if
+     * due
+     *
+     * @param logEntries
+     *         the log data entries to write out, in order
+     */
+    @Override
+    public void write(@NonNull List<LogEntry> logEntries) {
+        boolean out = false;
+        boolean err = false;
+        boolean flushOut = false;
+        boolean flushErr = false;
+        for (LogEntry logEntry : logEntries) {
+            if (logEntry.getNativeLogger().getLevel().compareTo(this.minimumLevel) < 0) {
+                continue;
+            }
+            if (isForStderr(logEntry)) {
+                BufferedStandardOutputStream.ERR.append(render(logEntry));
+                err = true;
+                flushErr |= isFlushImmediately(logEntry);
+            } else {
+                BufferedStandardOutputStream.OUT.append(render(logEntry));
+                out = true;
+                flushOut |= isFlushImmediately(logEntry);
+            }
+        }
+        if (out) {
+            BufferedStandardOutputStream.OUT.flushIfDue(flushPolicy, flushOut);
+        }
+        if (err) {
+            BufferedStandardOutputStream.ERR.flushIfDue(flushPolicy, flushErr);
+        }
+    }
+
+    @Override
+    public @Nullable EncodedEntry encode(@NonNull LogEntry logEntry, @NonNull ByteArena byteArena) {
+        if (logEntry.getNativeLogger().getLevel().compareTo(this.minimumLevel) < 0) {
+            return null;
+        }
+        StringBuilder target = byteArena.text();
         logPattern.render(logEntry, target);
+        target.append(System.lineSeparator());
+        boolean stderr = isForStderr(logEntry);
+        int stream = stderr ? STDERR_TARGET : STDOUT_TARGET;
+        return byteArena.encode(target,
+                isFlushImmediately(logEntry) ? stream | FLUSH_IMMEDIATELY : stream,
+                (stderr ? BufferedStandardOutputStream.ERR : BufferedStandardOutputStream.OUT).charset);
+    }
+
+    @Override
+    public void writeEncoded(@NonNull List<EncodedEntry> encodedEntries) {
+        BufferedStandardOutputStream.write(encodedEntries, flushPolicy);
+    }
+
+    /**
+     * Flushes both standard streams; called by the async writer thread whenever its buffer runs empty
+     */
+    @Override
+    public void flush() {
+        BufferedStandardOutputStream.flushAll();
+    }
+
+    @Override
+    public boolean includeCallerDetail() {
+        return logPattern.includeCallerDetail();
+    }
+
+    @Override
+    public boolean includeCallerThread() {
+        return logPattern.includeCallerThread();
+    }
+
+    private boolean isForStderr(LogEntry logEntry) {
         switch (this.outStreamType) {
             case STDOUT:
-                BufferedStandardOutputStream.flushOut(target);
-                return;
+                return false;
             case STDERR:
-                BufferedStandardOutputStream.flushErr(target);
-                return;
+                return true;
             case AUTO:
-                if (logEntry.getNativeLogger().getLevel().compareTo(Level.WARN) < 0) {
-                    BufferedStandardOutputStream.flushOut(target);
-                } else {
-                    BufferedStandardOutputStream.flushErr(target);
-                }
-                return;
+                return logEntry.getNativeLogger().getLevel().compareTo(Level.WARN) >= 0;
             default:
                 throw new IllegalArgumentException("Unsupported out stream type: " + this.outStreamType);
         }
     }
 
-    @Override
-    public boolean includeCallerDetail() {
-        return logPattern.includeCallerDetail();
+    /**
+     * @return the entry rendered into the calling thread's reusable text buffer, which is overwritten by the thread's
+     *         next call
+     */
+    private StringBuilder render(LogEntry logEntry) {
+        StringBuilder text = TEXT.get();
+        if (text.capacity() > MAX_REUSED_TEXT_CAPACITY) {
+            text = new StringBuilder(INITIAL_TEXT_CAPACITY);
+            TEXT.set(text);
+        } else {
+            text.setLength(0);
+        }
+        logPattern.render(logEntry, text);
+        text.append(System.lineSeparator());
+        return text;
     }
 
-    @Override
-    public boolean includeCallerThread() {
-        return logPattern.includeCallerThread();
+    private static boolean isFlushImmediately(LogEntry logEntry) {
+        return FlushPolicy.isFlushImmediately(logEntry.getNativeLogger().getLevel());
     }
 
     enum OutStreamType {
         STDOUT, STDERR, AUTO
     }
 
-    private static class BufferedStandardOutputStream {
-        private static final PrintStream ERR = new PrintStream(new BufferedOutputStream(System.err), false);
-        private static final PrintStream OUT = new PrintStream(new BufferedOutputStream(System.out), false);
+    /**
+     * Buffer of a standard stream, which the rendered entries are encoded straight into, and which is written to the
+     * stream's file descriptor through a channel. If the standard stream was replaced, e.g. by
+     * {@link System#setOut(PrintStream)} to capture the output, the buffer is written to the replacement instead.
+     * <p>
+     * Text is encoded in the same charset as the JVM's own standard {@link PrintStream}: the console encoding the JVM
+     * detected for the stream, i.e. the <code>sun.stdout.encoding</code> or <code>sun.stderr.encoding</code> system
+     * property, if set, or else the platform default charset.
+     * <p>
+     * Each stream locks on itself only, so that a write blocked on one stream, e.g. on a slow stderr pipe, does not
+     * stall the writer of the other.
+     */
+    static class BufferedStandardOutputStream {
+        private static final int BUFFER_SIZE = 64 * 1024;
+        private static final BufferedStandardOutputStream ERR =
+                new BufferedStandardOutputStream(System.err, FileDescriptor.err, "sun.stderr.encoding");
+        private static final BufferedStandardOutputStream OUT =
+                new BufferedStandardOutputStream(System.out, FileDescriptor.out, "sun.stdout.encoding");
+        private final WritableByteChannel channel;
+        private final Charset charset;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final TextEncoder encoder;
+        private long lastFlushNanos = System.nanoTime();
+
+        private BufferedStandardOutputStream(PrintStream standardStream,
+                FileDescriptor fileDescriptor,
+                String encodingProperty) {
+            this(standardStream.getClass() == PrintStream.class ? new FileOutputStream(fileDescriptor).getChannel() :
+                    Channels.newChannel(standardStream), consoleCharset(encodingProperty));
+        }
+
+        BufferedStandardOutputStream(WritableByteChannel channel, Charset charset) {
+            this.channel = channel;
+            this.charset = charset;
+            this.encoder = new TextEncoder(charset);
+        }
+
+        /**
+         * @param encodingProperty
+         *         system property of the console encoding the JVM detected for the stream
+         * @return the charset named by the property if set and supported, otherwise the platform default
+         */
+        static Charset consoleCharset(String encodingProperty) {
+            String encoding = System.getProperty(encodingProperty);
+            if (encoding != null) {
+                try {
+                    return Charset.forName(encoding);
+                } catch (IllegalArgumentException e) {
+                    InternalLogger.INSTANCE.log(Level.WARN, e, "Unsupported console encoding: " + encoding);
+                }
+            }
+            return Charset.defaultCharset();
+        }
 
-        static synchronized void flushErr(Object o) {
-            ERR.println(o);
-            ERR.flush();
+        /**
+         * @param encodedEntries
+         *         each going to either stdout or stderr
+         * @param flushPolicy
+         *         deciding whether to flush each stream written to, unless an entry is flagged to flush immediately
+         */
+        static void write(List<EncodedEntry> encodedEntries, FlushPolicy flushPolicy) {
+            OUT.write(encodedEntries, 0, flushPolicy);
+            ERR.write(encodedEntries, STDERR_TARGET, flushPolicy);
         }
 
-        static synchronized void flushOut(Object o) {
-            OUT.println(o);
-            OUT.flush();
+        static void flushAll() {
+            OUT.flushNow();
+            ERR.flushNow();
+        }
+
+        /**
+         * Writes those of the entries targeting this stream, and then flushes if any was written and the flush is due
+         */
+        synchronized void write(List<EncodedEntry> encodedEntries, int stream, FlushPolicy flushPolicy) {
+            boolean written = false;
+            boolean flushImmediately = false;
+            for (EncodedEntry encodedEntry : encodedEntries) {
+                if ((encodedEntry.getTarget() & STDERR_TARGET) == stream) {
+                    write(encodedEntry);
+                    written = true;
+                    flushImmediately |= (encodedEntry.getTarget() & FLUSH_IMMEDIATELY) != 0;
+                }
+            }
+            if (written) {
+                flushIfDue(flushPolicy, flushImmediately);
+            }
+        }
+
+        synchronized void flushNow() {
+            flush();
+        }
+
+        /**
+         * @param lines
+         *         one or more rendered log lines, each ending with a line separator
+         * @param flushPolicy
+         *         deciding whether to flush after the write
+         * @param flushImmediately
+         *         to flush regardless of the policy
+         */
+        synchronized void write(CharSequence lines, FlushPolicy flushPolicy, boolean flushImmediately) {
+            encoder.encode(lines, buffer, this::flush);
+            flushIfDue(flushPolicy, flushImmediately);
+        }
+
+        /**
+         * @param lines
+         *         one or more rendered log lines, each ending with a line separator, to buffer without flushing unless
+         *         the buffer is full
+         */
+        synchronized void append(CharSequence lines) {
+            encoder.encode(lines, buffer, this::flush);
+        }
+
+        synchronized void flushIfDue(FlushPolicy flushPolicy, boolean flushImmediately) {
+            if (flushImmediately || flushPolicy.isDue(buffer.position(), lastFlushNanos)) {
+                flush();
+            }
+        }
+
+        private void write(EncodedEntry encodedEntry) {
+            int offset = encodedEntry.getOffset();
+            int remaining = encodedEntry.getLength();
+            while (remaining > 0) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int length = Math.min(remaining, buffer.remaining());
+                buffer.put(encodedEntry.getBytes(), offset, length);
+                offset += length;
+                remaining -= length;
+            }
+        }
+
+        /**
+         * Writes out the buffered bytes; on error, reports and drops them
+         */
+        private void flush() {
+            if (buffer.position() == 0) {
+                return;
+            }
+            buffer.flip();
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                InternalLogger.INSTANCE.log(Level.ERROR, e, "Error writing " + buffer.remaining() + " bytes");
+            } finally {
+                buffer.clear();
+                lastFlushNanos = System.nanoTime();
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,438 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import elf4j.Level;
+import elf4j.engine.service.LogEntry;
+import elf4j.engine.writer.pattern.LogPattern;
+import elf4j.engine.writer.pattern.PatternSegmentGroup;
+import elf4j.util.InternalLogger;
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.Value;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends entries to a syslog daemon, e.g. a local rsyslog, as RFC 5424 messages: over UDP, one datagram per entry; or
+ * over TCP, octet-counting framed per RFC 6587, batched and reconnected by a {@link SocketChannelWriter}.
+ * <p>
+ * The priority of each level, and the host name, app name, and process ID header fields, are computed once; the
+ * timestamp, in UTC with microseconds, only reformats its date and time part once per second.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+public class SyslogWriter implements EncodingWriter {
+    private static final Level DEFAULT_MINIMUM_LEVEL = Level.TRACE;
+    private static final String DEFAULT_PATTERN = "{class} - {message}";
+    private static final String DEFAULT_HOST = "localhost";
+    private static final int DEFAULT_PORT = 514;
+    private static final int DEFAULT_FACILITY = 1;
+    private static final int DEFAULT_MAX_MESSAGE_SIZE = 2048;
+    private static final int MIN_MAX_MESSAGE_SIZE = 480;
+    private static final int TCP_BUFFER_SIZE = 64 * 1024;
+    private static final long TCP_LINGER_MILLIS = 10;
+    private static final long TCP_MAX_BUFFERED_BYTES = 8L * 1024 * 1024;
+    private static final long TCP_INITIAL_BACKOFF_MILLIS = 100;
+    private static final long TCP_MAX_BACKOFF_MILLIS = 10_000;
+    private static final String NIL = "-";
+    private static final char BOM = '\uFEFF';
+    private static final DateTimeFormatter SECONDS_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss").withZone(ZoneOffset.UTC);
+    private static final String[] FACILITIES = {
+            "kern", "user", "mail", "daemon", "auth", "syslog", "lpr", "news", "uucp", "cron", "authpriv", "ftp",
+            "ntp", "security", "console", "solaris-cron", "local0", "local1", "local2", "local3", "local4", "local5",
+            "local6", "local7" };
+    @ToString.Include private final Protocol protocol;
+    @ToString.Include private final String host;
+    @ToString.Include private final int port;
+    @ToString.Include private final Level minimumLevel;
+    private final LogPattern logPattern;
+    private final int maxMessageSize;
+    private final Map<Level, String> priorities = new EnumMap<>(Level.class);
+    private final String headerFields;
+    private final TextEncoder encoder = new TextEncoder();
+    private final StringBuilder text = new StringBuilder();
+    @Nullable private final SocketChannelWriter socketChannelWriter;
+    private ByteBuffer message = ByteBuffer.allocate(1024);
+    @Nullable private DatagramChannel datagramChannel;
+    private volatile SecondText lastSecond = new SecondText(Long.MIN_VALUE, "");
+    private long dropped;
+
+    SyslogWriter(@NonNull Protocol protocol,
+            @NonNull String host,
+            int port,
+            @NonNull Level minimumLevel,
+            @NonNull LogPattern logPattern,
+            int facility,
+            @NonNull String hostname,
+            @NonNull String appName,
+            int maxMessageSize) {
+        if (facility < 0 || facility >= FACILITIES.length) {
+            throw new IllegalArgumentException("facility: " + facility);
+        }
+        if (maxMessageSize < MIN_MAX_MESSAGE_SIZE) {
+            throw new IllegalArgumentException("max-message-size: " + maxMessageSize);
+        }
+        this.protocol = protocol;
+        this.host = host;
+        this.port = port;
+        this.minimumLevel = minimumLevel;
+        this.logPattern = logPattern;
+        this.maxMessageSize = maxMessageSize;
+        for (Level level : Level.values()) {
+            priorities.put(level, "<" + (facility * 8 + severity(level)) + ">1 ");
+        }
+        this.headerFields = ' ' + headerField(hostname, 255) + ' ' + headerField(appName, 48) + ' ' + headerField(
+                processId(), 128) + ' ' + NIL + ' ' + NIL + ' ' + BOM;
+        this.socketChannelWriter = protocol == Protocol.TCP ? new SocketChannelWriter(host,
+                port,
+                minimumLevel,
+                logPattern,
+                Math.max(TCP_BUFFER_SIZE, String.valueOf(maxMessageSize).length() + 1 + maxMessageSize),
+                TCP_LINGER_MILLIS,
+                TCP_MAX_BUFFERED_BYTES,
+                TCP_INITIAL_BACKOFF_MILLIS,
+                TCP_MAX_BACKOFF_MILLIS) : null;
+    }
+
+    /**
+     * @param configuration
+     *         properties map to make a syslog writer, taking the <code>protocol</code> (udp or tcp, default to udp),
+     *         <code>host</code>, <code>port</code>, <code>level</code>, <code>pattern</code>, <code>facility</code>
+     *         (name or number, default to user), <code>hostname</code> (default to the local host name),
+     *         <code>app-name</code>, and <code>max-message-size</code> entries if present
+     * @return syslog writer per the specified configuration
+     */
+    public static @Nonnull SyslogWriter from(@NonNull Map<String, String> configuration) {
+        String protocol = configuration.get("protocol");
+        String host = configuration.get("host");
+        String port = configuration.get("port");
+        String level = configuration.get("level");
+        String pattern = configuration.get("pattern");
+        String facility = configuration.get("facility");
+        String hostname = configuration.get("hostname");
+        String appName = configuration.get("app-name");
+        String maxMessageSize = configuration.get("max-message-size");
+        return new SyslogWriter(protocol == null ? Protocol.UDP : Protocol.valueOf(protocol.trim().toUpperCase()),
+                host == null ? DEFAULT_HOST : host,
+                port == null ? DEFAULT_PORT : Integer.parseInt(port.trim()),
+                level == null ? DEFAULT_MINIMUM_LEVEL : Level.valueOf(level.toUpperCase()),
+                PatternSegmentGroup.from(pattern == null ? DEFAULT_PATTERN : pattern),
+                facility == null ? DEFAULT_FACILITY : facility(facility.trim()),
+                hostname == null ? localHostname() : hostname,
+                appName == null ? NIL : appName,
+                maxMessageSize == null ? DEFAULT_MAX_MESSAGE_SIZE : Integer.parseInt(maxMessageSize.trim()));
+    }
+
+    /**
+     * @return the syslog severity of the level: debug, informational, warning, or error
+     */
+    static int severity(@NonNull Level level) {
+        switch (level) {
+            case TRACE:
+            case DEBUG:
+                return 7;
+            case INFO:
+                return 6;
+            case WARN:
+                return 4;
+            default:
+                return 3;
+        }
+    }
+
+    private static int facility(String facility) {
+        for (int i = 0; i < FACILITIES.length; i++) {
+            if (FACILITIES[i].equalsIgnoreCase(facility)) {
+                return i;
+            }
+        }
+        return Integer.parseInt(facility);
+    }
+
+    private static String localHostname() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return NIL;
+        }
+    }
+
+    private static String processId() {
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        int at = name.indexOf('@');
+        return at > 0 ? name.substring(0, at) : NIL;
+    }
+
+    /**
+     * @return the value with anything but printable US-ASCII replaced, and truncated to the max length; or the nil
+     *         value if empty
+     */
+    private static String headerField(String value, int maxLength) {
+        StringBuilder field = new StringBuilder(Math.min(value.length(), maxLength));
+        for (int i = 0; i < value.length() && field.length() < maxLength; i++) {
+            char c = value.charAt(i);
+            field.append(c > ' ' && c < 127 ? c : '_');
+        }
+        return field.length() == 0 ? NIL : field.toString();
+    }
+
+    @Override
+    public Level getMinimumOutputLevel() {
+        return minimumLevel;
+    }
+
+    @Override
+    public synchronized void write(@NonNull LogEntry logEntry) {
+        if (logEntry.getNativeLogger().getLevel().compareTo(this.minimumLevel) < 0) {
+            return;
+        }
+        text.setLength(0);
+        render(logEntry, text);
+        int length = truncate(text, maxMessageSize);
+        ByteBuffer target = message(length);
+        encoder.encode(text, target, () -> {
+            throw new IllegalStateException("Message buffer overflown encoding " + length + " bytes");
+        });
+        target.flip();
+        send(target);
+    }
+
+    @Override
+    public @Nullable EncodedEntry encode(@NonNull LogEntry logEntry, @NonNull ByteArena byteArena) {
+        if (logEntry.getNativeLogger().getLevel().compareTo(this.minimumLevel) < 0) {
+            return null;
+        }
+        StringBuilder target = byteArena.text();
+        render(logEntry, target);
+        return byteArena.encode(target, 0);
+    }
+
+    @Override
+    public synchronized void writeEncoded(@NonNull List<EncodedEntry> encodedEntries) {
+        for (EncodedEntry encodedEntry : encodedEntries) {
+            byte[] bytes = encodedEntry.getBytes();
+            int length = encodedEntry.getLength();
+            if (length > maxMessageSize) {
+                length = maxMessageSize;
+                while (length > 0 && (bytes[encodedEntry.getOffset() + length] & 0xC0) == 0x80) {
+                    length--;
+                }
+            }
+            ByteBuffer target = message(length);
+            target.put(bytes, encodedEntry.getOffset(), length);
+            target.flip();
+            send(target);
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (socketChannelWriter != null) {
+            socketChannelWriter.flush();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (socketChannelWriter != null) {
+            socketChannelWriter.close();
+        }
+        closeDatagramChannel();
+        reportDropped();
+    }
+
+    @Override
+    public boolean includeCallerDetail() {
+        return logPattern.includeCallerDetail();
+    }
+
+    @Override
+    public boolean includeCallerThread() {
+        return logPattern.includeCallerThread();
+    }
+
+    /**
+     * Truncates the text, if need be, to the longest prefix that encodes into at most the max number of bytes, without
+     * splitting a surrogate pair
+     *
+     * @return the encoded length of the possibly truncated text
+     */
+    private static int truncate(StringBuilder text, int maxBytes) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int chars = 1;
+            int bytes;
+            if (c < 0x80) {
+                bytes = 1;
+            } else if (c < 0x800) {
+                bytes = 2;
+            } else if (!Character.isSurrogate(c)) {
+                bytes = 3;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(
+                    i + 1))) {
+                bytes = 4;
+                chars = 2;
+            } else {
+                bytes = 1;
+            }
+            if (length + bytes > maxBytes) {
+                text.setLength(i);
+                return length;
+            }
+            length += bytes;
+            i += chars - 1;
+        }
+        return length;
+    }
+
+    private void render(LogEntry logEntry, StringBuilder target) {
+        target.append(priorities.get(logEntry.getNativeLogger().getLevel()));
+        appendTimestamp(logEntry.getEpochMilli(), logEntry.getNanoOfMilli(), target);
+        target.append(headerFields);
+        logPattern.render(logEntry, target);
+    }
+
+    private void appendTimestamp(long epochMilli, int nanoOfMilli, StringBuilder target) {
+        long second = Math.floorDiv(epochMilli, 1000L);
+        SecondText secondText = lastSecond;
+        if (secondText.getSecond() != second) {
+            secondText = new SecondText(second, SECONDS_FORMATTER.format(Instant.ofEpochSecond(second)));
+            lastSecond = secondText;
+        }
+        target.append(secondText.getText()).append('.');
+        int micros = (int) Math.floorMod(epochMilli, 1000L) * 1000 + nanoOfMilli / 1000;
+        for (int divisor = 100_000; divisor > 0; divisor /= 10) {
+            target.append((char) ('0' + micros / divisor % 10));
+        }
+        target.append('Z');
+    }
+
+    /**
+     * @return the message buffer, cleared, with room for the message of the length, and for TCP, preceded by the
+     *         octet count framing of the length
+     */
+    private ByteBuffer message(int length) {
+        String frame = protocol == Protocol.TCP ? length + " " : "";
+        if (message.capacity() < frame.length() + length) {
+            message = ByteBuffer.allocate(Math.max(frame.length() + length, message.capacity() * 2));
+        }
+        message.clear();
+        for (int i = 0; i < frame.length(); i++) {
+            message.put((byte) frame.charAt(i));
+        }
+        message.limit(frame.length() + length);
+        return message;
+    }
+
+    /**
+     * @param encoded
+     *         the message buffer, flipped for sending
+     */
+    private void send(ByteBuffer encoded) {
+        if (protocol == Protocol.TCP) {
+            assert socketChannelWriter != null;
+            socketChannelWriter.writeBytes(encoded.array(), 0, encoded.limit());
+            return;
+        }
+        try {
+            if (datagramChannel == null) {
+                datagramChannel = DatagramChannel.open();
+                datagramChannel.configureBlocking(false);
+                datagramChannel.connect(new InetSocketAddress(host, port));
+            }
+            if (datagramChannel.write(encoded) == 0) {
+                dropped++;
+            } else if (dropped > 0) {
+                reportDropped();
+            }
+        } catch (IOException e) {
+            dropped++;
+            if (dropped == 1) {
+                InternalLogger.INSTANCE.log(Level.WARN, e, "Error sending datagram, dropping entries: " + this);
+            }
+            closeDatagramChannel();
+        }
+    }
+
+    private void closeDatagramChannel() {
+        if (datagramChannel == null) {
+            return;
+        }
+        try {
+            datagramChannel.close();
+        } catch (IOException e) {
+            InternalLogger.INSTANCE.log(Level.ERROR, e, "Error closing " + this);
+        }
+        datagramChannel = null;
+    }
+
+    private void reportDropped() {
+        if (dropped > 0) {
+            InternalLogger.INSTANCE.log(Level.WARN, "Dropped " + dropped + " entries: " + this);
+            dropped = 0;
+        }
+    }
+
+    /**
+     * Transport to the syslog daemon
+     */
+    enum Protocol {
+        /**
+         * One datagram per entry
+         */
+        UDP,
+        /**
+         * Octet-counting framed stream, batched
+         */
+        TCP
+    }
+
+    /**
+     * Timestamp text of a second up to the fraction, replaced as a whole when the second changes, so that encoding on
+     * concurrent caller threads never pairs one second's text with another
+     */
+    @Value
+    private static class SecondText {
+        long second;
+        String text;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encodes rendered text, as UTF-8 unless otherwise specified, straight into a byte buffer, draining the buffer whenever
+ * it is full, without any intermediate {@link String}. ASCII text, the common case of log lines, is copied char by char
+ * without going through the charset encoder, if the charset encodes ASCII as is. Not thread-safe: each user keeps its
+ * own instance, reused across entries.
+ */
+class TextEncoder {
+    private static final int INITIAL_CHARS_CAPACITY = 256;
+    private static final Map<Charset, Boolean> ASCII_COMPATIBLE = new ConcurrentHashMap<>();
+    private final CharsetEncoder encoder;
+    private final boolean asciiCompatible;
+    private CharBuffer chars = CharBuffer.allocate(INITIAL_CHARS_CAPACITY);
+
+    TextEncoder() {
+        this(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param charset
+     *         to encode text in, unmappable chars replaced by the charset's replacement bytes
+     */
+    TextEncoder(Charset charset) {
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.asciiCompatible = isAsciiCompatible(charset);
+    }
+
+    /**
+     * @param text
+     *         to encode
+     * @param target
+     *         to encode the text into, from its current position
+     * @param drain
+     *         called whenever the target is full, must leave the target with room to encode into, e.g. by writing out
+     *         and then clearing it
+     */
+    void encode(CharSequence text, ByteBuffer target, Runnable drain) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80 || !asciiCompatible) {
+                encodeByCharset(text, i, target, drain);
+                return;
+            }
+            if (!target.hasRemaining()) {
+                drain.run();
+            }
+            target.put((byte) c);
+        }
+    }
+
+    /**
+     * @param charset
+     *         to check
+     * @return true if the charset encodes each ASCII char as the same single byte, as do UTF-8 and most platform
+     *         default charsets
+     */
+    static boolean isAsciiCompatible(Charset charset) {
+        if (charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII)
+                || charset.equals(StandardCharsets.ISO_8859_1)) {
+            return true;
+        }
+        Boolean compatible = ASCII_COMPATIBLE.get(charset);
+        if (compatible == null) {
+            compatible = encodesAsciiAsIs(charset);
+            ASCII_COMPATIBLE.putIfAbsent(charset, compatible);
+        }
+        return compatible;
+    }
+
+    /**
+     * @param text
+     *         to encode
+     * @return the number of bytes the text encodes into as UTF-8, counting each unpaired surrogate as the one-byte
+     *         replacement
+     */
+    static int utf8Length(CharSequence text) {
+        int length = text.length();
+        int encodedLength = length;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                encodedLength += 1;
+            } else if (!Character.isSurrogate(c)) {
+                encodedLength += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(
+                    i + 1))) {
+                encodedLength += 2;
+                i++;
+            }
+        }
+        return encodedLength;
+    }
+
+    private void encodeByCharset(CharSequence text, int start, ByteBuffer target, Runnable drain) {
+        int length = text.length() - start;
+        if (chars.capacity() < length) {
+            chars = CharBuffer.allocate(Math.max(length, chars.capacity() * 2));
+        }
+        chars.clear();
+        for (int i = 0; i < length; i++) {
+            chars.put(text.charAt(start + i));
+        }
+        chars.flip();
+        encoder.reset();
+        while (encoder.encode(chars, target, true).isOverflow()) {
+            drain.run();
+        }
+        while (encoder.flush(target).isOverflow()) {
+            drain.run();
+        }
+    }
+
+    private static boolean encodesAsciiAsIs(Charset charset) {
+        if (!charset.canEncode()) {
+            return false;
+        }
+        char[] ascii = new char[0x80];
+        for (char c = 0; c < ascii.length; c++) {
+            ascii[c] = c;
+        }
+        byte[] bytes = new String(ascii).getBytes(charset);
+        if (bytes.length != ascii.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -27,24 +27,37 @@ package elf4j.engine.writer;
 
 import elf4j.Level;
 import elf4j.engine.service.LogEntry;
+import elf4j.engine.service.PartitionedWriterThread;
+import elf4j.engine.service.RingBufferWriterThread;
+import elf4j.engine.service.WriterThread;
 import lombok.NonNull;
 import lombok.ToString;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 /**
- *
+ * Writes each entry to all its writers on the calling thread. Each writer configured async only hands the entry off to
+ * its own writer thread owned by this group, so that writers progress independently of each other.
  */
 public class WriterGroup implements LogWriter {
-    private final Set<LogWriter> writers;
+    private static final String WRITER_THREAD_NAME_PREFIX = "elf4j-engine-writer-thread-";
+    private final List<LogWriter> writers;
+    private final List<WriterThread> writerThreads;
+    private final AtomicBoolean shutdown = new AtomicBoolean();
     private Level minimumLevel;
     @ToString.Exclude private Boolean includeCallerDetail;
     @ToString.Exclude private Boolean includeCallerThread;
 
-    private WriterGroup(Set<LogWriter> writers) {
-        this.writers = writers;
+    private WriterGroup(Set<LogWriter> writers, List<WriterThread> writerThreads) {
+        this.writers = new ArrayList<>(writers);
+        this.writerThreads = writerThreads;
     }
 
     /**
@@ -53,7 +66,30 @@ public class WriterGroup implements LogWriter {
      * @return the composite writer containing all writers configured in the specified properties
      */
     public static WriterGroup from(@NonNull Properties properties) {
-        return new WriterGroup(WriterType.parseAllWriters(properties));
+        List<WriterThread> writerThreads = new ArrayList<>();
+        return new WriterGroup(WriterType.parseAllWriters(properties, newWriterThread(writerThreads)), writerThreads);
+    }
+
+    /**
+     * @param properties
+     *         configuration of the default writer
+     * @return the composite writer containing only the default writer
+     */
+    public static WriterGroup withDefaultWriter(@NonNull Properties properties) {
+        List<WriterThread> writerThreads = new ArrayList<>(1);
+        return new WriterGroup(Collections.singleton(WriterType.defaultWriter(properties,
+                newWriterThread(writerThreads))), writerThreads);
+    }
+
+    private static Function<Properties, WriterThread> newWriterThread(List<WriterThread> writerThreads) {
+        return asyncProperties -> {
+            String threadName = WRITER_THREAD_NAME_PREFIX + (writerThreads.size() + 1);
+            WriterThread writerThread = PartitionedWriterThread.threads(asyncProperties) > 1 ?
+                    PartitionedWriterThread.from(asyncProperties, threadName) :
+                    RingBufferWriterThread.from(asyncProperties, threadName);
+            writerThreads.add(writerThread);
+            return writerThread;
+        };
     }
 
     @Override
@@ -69,7 +105,16 @@ public class WriterGroup implements LogWriter {
 
     @Override
     public void write(LogEntry logEntry) {
-        writers.parallelStream().forEach(writer -> writer.write(logEntry));
+        for (int i = 0; i < writers.size(); i++) {
+            writers.get(i).write(logEntry);
+        }
+    }
+
+    @Override
+    public void write(List<LogEntry> logEntries) {
+        for (int i = 0; i < writers.size(); i++) {
+            writers.get(i).write(logEntries);
+        }
     }
 
     @Override
@@ -94,4 +139,40 @@ public class WriterGroup implements LogWriter {
     public int size() {
         return writers.size();
     }
+
+    @Override
+    public void flush() {
+        for (int i = 0; i < writers.size(); i++) {
+            writers.get(i).flush();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0; i < writers.size(); i++) {
+            writers.get(i).close();
+        }
+    }
+
+    /**
+     * Shuts down the writer threads of this group, after which async writers write on the logging caller thread. The
+     * threads are shut down in the reverse order of their creation, so that a writer thread handing off to another,
+     * created earlier, is drained first; then all writers are closed.
+     *
+     * @param deadlineNanos
+     *         the {@link System#nanoTime()} by which to stop writing out pending entries
+     * @return numbers of entries written out and abandoned after the shutdown, totaled over all writer threads; none
+     *         if already shut down
+     */
+    public WriterThread.DrainCounts shutdown(long deadlineNanos) {
+        if (!shutdown.compareAndSet(false, true)) {
+            return WriterThread.DrainCounts.NONE;
+        }
+        WriterThread.DrainCounts drainCounts = WriterThread.DrainCounts.NONE;
+        for (int i = writerThreads.size() - 1; i >= 0; i--) {
+            drainCounts = drainCounts.plus(writerThreads.get(i).shutdown(deadlineNanos));
+        }
+        close();
+        return drainCounts;
+    }
 }
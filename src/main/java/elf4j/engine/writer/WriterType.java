@@ -25,12 +25,20 @@
 
 package elf4j.engine.writer;
 
+import elf4j.Level;
+import elf4j.engine.service.PartitionedWriterThread;
+import elf4j.engine.service.WriterThread;
 import elf4j.engine.util.PropertiesUtils;
+import elf4j.util.InternalLogger;
 import lombok.NonNull;
 
+import javax.annotation.Nullable;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -43,27 +51,204 @@ public enum WriterType {
      */
     STANDARD {
         @Override
-        Set<LogWriter> parseWriters(@NonNull Properties properties) {
-            String defaultOutStreamType = properties.getProperty("standard.stream");
-            return PropertiesUtils.getPropertiesGroupOfType(STANDARD.name().toLowerCase(), properties)
-                    .stream()
-                    .map(writerConfiguration -> StandardStreamsWriter.from(writerConfiguration, defaultOutStreamType))
-                    .collect(Collectors.toSet());
+        LogWriter parseWriter(@NonNull Map<String, String> writerConfiguration, @NonNull Properties properties) {
+            return StandardStreamsWriter.from(writerConfiguration, properties.getProperty("standard.stream"));
+        }
+    },
+    /**
+     * Type of writer that appends to a file
+     */
+    FILE {
+        @Override
+        LogWriter parseWriter(@NonNull Map<String, String> writerConfiguration, @NonNull Properties properties) {
+            return FileChannelWriter.from(writerConfiguration);
+        }
+    },
+    /**
+     * Type of writer that appends to a memory-mapped file kept as a circular buffer, surviving the JVM process death
+     */
+    MAPPED {
+        @Override
+        LogWriter parseWriter(@NonNull Map<String, String> writerConfiguration, @NonNull Properties properties) {
+            return MappedFileWriter.from(writerConfiguration);
+        }
+    },
+    /**
+     * Type of writer that appends to a file in a compact binary format, to be decoded and rendered later
+     */
+    BINARY {
+        @Override
+        LogWriter parseWriter(@NonNull Map<String, String> writerConfiguration, @NonNull Properties properties) {
+            return BinaryFileWriter.from(writerConfiguration);
+        }
+    },
+    /**
+     * Type of writer that publishes to a memory-mapped ring file, for a consumer in another process to tail
+     */
+    SHARED {
+        @Override
+        LogWriter parseWriter(@NonNull Map<String, String> writerConfiguration, @NonNull Properties properties) {
+            return SharedMemoryWriter.from(writerConfiguration);
+        }
+    },
+    /**
+     * Type of writer that ships to a collector over TCP
+     */
+    TCP {
+        @Override
+        LogWriter parseWriter(@NonNull Map<String, String> writerConfiguration, @NonNull Properties properties) {
+            return SocketChannelWriter.from(writerConfiguration);
+        }
+    },
+    /**
+     * Type of writer that sends RFC 5424 messages to a syslog daemon over UDP or TCP
+     */
+    SYSLOG {
+        @Override
+        LogWriter parseWriter(@NonNull Map<String, String> writerConfiguration, @NonNull Properties properties) {
+            return SyslogWriter.from(writerConfiguration);
+        }
+    },
+    /**
+     * Type of writer that keeps the latest entries in memory, writing them out to a target writer only when triggered
+     * by an entry at or above a level, or when dumped on demand
+     */
+    RECORDER {
+        @Override
+        LogWriter parseWriter(@NonNull Map<String, String> writerConfiguration, @NonNull Properties properties) {
+            return FlightRecorderWriter.from(writerConfiguration, properties);
         }
     };
 
     private static final EnumSet<WriterType> WRITER_TYPES = EnumSet.allOf(WriterType.class);
+    private static final String RENDER_ON_WRITER = "writer";
+    private static final String RENDER_ON_CALLER = "caller";
 
     /**
      * @param properties
      *         configuration source
+     * @param writerThreadFactory
+     *         makes the writer thread of each writer configured async, from the properties in effect for that writer
      * @return all writers parsed from the specified properties
      */
-    public static Set<LogWriter> parseAllWriters(@NonNull Properties properties) {
+    public static Set<LogWriter> parseAllWriters(@NonNull Properties properties,
+            @NonNull Function<Properties, WriterThread> writerThreadFactory) {
         return WRITER_TYPES.stream()
-                .flatMap(type -> type.parseWriters(properties).stream())
+                .flatMap(type -> type.parseWriters(properties, writerThreadFactory).stream())
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * @param writer
+     *         to write on the logging caller thread or to hand off to a writer thread
+     * @param writerConfiguration
+     *         taking the <code>async</code> entry, and the entries starting with <code>async.</code>, if present,
+     *         which take precedence over the same global entries of the properties. If not present at either level,
+     *         default to async, and to render on the writer thread. If rendering on a pool of writer threads, an
+     *         {@link EncodingWriter} hands the rendered bytes off to a single sink writer thread, which writes them out
+     *         in the order each partition rendered them; any other writer, having no rendering to spread over the pool,
+     *         is given a single writer thread instead.
+     * @param properties
+     *         configuration source
+     * @param writerThreadFactory
+     *         makes the writer thread to hand off entries to, if configured async, from the properties in effect for
+     *         the writer
+     * @return the specified writer as is if configured synchronous, or flushing it on a timer if its flush mode is
+     *         interval, otherwise a wrapper handing off to the writer thread
+     */
+    static LogWriter configureAsync(@NonNull LogWriter writer,
+            @NonNull Map<String, String> writerConfiguration,
+            @NonNull Properties properties,
+            @NonNull Function<Properties, WriterThread> writerThreadFactory) {
+        if (isSynchronous(writerConfiguration, properties)) {
+            FlushPolicy flushPolicy = FlushPolicy.from(writerConfiguration);
+            return flushPolicy.getMode() == FlushPolicy.Mode.INTERVAL ?
+                    new IntervalFlushingWriter(writer, flushPolicy.getIntervalNanos()) : writer;
+        }
+        Properties asyncProperties = asyncProperties(writerConfiguration, properties);
+        String render = getSetting("async.render", writerConfiguration, properties);
+        if (render != null && !RENDER_ON_WRITER.equalsIgnoreCase(render)) {
+            if (!RENDER_ON_CALLER.equalsIgnoreCase(render)) {
+                throw new IllegalArgumentException("async.render: " + render);
+            }
+            if (writer instanceof EncodingWriter) {
+                return new AsyncWriter((EncodingWriter) writer,
+                        writerThreadFactory.apply(singleThreaded(asyncProperties)));
+            }
+            InternalLogger.INSTANCE.log(Level.WARN, "Rendering on writer thread, unsupported on caller: " + writer);
+        }
+        if (PartitionedWriterThread.threads(asyncProperties) > 1) {
+            if (writer instanceof EncodingWriter) {
+                WriterThread sink = writerThreadFactory.apply(singleThreaded(asyncProperties));
+                return new AsyncWriter(new AsyncWriter((EncodingWriter) writer, sink),
+                        writerThreadFactory.apply(asyncProperties));
+            }
+            InternalLogger.INSTANCE.log(Level.WARN,
+                    "Writing on a single writer thread, as no rendering to spread over a pool: " + writer);
+            return new AsyncWriter(writer, writerThreadFactory.apply(singleThreaded(asyncProperties)));
+        }
+        return new AsyncWriter(writer, writerThreadFactory.apply(asyncProperties));
+    }
+
+    private static boolean isSynchronous(Map<String, String> writerConfiguration, Properties properties) {
+        String async = getSetting("async", writerConfiguration, properties);
+        return async != null && !Boolean.parseBoolean(async);
+    }
+
+    private static Properties asyncProperties(Map<String, String> writerConfiguration, Properties properties) {
+        Properties asyncProperties = new Properties(properties);
+        writerConfiguration.forEach((key, value) -> {
+            if (key.startsWith("async.")) {
+                asyncProperties.setProperty(key, value);
+            }
+        });
+        return asyncProperties;
+    }
+
+    private static Properties singleThreaded(Properties asyncProperties) {
+        Properties singleThreaded = new Properties(asyncProperties);
+        singleThreaded.setProperty("async.threads", "1");
+        return singleThreaded;
+    }
+
+    private static @Nullable String getSetting(String key,
+            Map<String, String> writerConfiguration,
+            Properties properties) {
+        String setting = writerConfiguration.get(key);
+        if (setting == null) {
+            setting = properties.getProperty(key);
+        }
+        return setting == null ? null : setting.trim();
+    }
+
+    /**
+     * @param properties
+     *         configuration source
+     * @param writerThreadFactory
+     *         makes the writer thread to hand off entries to, if configured async, from the properties in effect for
+     *         the writer
+     * @return the default writer per the global <code>async</code> entry of the specified properties
+     */
+    static LogWriter defaultWriter(@NonNull Properties properties,
+            @NonNull Function<Properties, WriterThread> writerThreadFactory) {
+        return configureAsync(StandardStreamsWriter.defaultWriter(),
+                Collections.emptyMap(),
+                properties,
+                writerThreadFactory);
+    }
+
+    Set<LogWriter> parseWriters(@NonNull Properties properties,
+            @NonNull Function<Properties, WriterThread> writerThreadFactory) {
+        return PropertiesUtils.getPropertiesGroupOfType(name().toLowerCase(), properties)
+                .stream()
+                .map(writerConfiguration -> isSynchronous(writerConfiguration, properties) ?
+                        FlushPolicy.forSynchronous(writerConfiguration) : writerConfiguration)
+                .map(writerConfiguration -> configureAsync(parseWriter(writerConfiguration, properties),
+                        writerConfiguration,
+                        properties,
+                        writerThreadFactory))
                 .collect(Collectors.toSet());
     }
 
-    abstract Set<LogWriter> parseWriters(Properties properties);
+    abstract LogWriter parseWriter(Map<String, String> writerConfiguration, Properties properties);
 }
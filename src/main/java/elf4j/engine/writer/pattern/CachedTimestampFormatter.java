@@ -0,0 +1,222 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer.pattern;
+
+import lombok.NonNull;
+import lombok.Value;
+
+import javax.annotation.Nullable;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Formats timestamps the same as a {@link DateTimeFormatter}, but only runs the formatter once per second: the text
+ * around the sub-second digits is cached for the current second, and the sub-second digits are appended by hand.
+ * <p>
+ * That covers the patterns with at most one run of fraction-of-second letters (<code>S</code>), and no other
+ * sub-second fields, i.e. nano-of-second (<code>n</code>), nano-of-day (<code>N</code>), or milli-of-day
+ * (<code>A</code>); as well as the ISO offset date-time format, whose fraction digits vary in number. Any other pattern
+ * falls back to running the formatter on every timestamp. Safe for concurrent use: the cache of each second is an
+ * immutable object, replaced as a whole when the second changes.
+ */
+final class CachedTimestampFormatter {
+    private static final int NANO_DIGITS = 9;
+    private static final Cache NO_CACHE = new Cache(Long.MIN_VALUE, "", "");
+    private final DateTimeFormatter dateTimeFormatter;
+    private final Mode mode;
+    private final int fractionDigits;
+    private final DateTimeFormatter localDateTimeFormatter;
+    private volatile Cache cache = NO_CACHE;
+
+    private CachedTimestampFormatter(DateTimeFormatter dateTimeFormatter, Mode mode, int fractionDigits) {
+        this.dateTimeFormatter = dateTimeFormatter;
+        this.mode = mode;
+        this.fractionDigits = fractionDigits;
+        this.localDateTimeFormatter = DateTimeFormatter.ISO_LOCAL_DATE_TIME.withZone(dateTimeFormatter.getZone());
+    }
+
+    /**
+     * @param pattern
+     *         as taken by {@link DateTimeFormatter#ofPattern(String)}
+     * @param zone
+     *         to format the timestamps in
+     * @return formatter of the pattern, cached per second if the pattern allows
+     */
+    static CachedTimestampFormatter ofPattern(@NonNull String pattern, @NonNull ZoneId zone) {
+        DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern(pattern).withZone(zone);
+        int fractionDigits = fractionDigitsOf(pattern);
+        if (fractionDigits < 0) {
+            return new CachedTimestampFormatter(dateTimeFormatter, Mode.FORMATTER, 0);
+        }
+        return new CachedTimestampFormatter(dateTimeFormatter, Mode.FRACTION, fractionDigits);
+    }
+
+    /**
+     * @param zone
+     *         to format the timestamps in
+     * @return formatter of {@link DateTimeFormatter#ISO_OFFSET_DATE_TIME}, cached per second
+     */
+    static CachedTimestampFormatter isoOffsetDateTime(@NonNull ZoneId zone) {
+        return new CachedTimestampFormatter(DateTimeFormatter.ISO_OFFSET_DATE_TIME.withZone(zone),
+                Mode.ISO_OFFSET_DATE_TIME,
+                0);
+    }
+
+    /**
+     * @return the length of the only run of fraction-of-second letters outside quotes, zero if none, or -1 if the
+     *         pattern has more than one such run, or any other sub-second field
+     */
+    private static int fractionDigitsOf(String pattern) {
+        int fractionDigits = 0;
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (quoted) {
+                continue;
+            } else if (c == 'S') {
+                if (fractionDigits > 0) {
+                    return -1;
+                }
+                int start = i;
+                while (i + 1 < pattern.length() && pattern.charAt(i + 1) == 'S') {
+                    i++;
+                }
+                fractionDigits = i - start + 1;
+            } else if (c == 'n' || c == 'N' || c == 'A') {
+                return -1;
+            }
+        }
+        return fractionDigits > NANO_DIGITS ? -1 : fractionDigits;
+    }
+
+    private static void appendDigits(int value, int digits, StringBuilder target) {
+        for (int divisor = pow10(digits - 1); divisor > 0; divisor /= 10) {
+            target.append((char) ('0' + value / divisor % 10));
+        }
+    }
+
+    private static int pow10(int exponent) {
+        int pow = 1;
+        for (int i = 0; i < exponent; i++) {
+            pow *= 10;
+        }
+        return pow;
+    }
+
+    /**
+     * @param instant
+     *         to format
+     * @param target
+     *         to append the formatted text to, the same as the {@link DateTimeFormatter} would
+     */
+    void formatTo(@NonNull Instant instant, @NonNull StringBuilder target) {
+        formatTo(instant.getEpochSecond(), instant.getNano(), instant, target);
+    }
+
+    /**
+     * Same as {@link #formatTo(Instant, StringBuilder)}, without creating an {@link Instant} unless the pattern is not
+     * cached per second
+     *
+     * @param epochMilli
+     *         milliseconds since epoch of the time to format
+     * @param nanoOfMilli
+     *         nanoseconds of the time within the millisecond
+     * @param target
+     *         to append the formatted text to
+     */
+    void formatTo(long epochMilli, int nanoOfMilli, @NonNull StringBuilder target) {
+        formatTo(Math.floorDiv(epochMilli, 1000L),
+                (int) Math.floorMod(epochMilli, 1000L) * 1_000_000 + nanoOfMilli,
+                null,
+                target);
+    }
+
+    private void formatTo(long second, int nanos, @Nullable Instant instant, StringBuilder target) {
+        if (mode == Mode.FORMATTER) {
+            dateTimeFormatter.formatTo(instant == null ? Instant.ofEpochSecond(second, nanos) : instant, target);
+            return;
+        }
+        Cache current = cache;
+        if (current.epochSecond != second) {
+            current = cacheOf(second);
+            cache = current;
+        }
+        target.append(current.prefix);
+        if (mode == Mode.FRACTION) {
+            if (fractionDigits > 0) {
+                appendDigits(nanos / pow10(NANO_DIGITS - fractionDigits), fractionDigits, target);
+            }
+        } else if (nanos != 0) {
+            int digits = NANO_DIGITS;
+            while (nanos % 10 == 0) {
+                nanos /= 10;
+                digits--;
+            }
+            target.append('.');
+            appendDigits(nanos, digits, target);
+        }
+        target.append(current.suffix);
+    }
+
+    /**
+     * @return the text before and after the sub-second digits in the second
+     */
+    private Cache cacheOf(long second) {
+        Instant start = Instant.ofEpochSecond(second);
+        String formatted = dateTimeFormatter.format(start);
+        if (mode == Mode.ISO_OFFSET_DATE_TIME) {
+            String localDateTime = localDateTimeFormatter.format(start);
+            return new Cache(second, localDateTime, formatted.substring(localDateTime.length()));
+        }
+        if (fractionDigits == 0) {
+            return new Cache(second, formatted, "");
+        }
+        String maxFraction = dateTimeFormatter.format(start.plusNanos(999_999_999));
+        int fractionStart = 0;
+        while (formatted.charAt(fractionStart) == maxFraction.charAt(fractionStart)) {
+            fractionStart++;
+        }
+        return new Cache(second,
+                formatted.substring(0, fractionStart),
+                formatted.substring(fractionStart + fractionDigits));
+    }
+
+    private enum Mode {
+        FORMATTER,
+        FRACTION,
+        ISO_OFFSET_DATE_TIME
+    }
+
+    @Value
+    private static class Cache {
+        long epochSecond;
+        String prefix;
+        String suffix;
+    }
+}
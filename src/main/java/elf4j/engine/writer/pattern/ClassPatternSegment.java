@@ -26,22 +26,59 @@
 package elf4j.engine.writer.pattern;
 
 import elf4j.engine.service.LogEntry;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NonNull;
+import lombok.ToString;
 import lombok.Value;
 
 import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- *
+ * Renders the logger owner class name, either in full, as the simple name, compressed to the package initials, or
+ * abbreviated to a target length
+ * <p>
+ * The set of logger owner classes is small and fixed, so the rendered names are cached per segment. The cache is
+ * bounded; past {@link #MAX_CACHED_NAMES} distinct classes, names are rendered without being cached.
  */
 @Value
 public class ClassPatternSegment implements LogPattern {
+    static final int MAX_CACHED_NAMES = 1024;
     private static final DisplayOption DEFAULT_DISPLAY_OPTION = DisplayOption.FULL;
     @NonNull DisplayOption classDisplayOption;
+    int targetLength;
+    @EqualsAndHashCode.Exclude @ToString.Exclude @Getter(AccessLevel.NONE) Map<String, String> renderedNames =
+            new ConcurrentHashMap<>();
+
+    /**
+     * @param classDisplayOption
+     *         how to display the class name
+     */
+    public ClassPatternSegment(@NonNull DisplayOption classDisplayOption) {
+        this(classDisplayOption, 0);
+    }
+
+    /**
+     * @param classDisplayOption
+     *         how to display the class name
+     * @param targetLength
+     *         the length to abbreviate the class name towards, only used by {@link DisplayOption#ABBREVIATED}
+     */
+    ClassPatternSegment(@NonNull DisplayOption classDisplayOption, int targetLength) {
+        if (targetLength < 0) {
+            throw new IllegalArgumentException("targetLength: " + targetLength);
+        }
+        this.classDisplayOption = classDisplayOption;
+        this.targetLength = targetLength;
+    }
 
     /**
      * @param patternSegment
-     *         text patternSegment to convert
+     *         text patternSegment to convert, the option being either a display option name, or a number for the
+     *         target length to abbreviate the class name towards, e.g. <code>{class:36}</code>
      * @return converted patternSegment object
      */
     @Nonnull
@@ -49,9 +86,53 @@ public class ClassPatternSegment implements LogPattern {
         if (!PatternSegmentType.CLASS.isTargetTypeOf(patternSegment)) {
             throw new IllegalArgumentException("patternSegment: " + patternSegment);
         }
-        return new ClassPatternSegment(PatternSegmentType.getPatternSegmentOption(patternSegment)
-                .map(displayOption -> DisplayOption.valueOf(displayOption.toUpperCase()))
-                .orElse(DEFAULT_DISPLAY_OPTION));
+        return PatternSegmentType.getPatternSegmentOption(patternSegment)
+                .map(ClassPatternSegment::fromOption)
+                .orElseGet(() -> new ClassPatternSegment(DEFAULT_DISPLAY_OPTION));
+    }
+
+    private static ClassPatternSegment fromOption(String option) {
+        if (!option.isEmpty() && option.chars().allMatch(Character::isDigit)) {
+            return new ClassPatternSegment(DisplayOption.ABBREVIATED, Integer.parseInt(option));
+        }
+        DisplayOption displayOption = DisplayOption.valueOf(option.toUpperCase());
+        if (displayOption == DisplayOption.ABBREVIATED) {
+            throw new IllegalArgumentException("Expected a target length instead of: " + option);
+        }
+        return new ClassPatternSegment(displayOption);
+    }
+
+    /**
+     * Logback-style abbreviation: package segments are shortened to their initials, from left to right, until the
+     * whole name fits the target length; the simple class name is never shortened.
+     */
+    static String abbreviate(String fullName, int targetLength) {
+        if (fullName.length() <= targetLength) {
+            return fullName;
+        }
+        int simpleNameStart = fullName.lastIndexOf('.') + 1;
+        if (simpleNameStart == 0) {
+            return fullName;
+        }
+        StringBuilder abbreviation = new StringBuilder(fullName.length());
+        int remaining = fullName.length();
+        int segmentStart = 0;
+        while (segmentStart < simpleNameStart) {
+            int segmentEnd = fullName.indexOf('.', segmentStart);
+            if (remaining > targetLength && segmentEnd > segmentStart) {
+                abbreviation.append(fullName.charAt(segmentStart));
+                remaining -= segmentEnd - segmentStart - 1;
+            } else {
+                abbreviation.append(fullName, segmentStart, segmentEnd);
+            }
+            abbreviation.append('.');
+            segmentStart = segmentEnd + 1;
+        }
+        return abbreviation.append(fullName, simpleNameStart, fullName.length()).toString();
+    }
+
+    private static String compress(String fullName) {
+        return abbreviate(fullName, 0);
     }
 
     /**
@@ -72,28 +153,43 @@ public class ClassPatternSegment implements LogPattern {
     @Override
     public void render(@NonNull LogEntry logEntry, StringBuilder target) {
         String fullName = logEntry.getCallerClassName();
+        if (classDisplayOption == DisplayOption.FULL) {
+            target.append(fullName);
+            return;
+        }
+        String renderedName = renderedNames.get(fullName);
+        if (renderedName == null) {
+            renderedName = renderName(fullName);
+            if (renderedNames.size() < MAX_CACHED_NAMES) {
+                renderedNames.put(fullName, renderedName);
+            }
+        }
+        target.append(renderedName);
+    }
+
+    /**
+     * @return number of names currently cached
+     */
+    int cachedNames() {
+        return renderedNames.size();
+    }
+
+    private String renderName(String fullName) {
         switch (classDisplayOption) {
             case FULL:
-                target.append(fullName);
-                return;
+                return fullName;
             case SIMPLE:
-                target.append(fullName.substring(fullName.lastIndexOf('.') + 1));
-                return;
-            case COMPRESSED: {
-                String[] tokens = fullName.split("\\.");
-                String simpleName = tokens[tokens.length - 1];
-                for (int i = 0; i < tokens.length - 1; i++) {
-                    target.append(tokens[i].charAt(0)).append('.');
-                }
-                target.append(simpleName);
-                return;
-            }
+                return fullName.substring(fullName.lastIndexOf('.') + 1);
+            case COMPRESSED:
+                return compress(fullName);
+            case ABBREVIATED:
+                return abbreviate(fullName, targetLength);
             default:
                 throw new IllegalArgumentException("class display option: " + classDisplayOption);
         }
     }
 
     enum DisplayOption {
-        FULL, SIMPLE, COMPRESSED
+        FULL, SIMPLE, COMPRESSED, ABBREVIATED
     }
 }
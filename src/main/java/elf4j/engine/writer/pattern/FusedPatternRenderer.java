@@ -0,0 +1,156 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer.pattern;
+
+import elf4j.engine.service.LogEntry;
+import lombok.NonNull;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders the segments of a pattern in one method, compiled once from the pattern's segments: adjacent verbatim
+ * segments are merged into one text, and each of the other segments is called from its own call site, typed to its
+ * concrete segment class. Unlike the single interface call site looping over all the segments, each of these call
+ * sites only ever sees one class, so the JIT can inline every segment into the rendering loop.
+ */
+final class FusedPatternRenderer {
+    private static final byte VERBATIM = 0;
+    private static final byte TIMESTAMP = 1;
+    private static final byte LEVEL = 2;
+    private static final byte THREAD = 3;
+    private static final byte CLASS = 4;
+    private static final byte METHOD = 5;
+    private static final byte MESSAGE = 6;
+    private static final byte JSON = 7;
+    private final byte[] operations;
+    private final Object[] operands;
+
+    private FusedPatternRenderer(byte[] operations, Object[] operands) {
+        this.operations = operations;
+        this.operands = operands;
+    }
+
+    /**
+     * @param segments
+     *         of the pattern, in order
+     * @return renderer fusing the segments, or null if any segment is of a class unknown to this renderer, for the
+     *         caller to fall back to calling each segment through the pattern interface
+     */
+    static @Nullable FusedPatternRenderer compile(@NonNull List<LogPattern> segments) {
+        List<Byte> operations = new ArrayList<>(segments.size());
+        List<Object> operands = new ArrayList<>(segments.size());
+        StringBuilder verbatim = new StringBuilder();
+        for (LogPattern segment : segments) {
+            if (segment.getClass() == VerbatimPatternSegment.class) {
+                verbatim.append(((VerbatimPatternSegment) segment).getText());
+                continue;
+            }
+            byte operation = operationOf(segment);
+            if (operation < 0) {
+                return null;
+            }
+            if (verbatim.length() > 0) {
+                operations.add(VERBATIM);
+                operands.add(verbatim.toString());
+                verbatim.setLength(0);
+            }
+            operations.add(operation);
+            operands.add(segment);
+        }
+        if (verbatim.length() > 0) {
+            operations.add(VERBATIM);
+            operands.add(verbatim.toString());
+        }
+        byte[] compiled = new byte[operations.size()];
+        for (int i = 0; i < compiled.length; i++) {
+            compiled[i] = operations.get(i);
+        }
+        return new FusedPatternRenderer(compiled, operands.toArray());
+    }
+
+    private static byte operationOf(LogPattern segment) {
+        Class<?> segmentClass = segment.getClass();
+        if (segmentClass == TimestampPatternSegment.class) {
+            return TIMESTAMP;
+        } else if (segmentClass == LevelPatternSegment.class) {
+            return LEVEL;
+        } else if (segmentClass == ThreadPatternSegment.class) {
+            return THREAD;
+        } else if (segmentClass == ClassPatternSegment.class) {
+            return CLASS;
+        } else if (segmentClass == MethodPatternSegment.class) {
+            return METHOD;
+        } else if (segmentClass == MessageAndExceptionPatternSegment.class) {
+            return MESSAGE;
+        } else if (segmentClass == JsonPatternSegment.class) {
+            return JSON;
+        }
+        return -1;
+    }
+
+    /**
+     * @return number of fused operations, after merging adjacent verbatim segments
+     */
+    int size() {
+        return operations.length;
+    }
+
+    void render(LogEntry logEntry, StringBuilder target) {
+        for (int i = 0; i < operations.length; i++) {
+            Object operand = operands[i];
+            switch (operations[i]) {
+                case VERBATIM:
+                    target.append((String) operand);
+                    break;
+                case TIMESTAMP:
+                    ((TimestampPatternSegment) operand).render(logEntry, target);
+                    break;
+                case LEVEL:
+                    ((LevelPatternSegment) operand).render(logEntry, target);
+                    break;
+                case THREAD:
+                    ((ThreadPatternSegment) operand).render(logEntry, target);
+                    break;
+                case CLASS:
+                    ((ClassPatternSegment) operand).render(logEntry, target);
+                    break;
+                case METHOD:
+                    ((MethodPatternSegment) operand).render(logEntry, target);
+                    break;
+                case MESSAGE:
+                    ((MessageAndExceptionPatternSegment) operand).render(logEntry, target);
+                    break;
+                case JSON:
+                    ((JsonPatternSegment) operand).render(logEntry, target);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown operation " + operations[i]);
+            }
+        }
+    }
+}
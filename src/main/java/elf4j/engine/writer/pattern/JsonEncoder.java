@@ -0,0 +1,220 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer.pattern;
+
+import elf4j.engine.service.LogEntry;
+
+import java.time.ZoneId;
+import java.util.Objects;
+
+/**
+ * Streams a log entry as a JSON object straight into the target buffer, without an intermediate object or reflection
+ * <p>
+ * The member names, along with the punctuation and indentation around them, are pre-built once per encoder; only the
+ * values are escaped at rendering time. Members in order: <code>timestamp</code>, <code>level</code>,
+ * <code>callerThread</code>, <code>callerClass</code> or <code>callerDetail</code>, <code>message</code>, and
+ * <code>exception</code>; absent values are left out.
+ */
+final class JsonEncoder {
+    static final JsonEncoder COMPACT = new JsonEncoder(false);
+    static final JsonEncoder PRETTY = new JsonEncoder(true);
+    private static final CachedTimestampFormatter TIMESTAMP_FORMATTER =
+            CachedTimestampFormatter.isoOffsetDateTime(ZoneId.systemDefault());
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private final boolean pretty;
+    private final String timestamp;
+    private final String level;
+    private final String callerThreadName;
+    private final String callerThreadId;
+    private final String callerClass;
+    private final String callerDetailClassName;
+    private final String callerDetailMethodName;
+    private final String callerDetailLineNumber;
+    private final String callerDetailFileName;
+    private final String message;
+    private final String exception;
+    private final String nestedObjectEnd;
+    private final String objectEnd;
+
+    private JsonEncoder(boolean pretty) {
+        this.pretty = pretty;
+        this.timestamp = '{' + member("timestamp", 1, true) + '"';
+        this.level = '"' + member("level", 1, false) + '"';
+        this.callerThreadName = member("callerThread", 1, false) + '{' + member("name", 2, true) + '"';
+        this.callerThreadId = '"' + member("id", 2, false);
+        this.callerClass = member("callerClass", 1, false) + '"';
+        this.callerDetailClassName = member("callerDetail", 1, false) + '{' + member("className", 2, true) + '"';
+        this.callerDetailMethodName = '"' + member("methodName", 2, false) + '"';
+        this.callerDetailLineNumber = '"' + member("lineNumber", 2, false);
+        this.callerDetailFileName = member("fileName", 2, false) + '"';
+        this.message = member("message", 1, false) + '"';
+        this.exception = member("exception", 1, false) + '"';
+        this.nestedObjectEnd = lineBreak(1) + '}';
+        this.objectEnd = lineBreak(0) + '}';
+    }
+
+    /**
+     * Escapes the specified text as the content of a JSON string, i.e. without the enclosing quotes. Runs of ASCII
+     * characters needing no escape are appended in bulk.
+     *
+     * @param text
+     *         to escape
+     * @param target
+     *         to append the escaped text to
+     */
+    static void appendEscaped(CharSequence text, StringBuilder target) {
+        appendEscaped(text, 0, text.length(), target);
+    }
+
+    private static void appendEscaped(CharSequence text, int start, int end, StringBuilder target) {
+        int runStart = start;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (!needsEscape(c)) {
+                continue;
+            }
+            target.append(text, runStart, i);
+            appendEscaped(c, target);
+            runStart = i + 1;
+        }
+        target.append(text, runStart, end);
+    }
+
+    /**
+     * @return <code>true</code> for the quote, the backslash, the control characters, and the line and paragraph
+     *         separators that are legal in JSON but not in JavaScript strings; the printable ASCII characters are
+     *         checked first
+     */
+    private static boolean needsEscape(char c) {
+        if (c >= 0x20 && c < 0x7f) {
+            return c == '"' || c == '\\';
+        }
+        return c < 0x20 || c == '\u2028' || c == '\u2029';
+    }
+
+    private static void appendEscaped(char c, StringBuilder target) {
+        switch (c) {
+            case '"':
+                target.append("\\\"");
+                return;
+            case '\\':
+                target.append("\\\\");
+                return;
+            case '\n':
+                target.append("\\n");
+                return;
+            case '\r':
+                target.append("\\r");
+                return;
+            case '\t':
+                target.append("\\t");
+                return;
+            case '\b':
+                target.append("\\b");
+                return;
+            case '\f':
+                target.append("\\f");
+                return;
+            default:
+                target.append("\\u")
+                        .append(HEX_DIGITS[c >> 12 & 0xf])
+                        .append(HEX_DIGITS[c >> 8 & 0xf])
+                        .append(HEX_DIGITS[c >> 4 & 0xf])
+                        .append(HEX_DIGITS[c & 0xf]);
+        }
+    }
+
+    /**
+     * @param logEntry
+     *         to encode
+     * @param includeCallerThread
+     *         whether to include the caller thread
+     * @param includeCallerDetail
+     *         whether to include the caller frame instead of only the caller class name
+     * @param stackTraceRenderer
+     *         to render the stack trace of the exception with
+     * @param target
+     *         to append the JSON object to
+     */
+    void encode(LogEntry logEntry,
+            boolean includeCallerThread,
+            boolean includeCallerDetail,
+            StackTraceRenderer stackTraceRenderer,
+            StringBuilder target) {
+        target.append(timestamp);
+        TIMESTAMP_FORMATTER.formatTo(logEntry.getEpochMilli(), logEntry.getNanoOfMilli(), target);
+        target.append(level).append(logEntry.getNativeLogger().getLevel().name()).append('"');
+        if (includeCallerThread) {
+            LogEntry.ThreadInformation callerThread = Objects.requireNonNull(logEntry.getCallerThread());
+            target.append(callerThreadName);
+            appendEscaped(callerThread.getName(), target);
+            target.append(callerThreadId).append(callerThread.getId()).append(nestedObjectEnd);
+        }
+        if (includeCallerDetail) {
+            LogEntry.StackTraceFrame callerFrame = Objects.requireNonNull(logEntry.getCallerFrame());
+            target.append(callerDetailClassName);
+            appendEscaped(callerFrame.getClassName(), target);
+            target.append(callerDetailMethodName);
+            appendEscaped(callerFrame.getMethodName(), target);
+            target.append(callerDetailLineNumber).append(callerFrame.getLineNumber());
+            if (callerFrame.getFileName() != null) {
+                target.append(callerDetailFileName);
+                appendEscaped(callerFrame.getFileName(), target);
+                target.append('"');
+            }
+            target.append(nestedObjectEnd);
+        } else {
+            target.append(callerClass);
+            appendEscaped(logEntry.getCallerClassName(), target);
+            target.append('"');
+        }
+        target.append(message);
+        appendEscaped(logEntry.getResolvedMessage(), target);
+        target.append('"');
+        Throwable throwable = logEntry.getException();
+        if (throwable != null) {
+            target.append(exception);
+            appendEscaped(stackTraceRenderer.render(throwable), target);
+            target.append('"');
+        }
+        target.append(objectEnd);
+    }
+
+    private String member(String name, int depth, boolean first) {
+        return (first ? "" : ",") + lineBreak(depth) + '"' + name + (pretty ? "\": " : "\":");
+    }
+
+    private String lineBreak(int depth) {
+        if (!pretty) {
+            return "";
+        }
+        StringBuilder lineBreak = new StringBuilder("\n");
+        for (int i = 0; i < depth; i++) {
+            lineBreak.append("  ");
+        }
+        return lineBreak.toString();
+    }
+}
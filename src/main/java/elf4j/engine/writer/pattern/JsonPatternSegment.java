@@ -25,24 +25,21 @@
 
 package elf4j.engine.writer.pattern;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import elf4j.engine.service.LogEntry;
-import elf4j.engine.util.StackTraceUtils;
 import lombok.Builder;
 import lombok.NonNull;
-import lombok.ToString;
 import lombok.Value;
 
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
- *
+ * Renders the log entry as a JSON object, streamed by a {@link JsonEncoder}
  */
 @Value
 @Builder
@@ -54,11 +51,13 @@ public class JsonPatternSegment implements LogPattern {
             Arrays.stream(new String[] { CALLER_THREAD, CALLER_DETAIL, PRETTY }).collect(Collectors.toSet());
     boolean includeCallerThread;
     boolean includeCallerDetail;
-    @ToString.Exclude Gson gson;
+    boolean prettyPrint;
+    @NonNull StackTraceRenderer stackTraceRenderer;
 
     /**
      * @param patternSegment
-     *         to convert
+     *         to convert, optionally with the display options, as well as the stack trace rendering options of
+     *         {@link StackTraceRenderer}
      * @return converted patternSegment object
      */
     public static JsonPatternSegment from(@NonNull String patternSegment) {
@@ -70,18 +69,23 @@ public class JsonPatternSegment implements LogPattern {
             return JsonPatternSegment.builder()
                     .includeCallerThread(false)
                     .includeCallerDetail(false)
-                    .gson(new Gson())
+                    .prettyPrint(false)
+                    .stackTraceRenderer(StackTraceRenderer.from(Collections.emptyList()))
                     .build();
         }
-        Set<String> options =
-                Arrays.stream(patternOption.get().split(",")).map(String::trim).collect(Collectors.toSet());
+        Map<Boolean, List<String>> renderingAndDisplayOptions = Arrays.stream(patternOption.get().split(","))
+                .map(String::trim)
+                .distinct()
+                .collect(Collectors.partitioningBy(StackTraceRenderer::isRenderingOption));
+        List<String> options = renderingAndDisplayOptions.get(false);
         if (!DISPLAY_OPTIONS.containsAll(options)) {
             throw new IllegalArgumentException("Invalid JSON display option inside: " + options);
         }
         return JsonPatternSegment.builder()
                 .includeCallerThread(options.contains(CALLER_THREAD))
                 .includeCallerDetail(options.contains(CALLER_DETAIL))
-                .gson(options.contains(PRETTY) ? new GsonBuilder().setPrettyPrinting().create() : new Gson())
+                .prettyPrint(options.contains(PRETTY))
+                .stackTraceRenderer(StackTraceRenderer.from(renderingAndDisplayOptions.get(true)))
                 .build();
     }
 
@@ -97,35 +101,10 @@ public class JsonPatternSegment implements LogPattern {
 
     @Override
     public void render(LogEntry logEntry, StringBuilder target) {
-        gson.toJson(JsonLogEntry.from(logEntry, this), target);
-    }
-
-    @Value
-    @Builder
-    static class JsonLogEntry {
-        static final DateTimeFormatter DATE_TIME_FORMATTER =
-                DateTimeFormatter.ISO_OFFSET_DATE_TIME.withZone(ZoneId.systemDefault());
-        CharSequence timestamp;
-        String level;
-        LogEntry.ThreadInformation callerThread;
-        String callerClass;
-        LogEntry.StackTraceFrame callerDetail;
-        CharSequence message;
-        CharSequence exception;
-
-        static JsonLogEntry from(@NonNull LogEntry logEntry, @NonNull JsonPatternSegment jsonPatternSegment) {
-            StringBuilder timestamp = new StringBuilder(35);
-            DATE_TIME_FORMATTER.formatTo(logEntry.getTimestamp(), timestamp);
-            return JsonLogEntry.builder()
-                    .timestamp(timestamp)
-                    .callerClass(jsonPatternSegment.includeCallerDetail ? null : logEntry.getCallerClassName())
-                    .level(logEntry.getNativeLogger().getLevel().name())
-                    .callerThread(jsonPatternSegment.includeCallerThread ? logEntry.getCallerThread() : null)
-                    .callerDetail(jsonPatternSegment.includeCallerDetail ? logEntry.getCallerFrame() : null)
-                    .message(logEntry.getResolvedMessage())
-                    .exception(logEntry.getException() == null ? null :
-                            StackTraceUtils.getTraceAsBuffer(logEntry.getException()))
-                    .build();
-        }
+        (prettyPrint ? JsonEncoder.PRETTY : JsonEncoder.COMPACT).encode(logEntry,
+                includeCallerThread,
+                includeCallerDetail,
+                stackTraceRenderer,
+                target);
     }
 }
@@ -26,20 +26,26 @@
 package elf4j.engine.writer.pattern;
 
 import elf4j.engine.service.LogEntry;
-import elf4j.engine.util.StackTraceUtils;
 import lombok.NonNull;
 import lombok.Value;
 
 import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
- *
+ * Renders the resolved message, followed by the stack trace of the exception if any
  */
 @Value
 public class MessageAndExceptionPatternSegment implements LogPattern {
+    @NonNull StackTraceRenderer stackTraceRenderer;
+
     /**
      * @param patternSegment
-     *         text segment to convert
+     *         text segment to convert, optionally with the stack trace rendering options of
+     *         {@link StackTraceRenderer}, e.g. <code>{message:compact,max-depth=20,exclude=org.junit}</code>
      * @return converted patternSegment object
      */
     @Nonnull
@@ -47,7 +53,10 @@ public class MessageAndExceptionPatternSegment implements LogPattern {
         if (!PatternSegmentType.MESSAGE.isTargetTypeOf(patternSegment)) {
             throw new IllegalArgumentException("patternSegment text: " + patternSegment);
         }
-        return new MessageAndExceptionPatternSegment();
+        List<String> options = PatternSegmentType.getPatternSegmentOption(patternSegment)
+                .map(option -> Arrays.stream(option.split(",")).map(String::trim).collect(Collectors.toList()))
+                .orElse(Collections.emptyList());
+        return new MessageAndExceptionPatternSegment(StackTraceRenderer.from(options));
     }
 
     @Override
@@ -67,6 +76,6 @@ public class MessageAndExceptionPatternSegment implements LogPattern {
         if (t == null) {
             return;
         }
-        target.append(System.lineSeparator()).append(StackTraceUtils.getTraceAsBuffer(t));
+        target.append(System.lineSeparator()).append(stackTraceRenderer.render(t));
     }
 }
@@ -26,18 +26,37 @@
 package elf4j.engine.writer.pattern;
 
 import elf4j.engine.service.LogEntry;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NonNull;
+import lombok.ToString;
 import lombok.Value;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.List;
 
 /**
  * Composite of individual patterns forming the entire layout pattern
+ * <p>
+ * The individual patterns are compiled once into a {@link FusedPatternRenderer}; if any of them is not supported by
+ * the fused renderer, e.g. a custom pattern, rendering falls back to calling each of them in turn.
  */
 @Value
 public class PatternSegmentGroup implements LogPattern {
     List<LogPattern> logPatternEntries;
+    @EqualsAndHashCode.Exclude @ToString.Exclude @Getter(AccessLevel.PACKAGE) @Nullable FusedPatternRenderer
+            fusedRenderer;
+
+    /**
+     * @param logPatternEntries
+     *         individual patterns in rendering order
+     */
+    public PatternSegmentGroup(@NonNull List<LogPattern> logPatternEntries) {
+        this.logPatternEntries = logPatternEntries;
+        this.fusedRenderer = FusedPatternRenderer.compile(logPatternEntries);
+    }
 
     /**
      * @param pattern
@@ -61,6 +80,10 @@ public class PatternSegmentGroup implements LogPattern {
 
     @Override
     public void render(LogEntry logEntry, StringBuilder target) {
+        if (fusedRenderer != null) {
+            fusedRenderer.render(logEntry, target);
+            return;
+        }
         for (LogPattern pattern : logPatternEntries) {
             pattern.render(logEntry, target);
         }
@@ -0,0 +1,371 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer.pattern;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.Value;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Renders the stack trace of a logged exception, in the same text as {@link Throwable#printStackTrace()}, memoized
+ * per fingerprint
+ * <p>
+ * The fingerprint of an exception is made of the class, message, and stack frames of the exception and of each of its
+ * causes and suppressed exceptions, so the same exception logged from the same site is printed only once; when compact,
+ * the messages are left out of the fingerprint. The cache of each renderer is bounded; past {@link #MAX_CACHED_TRACES}
+ * distinct fingerprints, a new trace replaces the least recently rendered one, so a trace logged over and over stays
+ * cached through a burst of one-off traces. Exceptions without stack frames, e.g. those created without a writable
+ * stack trace, print themselves as they would, and are never cached.
+ * <p>
+ * Options, as taken by {@link #from(List)}:
+ * <ul>
+ *     <li><code>max-depth=n</code> prints at most n frames of each exception in the causal chain, the rest being
+ *     counted in the trailing "... more" line</li>
+ *     <li><code>exclude=package.name</code>, repeatable, leaves out the frames of classes in the package and its
+ *     sub-packages, each run of left-out frames being counted in a "... filtered" line</li>
+ *     <li><code>compact</code> prints the trace in full only the first time, tagged with its fingerprint ID; repeats
+ *     of the same classes and frames print one line of the exception with its own message, the fingerprint ID, and
+ *     how many times it has been seen</li>
+ * </ul>
+ */
+@Value
+public class StackTraceRenderer {
+    static final int MAX_CACHED_TRACES = 256;
+    private static final String MAX_DEPTH = "max-depth";
+    private static final String EXCLUDE = "exclude";
+    private static final String COMPACT = "compact";
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    int maxDepth;
+    @NonNull List<String> excludedPackages;
+    boolean compact;
+    @EqualsAndHashCode.Exclude @ToString.Exclude @Getter(AccessLevel.NONE) Map<Fingerprint, RenderedTrace>
+            renderedTraces = Collections.synchronizedMap(new LeastRecentlyUsed<>(MAX_CACHED_TRACES));
+
+    /**
+     * @param maxDepth
+     *         maximum number of frames printed per exception, zero for no limit
+     * @param excludedPackages
+     *         whose frames are left out
+     * @param compact
+     *         whether to print repeated traces as one line of fingerprint ID and count
+     */
+    public StackTraceRenderer(int maxDepth, @NonNull List<String> excludedPackages, boolean compact) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("maxDepth: " + maxDepth);
+        }
+        this.maxDepth = maxDepth;
+        this.excludedPackages = Collections.unmodifiableList(new ArrayList<>(excludedPackages));
+        this.compact = compact;
+    }
+
+    /**
+     * @param option
+     *         an individual pattern segment option
+     * @return <code>true</code> if the option is one of the stack trace rendering options
+     */
+    static boolean isRenderingOption(@NonNull String option) {
+        return option.equals(COMPACT) || option.startsWith(MAX_DEPTH + '=') || option.startsWith(EXCLUDE + '=');
+    }
+
+    /**
+     * @param options
+     *         stack trace rendering options, trimmed
+     * @return new renderer of the options, printing the traces in full if there is none
+     */
+    static StackTraceRenderer from(@NonNull List<String> options) {
+        int maxDepth = 0;
+        List<String> excludedPackages = new ArrayList<>();
+        boolean compact = false;
+        for (String option : options) {
+            if (!isRenderingOption(option)) {
+                throw new IllegalArgumentException("Invalid stack trace rendering option: " + option);
+            }
+            if (option.equals(COMPACT)) {
+                compact = true;
+                continue;
+            }
+            String value = option.substring(option.indexOf('=') + 1).trim();
+            if (option.startsWith(MAX_DEPTH)) {
+                maxDepth = Integer.parseInt(value);
+            } else if (!value.isEmpty()) {
+                excludedPackages.add(value.endsWith(".") ? value : value + '.');
+            }
+        }
+        return new StackTraceRenderer(maxDepth, excludedPackages, compact);
+    }
+
+    private static String printedByItself(Throwable throwable) {
+        StringWriter stringWriter = new StringWriter();
+        try (PrintWriter printWriter = new PrintWriter(stringWriter)) {
+            throwable.printStackTrace(printWriter);
+        }
+        return stringWriter.toString();
+    }
+
+    /**
+     * @param throwable
+     *         to render
+     * @return stack trace text of the throwable, ending with a line separator
+     */
+    public CharSequence render(@NonNull Throwable throwable) {
+        StackTraceElement[] stackTrace = throwable.getStackTrace();
+        if (stackTrace.length == 0) {
+            return printedByItself(throwable);
+        }
+        Fingerprint fingerprint = Fingerprint.of(throwable, stackTrace, !compact);
+        RenderedTrace renderedTrace = renderedTraces.get(fingerprint);
+        if (renderedTrace == null) {
+            String trace = print(throwable, stackTrace);
+            renderedTrace = renderedTraces.computeIfAbsent(fingerprint, f -> new RenderedTrace(f, trace, compact));
+        }
+        return renderedTrace.next(throwable);
+    }
+
+    /**
+     * @return number of traces currently cached
+     */
+    int cachedTraces() {
+        return renderedTraces.size();
+    }
+
+    private String print(Throwable throwable, StackTraceElement[] stackTrace) {
+        if (maxDepth == 0 && excludedPackages.isEmpty()) {
+            return printedByItself(throwable);
+        }
+        StringBuilder trace = new StringBuilder(1024);
+        Set<Throwable> printed = Collections.newSetFromMap(new IdentityHashMap<>());
+        print(throwable, stackTrace, new StackTraceElement[0], "", "", printed, trace);
+        return trace.toString();
+    }
+
+    /**
+     * Same layout as {@link Throwable#printStackTrace()}, only with the frames limited in depth and filtered by
+     * package
+     */
+    private void print(Throwable throwable,
+            StackTraceElement[] stackTrace,
+            StackTraceElement[] enclosingTrace,
+            String caption,
+            String prefix,
+            Set<Throwable> printed,
+            StringBuilder trace) {
+        if (!printed.add(throwable)) {
+            trace.append(prefix).append(caption).append("[CIRCULAR REFERENCE: ").append(throwable).append(']')
+                    .append(LINE_SEPARATOR);
+            return;
+        }
+        int m = stackTrace.length - 1;
+        int n = enclosingTrace.length - 1;
+        while (m >= 0 && n >= 0 && stackTrace[m].equals(enclosingTrace[n])) {
+            m--;
+            n--;
+        }
+        int framesInCommon = stackTrace.length - 1 - m;
+        trace.append(prefix).append(caption).append(throwable).append(LINE_SEPARATOR);
+        int framesPrinted = 0;
+        int framesFiltered = 0;
+        int i = 0;
+        for (; i <= m && (maxDepth == 0 || framesPrinted < maxDepth); i++) {
+            if (isExcluded(stackTrace[i])) {
+                framesFiltered++;
+                continue;
+            }
+            appendFiltered(framesFiltered, prefix, trace);
+            framesFiltered = 0;
+            trace.append(prefix).append("\tat ").append(stackTrace[i]).append(LINE_SEPARATOR);
+            framesPrinted++;
+        }
+        appendFiltered(framesFiltered, prefix, trace);
+        int framesMore = m + 1 - i + framesInCommon;
+        if (framesMore != 0) {
+            trace.append(prefix).append("\t... ").append(framesMore).append(" more").append(LINE_SEPARATOR);
+        }
+        for (Throwable suppressed : throwable.getSuppressed()) {
+            print(suppressed, suppressed.getStackTrace(), stackTrace, "Suppressed: ", prefix + '\t', printed, trace);
+        }
+        Throwable cause = throwable.getCause();
+        if (cause != null) {
+            print(cause, cause.getStackTrace(), stackTrace, "Caused by: ", prefix, printed, trace);
+        }
+    }
+
+    private boolean isExcluded(StackTraceElement frame) {
+        String className = frame.getClassName();
+        for (String excludedPackage : excludedPackages) {
+            if (className.startsWith(excludedPackage)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void appendFiltered(int framesFiltered, String prefix, StringBuilder trace) {
+        if (framesFiltered != 0) {
+            trace.append(prefix).append("\t... ").append(framesFiltered).append(" filtered").append(LINE_SEPARATOR);
+        }
+    }
+
+    /**
+     * Class, message if included, and stack frames of an exception, its causes, and its suppressed exceptions; holds
+     * no reference to the exceptions themselves
+     */
+    static final class Fingerprint {
+        private final Object[] elements;
+        private final int hash;
+
+        private Fingerprint(Object[] elements) {
+            this.elements = elements;
+            this.hash = Arrays.deepHashCode(elements);
+        }
+
+        static Fingerprint of(Throwable throwable, StackTraceElement[] stackTrace, boolean includeMessages) {
+            List<Object> elements = new ArrayList<>();
+            Set<Throwable> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+            collect(throwable, stackTrace, includeMessages, visited, elements);
+            return new Fingerprint(elements.toArray());
+        }
+
+        private static void collect(Throwable throwable,
+                StackTraceElement[] stackTrace,
+                boolean includeMessages,
+                Set<Throwable> visited,
+                List<Object> elements) {
+            if (!visited.add(throwable)) {
+                elements.add(null);
+                return;
+            }
+            elements.add(throwable.getClass());
+            if (includeMessages) {
+                elements.add(throwable.getMessage());
+            }
+            elements.add(stackTrace);
+            Throwable[] suppressedExceptions = throwable.getSuppressed();
+            elements.add(suppressedExceptions.length);
+            for (Throwable suppressed : suppressedExceptions) {
+                collect(suppressed, suppressed.getStackTrace(), includeMessages, visited, elements);
+            }
+            Throwable cause = throwable.getCause();
+            if (cause != null) {
+                collect(cause, cause.getStackTrace(), includeMessages, visited, elements);
+            }
+        }
+
+        /**
+         * @return hexadecimal ID shown to tie compacted repeats to the trace printed in full
+         */
+        String id() {
+            return String.format("%08x", hash);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof Fingerprint && hash == ((Fingerprint) o).hash && Arrays.deepEquals(
+                    elements,
+                    ((Fingerprint) o).elements);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Memoized trace text of a fingerprint, and the count of times it has been rendered
+     */
+    private static final class RenderedTrace {
+        private final String trace;
+        private final String firstTrace;
+        private final String repeatTag;
+        private final AtomicLong count = new AtomicLong();
+
+        RenderedTrace(Fingerprint fingerprint, String trace, boolean compact) {
+            this.trace = trace;
+            if (!compact) {
+                this.firstTrace = trace;
+                this.repeatTag = null;
+                return;
+            }
+            int firstLineEnd = trace.indexOf(LINE_SEPARATOR);
+            String firstLine = firstLineEnd < 0 ? trace : trace.substring(0, firstLineEnd);
+            String tag = " [stack trace #" + fingerprint.id();
+            this.firstTrace = firstLine + tag + ']' + trace.substring(firstLine.length());
+            this.repeatTag = tag + ", seen ";
+        }
+
+        /**
+         * @param throwable
+         *         being rendered, whose own first line, message included, starts a compacted repeat
+         */
+        CharSequence next(Throwable throwable) {
+            if (repeatTag == null) {
+                return trace;
+            }
+            long seen = count.incrementAndGet();
+            if (seen == 1) {
+                return firstTrace;
+            }
+            String firstLine = throwable.toString();
+            return new StringBuilder(firstLine.length() + repeatTag.length() + 32).append(firstLine)
+                    .append(repeatTag)
+                    .append(seen)
+                    .append(" times]")
+                    .append(LINE_SEPARATOR);
+        }
+    }
+
+    /**
+     * Access-ordered map, evicting the least recently accessed entry past its capacity; not thread-safe
+     */
+    private static final class LeastRecentlyUsed<K, V> extends LinkedHashMap<K, V> {
+        private final int capacity;
+
+        LeastRecentlyUsed(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -31,17 +31,15 @@ import lombok.Value;
 
 import javax.annotation.Nonnull;
 import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
 
 /**
  *
  */
 @Value
 public class TimestampPatternSegment implements LogPattern {
-    private static final DateTimeFormatter DEFAULT_TIMESTAMP_FORMATTER =
-            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZZZZZ");
+    private static final String DEFAULT_TIMESTAMP_PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSSZZZZZ";
     private static final ZoneId DEFAULT_TIMESTAMP_ZONE = ZoneId.systemDefault();
-    DateTimeFormatter dateTimeFormatter;
+    CachedTimestampFormatter timestampFormatter;
 
     /**
      * @param patternSegment
@@ -53,13 +51,8 @@ public class TimestampPatternSegment implements LogPattern {
         if (!PatternSegmentType.TIMESTAMP.isTargetTypeOf(patternSegment)) {
             throw new IllegalArgumentException("patternSegment: " + patternSegment);
         }
-        DateTimeFormatter dateTimeFormatter = PatternSegmentType.getPatternSegmentOption(patternSegment)
-                .map(DateTimeFormatter::ofPattern)
-                .orElse(DEFAULT_TIMESTAMP_FORMATTER);
-        if (dateTimeFormatter.getZone() == null) {
-            dateTimeFormatter = dateTimeFormatter.withZone(DEFAULT_TIMESTAMP_ZONE);
-        }
-        return new TimestampPatternSegment(dateTimeFormatter);
+        String pattern = PatternSegmentType.getPatternSegmentOption(patternSegment).orElse(DEFAULT_TIMESTAMP_PATTERN);
+        return new TimestampPatternSegment(CachedTimestampFormatter.ofPattern(pattern, DEFAULT_TIMESTAMP_ZONE));
     }
 
     @Override
@@ -74,6 +67,6 @@ public class TimestampPatternSegment implements LogPattern {
 
     @Override
     public void render(@NonNull LogEntry logEntry, @NonNull StringBuilder target) {
-        dateTimeFormatter.formatTo(logEntry.getTimestamp(), target);
+        timestampFormatter.formatTo(logEntry.getEpochMilli(), logEntry.getNanoOfMilli(), target);
     }
 }
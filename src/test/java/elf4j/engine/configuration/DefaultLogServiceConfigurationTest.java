@@ -29,7 +29,6 @@ import elf4j.Level;
 import elf4j.engine.NativeLogger;
 import elf4j.engine.service.LogService;
 import elf4j.engine.writer.LogWriter;
-import elf4j.engine.writer.StandardStreamsWriter;
 import elf4j.engine.writer.WriterGroup;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -39,6 +38,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Properties;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.BDDMockito.given;
@@ -91,7 +91,8 @@ class DefaultLogServiceConfigurationTest {
 
             defaultServiceConfiguration.refresh(new Properties());
 
-            assertTrue(defaultServiceConfiguration.getLogServiceWriter() instanceof StandardStreamsWriter);
+            assertTrue(defaultServiceConfiguration.getLogServiceWriter() instanceof WriterGroup);
+            assertEquals(1, ((WriterGroup) defaultServiceConfiguration.getLogServiceWriter()).size());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.configuration;
+
+import elf4j.engine.writer.LogWriter;
+import elf4j.engine.writer.WriterGroup;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriterRepositoryTest {
+    @Nested
+    class from {
+        @Test
+        void noConfigurationTakesAsyncDefaultWriterGroup() {
+            WriterRepository writerRepository = WriterRepository.from(null);
+
+            LogWriter logServiceWriter = writerRepository.getLogServiceWriter();
+            assertTrue(logServiceWriter instanceof WriterGroup);
+            assertEquals(1, ((WriterGroup) logServiceWriter).size());
+            writerRepository.shutdown(System.nanoTime());
+        }
+
+        @Test
+        void noWriterConfiguredTakesSameDefault() {
+            WriterRepository writerRepository = WriterRepository.from(new Properties());
+
+            LogWriter logServiceWriter = writerRepository.getLogServiceWriter();
+            assertTrue(logServiceWriter instanceof WriterGroup);
+            assertEquals(1, ((WriterGroup) logServiceWriter).size());
+            writerRepository.shutdown(System.nanoTime());
+        }
+    }
+}
@@ -37,13 +37,18 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willAnswer;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 
 @ExtendWith(MockitoExtension.class)
 class DefaultLogServiceTest {
@@ -54,8 +59,8 @@ class DefaultLogServiceTest {
         }
 
         @Override
-        public void execute(Runnable command) {
-            command.run();
+        public void write(LogEntry logEntry, LogWriter logWriter) {
+            logWriter.write(logEntry);
         }
     }
 
@@ -95,7 +100,7 @@ class DefaultLogServiceTest {
 
             logService.log(stubLogger, this.getClass(), null, null, null);
 
-            then(mockWriterThread).should().execute(any(Runnable.class));
+            then(mockWriterThread).should().write(any(LogEntry.class), same(mockLogWriter));
         }
 
         @Test
@@ -156,6 +161,30 @@ class DefaultLogServiceTest {
             assertNull(captorLogEntry.getValue().getCallerFrame());
         }
 
+        @Test
+        void garbageFreeRecyclesEntryAfterWrite() {
+            LogEntryPool logEntryPool = new LogEntryPool(2, 2);
+            logService = new DefaultLogService(mockLogServiceConfiguration, new StubWriterThread(), logEntryPool);
+            stubLogger = new NativeLogger(this.getClass().getName(), Level.TRACE, logService);
+            given(mockLogServiceConfiguration.isEnabled(any(NativeLogger.class))).willReturn(true);
+            given(mockLogServiceConfiguration.getLogServiceWriter()).willReturn(mockLogWriter);
+            List<String> written = new ArrayList<>();
+            willAnswer(invocation -> written.add(invocation.getArgument(0, LogEntry.class)
+                    .getResolvedMessage()
+                    .toString())).given(mockLogWriter).write(any(LogEntry.class));
+
+            logService.log(stubLogger, this.getClass(), null, "1st {} {}", new Object[] { "a", "b" });
+            logService.log(stubLogger, this.getClass(), null, "2nd {}", new Object[] { "c" });
+
+            then(mockLogWriter).should(times(2)).write(captorLogEntry.capture());
+            assertEquals(2, written.size());
+            assertEquals("1st a b", written.get(0));
+            assertEquals("2nd c", written.get(1));
+            assertEquals(2, logEntryPool.available());
+            assertNull(captorLogEntry.getAllValues().get(0).getMessage());
+            assertNull(captorLogEntry.getAllValues().get(1).getMessage());
+        }
+
         @Test
         void onlyLogWhenEnabled() {
             logService = new DefaultLogService(mockLogServiceConfiguration, new StubWriterThread());
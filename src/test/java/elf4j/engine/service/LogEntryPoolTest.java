@@ -0,0 +1,204 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.service;
+
+import elf4j.Level;
+import elf4j.engine.NativeLogger;
+import elf4j.engine.writer.FlightRecorderWriter;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class LogEntryPoolTest {
+    @Mock LogService mockLogService;
+
+    @Nested
+    class from {
+        @Test
+        void disabledByDefault() {
+            assertNull(LogEntryPool.from(null));
+            assertNull(LogEntryPool.from(new Properties()));
+        }
+
+        @Test
+        void enabled() {
+            Properties properties = new Properties();
+            properties.setProperty("garbage-free", "true");
+            properties.setProperty("garbage-free.pool-size", "100");
+
+            LogEntryPool logEntryPool = LogEntryPool.from(properties);
+
+            assertNotNull(logEntryPool);
+            assertEquals(128, logEntryPool.size());
+            assertEquals(128, logEntryPool.available());
+        }
+    }
+
+    @Nested
+    class acquire {
+        @Test
+        void fillsWithoutKeepingCallerArguments() {
+            LogEntryPool logEntryPool = new LogEntryPool(2, 2);
+            NativeLogger nativeLogger = new NativeLogger("testOwner", Level.INFO, mockLogService);
+            Object[] arguments = { "a", "b" };
+
+            LogEntry logEntry = logEntryPool.acquire();
+            logEntry.fill(nativeLogger, null, "{} and {}", arguments, null, null);
+            arguments[0] = "changed";
+
+            assertSame(nativeLogger, logEntry.getNativeLogger());
+            assertEquals("a and b", logEntry.getResolvedMessage().toString());
+            assertEquals(0, logEntry.getNanoOfMilli());
+            assertEquals(logEntry.getEpochMilli(), logEntry.getTimestamp().toEpochMilli());
+            assertNotNull(logEntry.getTimestamp());
+        }
+
+        @Test
+        void referencesArgumentsBeyondSlots() {
+            LogEntryPool logEntryPool = new LogEntryPool(2, 1);
+            Object[] arguments = { "a", "b" };
+
+            LogEntry logEntry = logEntryPool.acquire();
+            logEntry.fill(new NativeLogger("testOwner", Level.INFO, mockLogService),
+                    null,
+                    "{} and {}",
+                    arguments,
+                    null,
+                    null);
+
+            assertSame(arguments, logEntry.getArguments());
+            assertEquals("a and b", logEntry.getResolvedMessage().toString());
+        }
+
+        @Test
+        void allocatesWhenRunDry() {
+            LogEntryPool logEntryPool = new LogEntryPool(2, 0);
+
+            LogEntry first = logEntryPool.acquire();
+            LogEntry second = logEntryPool.acquire();
+            LogEntry third = logEntryPool.acquire();
+
+            assertNotSame(first, third);
+            assertNotSame(second, third);
+            assertEquals(0, logEntryPool.available());
+        }
+    }
+
+    @Nested
+    class release {
+        @Test
+        void recyclesAfterLastHolder() {
+            LogEntryPool logEntryPool = new LogEntryPool(2, 0);
+            LogEntry logEntry = logEntryPool.acquire();
+            logEntry.fill(new NativeLogger("testOwner", Level.INFO, mockLogService), null, "message", null, null, null);
+            logEntry.retain();
+
+            logEntry.release();
+            assertEquals(1, logEntryPool.available());
+            assertEquals("message", logEntry.getMessage());
+
+            logEntry.release();
+            assertEquals(2, logEntryPool.available());
+            assertNull(logEntry.getMessage());
+            logEntryPool.acquire();
+            assertSame(logEntry, logEntryPool.acquire());
+        }
+
+        @Test
+        void argumentsCopiedOutAtMaxArguments() {
+            LogEntryPool logEntryPool = new LogEntryPool(1, 2);
+            NativeLogger nativeLogger = new NativeLogger("testOwner", Level.INFO, mockLogService);
+            LogEntry logEntry = logEntryPool.acquire();
+            logEntry.fill(nativeLogger, null, "{} and {}", new Object[] { "a", "b" }, null, null);
+
+            Object[] arguments = logEntry.getArguments();
+            logEntry.release();
+            logEntryPool.acquire().fill(nativeLogger, null, "{} and {}", new Object[] { "c", "d" }, null, null);
+
+            assertArrayEquals(new Object[] { "a", "b" }, arguments);
+        }
+
+        @Test
+        void recordedEntryKeepsArgumentsAtMaxArguments(@TempDir Path tempDir) throws IOException {
+            Path path = tempDir.resolve("recorded.log");
+            Map<String, String> configuration = new HashMap<>();
+            configuration.put("target", "file");
+            configuration.put("target.path", path.toString());
+            configuration.put("target.pattern", "{message}");
+            FlightRecorderWriter flightRecorderWriter = FlightRecorderWriter.from(configuration, new Properties());
+            LogEntryPool logEntryPool = new LogEntryPool(1, 2);
+            LogEntry logEntry = logEntryPool.acquire();
+            logEntry.fill(new NativeLogger("testOwner", Level.INFO, mockLogService),
+                    null,
+                    "{} and {}",
+                    new Object[] { "a", "b" },
+                    null,
+                    null);
+
+            flightRecorderWriter.write(logEntry);
+            logEntry.release();
+            LogEntry reused = logEntryPool.acquire();
+            reused.fill(new NativeLogger("testOwner", Level.ERROR, mockLogService),
+                    null,
+                    "{} and {}",
+                    new Object[] { "c", "d" },
+                    null,
+                    null);
+            flightRecorderWriter.write(reused);
+            flightRecorderWriter.close();
+
+            assertEquals(Arrays.asList("a and b", "c and d"), Files.readAllLines(path));
+        }
+
+        @Test
+        void noopForBuiltEntries() {
+            LogEntry logEntry = LogEntry.builder()
+                    .nativeLogger(new NativeLogger("testOwner", Level.INFO, mockLogService))
+                    .message("message")
+                    .build();
+
+            logEntry.retain();
+            logEntry.release();
+            logEntry.release();
+
+            assertEquals("message", logEntry.getMessage());
+        }
+    }
+}
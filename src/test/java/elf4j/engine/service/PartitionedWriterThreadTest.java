@@ -0,0 +1,123 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.service;
+
+import elf4j.Level;
+import elf4j.engine.NativeLogger;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class PartitionedWriterThreadTest {
+    private static final int LOGGERS = 8;
+    private static final int ENTRIES_PER_LOGGER = 500;
+    @Mock LogService stubLogService;
+
+    @Nested
+    class from {
+        @Test
+        void onePartitionPerThread() {
+            Properties properties = new Properties();
+            properties.setProperty("async.threads", "3");
+            properties.setProperty("async.partition", "thread");
+
+            PartitionedWriterThread partitionedWriterThread = PartitionedWriterThread.from(properties, "test");
+
+            assertEquals(3, partitionedWriterThread.partitions());
+            assertEquals(PartitionedWriterThread.Partitioning.THREAD,
+                    PartitionedWriterThread.Partitioning.from(" Thread "));
+            partitionedWriterThread.shutdown();
+        }
+
+        @Test
+        void errorOnNoThreads() {
+            Properties properties = new Properties();
+            properties.setProperty("async.threads", "0");
+
+            assertThrows(IllegalArgumentException.class, () -> PartitionedWriterThread.from(properties, "test"));
+        }
+    }
+
+    @Nested
+    class write {
+        @Test
+        void keepsOrderPerLogger() {
+            Properties properties = new Properties();
+            properties.setProperty("async.threads", "4");
+            PartitionedWriterThread partitionedWriterThread = PartitionedWriterThread.from(properties, "test");
+            RingBufferWriterThreadTest.CollectingWriter collectingWriter =
+                    new RingBufferWriterThreadTest.CollectingWriter();
+            List<NativeLogger> loggers = IntStream.range(0, LOGGERS)
+                    .mapToObj(i -> new NativeLogger("test.Owner" + i, Level.INFO, stubLogService))
+                    .collect(Collectors.toList());
+
+            for (int i = 0; i < ENTRIES_PER_LOGGER; i++) {
+                for (int l = 0; l < LOGGERS; l++) {
+                    partitionedWriterThread.write(LogEntry.builder()
+                            .nativeLogger(loggers.get(l))
+                            .message(new int[] { l, i })
+                            .build(), collectingWriter);
+                }
+            }
+
+            await().until(() -> collectingWriter.messages.size() == LOGGERS * ENTRIES_PER_LOGGER);
+            int[] next = new int[LOGGERS];
+            synchronized (collectingWriter.messages) {
+                for (Object message : collectingWriter.messages) {
+                    int[] loggerAndSequence = (int[]) message;
+                    assertEquals(next[loggerAndSequence[0]]++, loggerAndSequence[1]);
+                }
+            }
+            partitionedWriterThread.shutdown();
+        }
+
+        @Test
+        void sameLoggerSamePartition() {
+            NativeLogger logger = new NativeLogger("test.Owner", Level.INFO, stubLogService);
+            LogEntry logEntry = LogEntry.builder().nativeLogger(logger).message("m").build();
+
+            int partition = PartitionedWriterThread.Partitioning.LOGGER.partitionOf(logEntry, 5);
+
+            assertTrue(partition >= 0 && partition < 5);
+            assertEquals(partition,
+                    PartitionedWriterThread.Partitioning.LOGGER.partitionOf(LogEntry.builder()
+                            .nativeLogger(logger)
+                            .message("other")
+                            .build(), 5));
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.service;
+
+import elf4j.Level;
+import elf4j.engine.NativeLogger;
+import elf4j.engine.writer.LogWriter;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class PerThreadRingBuffersTest {
+    @Mock LogService stubLogService;
+    @Mock LogWriter stubLogWriter;
+
+    LogEntry logEntry(Object message) {
+        return LogEntry.builder()
+                .nativeLogger(new NativeLogger(this.getClass().getName(), Level.INFO, stubLogService))
+                .message(message)
+                .build();
+    }
+
+    void offerOn(ExecutorService producer, PerThreadRingBuffers buffers, Object message)
+            throws ExecutionException, InterruptedException {
+        producer.submit(() -> assertTrue(buffers.offer(logEntry(message), stubLogWriter))).get();
+        Thread.sleep(5);
+    }
+
+    @Nested
+    class drain {
+        @Test
+        void mergeProducersByLogCallTime() throws ExecutionException, InterruptedException {
+            PerThreadRingBuffers buffers = new PerThreadRingBuffers(8);
+            ExecutorService first = Executors.newSingleThreadExecutor();
+            ExecutorService second = Executors.newSingleThreadExecutor();
+            List<LogEntry> logEntries = new ArrayList<>();
+            List<LogWriter> logWriters = new ArrayList<>();
+
+            try {
+                offerOn(first, buffers, "1");
+                offerOn(second, buffers, "2");
+                offerOn(first, buffers, "3");
+                offerOn(second, buffers, "4");
+
+                assertEquals(2, buffers.producers());
+                assertEquals(4, buffers.drain(logEntries, logWriters, 10));
+            } finally {
+                first.shutdown();
+                second.shutdown();
+            }
+            assertEquals(Arrays.asList("1", "2", "3", "4"),
+                    logEntries.stream().map(LogEntry::getMessage).collect(Collectors.toList()));
+            assertEquals(4, logWriters.size());
+            assertTrue(buffers.isEmpty());
+        }
+
+        @Test
+        void keepOrderAcrossBatches() throws ExecutionException, InterruptedException {
+            PerThreadRingBuffers buffers = new PerThreadRingBuffers(8);
+            ExecutorService first = Executors.newSingleThreadExecutor();
+            ExecutorService second = Executors.newSingleThreadExecutor();
+            List<LogEntry> logEntries = new ArrayList<>();
+            List<LogWriter> logWriters = new ArrayList<>();
+
+            try {
+                offerOn(first, buffers, "1");
+                offerOn(second, buffers, "2");
+                offerOn(first, buffers, "3");
+                offerOn(first, buffers, "4");
+                offerOn(second, buffers, "5");
+                offerOn(first, buffers, "6");
+
+                for (int batch = 0; batch < 3; batch++) {
+                    assertEquals(2, buffers.drain(logEntries, logWriters, 2));
+                }
+            } finally {
+                first.shutdown();
+                second.shutdown();
+            }
+            assertEquals(Arrays.asList("1", "2", "3", "4", "5", "6"),
+                    logEntries.stream().map(LogEntry::getMessage).collect(Collectors.toList()));
+        }
+
+        @Test
+        void mergeRunsOfManyProducers() throws ExecutionException, InterruptedException {
+            PerThreadRingBuffers buffers = new PerThreadRingBuffers(8);
+            List<ExecutorService> producers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                producers.add(Executors.newSingleThreadExecutor());
+            }
+            List<String> expected = new ArrayList<>();
+            List<LogEntry> logEntries = new ArrayList<>();
+            List<LogWriter> logWriters = new ArrayList<>();
+
+            try {
+                int[] order = {0, 0, 0, 2, 1, 3, 3, 0, 2, 2, 1, 0};
+                for (int i = 0; i < order.length; i++) {
+                    offerOn(producers.get(order[i]), buffers, String.valueOf(i));
+                    expected.add(String.valueOf(i));
+                }
+
+                assertEquals(5, buffers.drain(logEntries, logWriters, 5));
+                assertEquals(7, buffers.drain(logEntries, logWriters, 10));
+            } finally {
+                producers.forEach(ExecutorService::shutdown);
+            }
+            assertEquals(expected, logEntries.stream().map(LogEntry::getMessage).collect(Collectors.toList()));
+            assertEquals(12, logWriters.size());
+            assertTrue(buffers.isEmpty());
+        }
+
+        @Test
+        void respectLimit() throws ExecutionException, InterruptedException {
+            PerThreadRingBuffers buffers = new PerThreadRingBuffers(8);
+            ExecutorService producer = Executors.newSingleThreadExecutor();
+            List<LogEntry> logEntries = new ArrayList<>();
+            List<LogWriter> logWriters = new ArrayList<>();
+
+            try {
+                offerOn(producer, buffers, "1");
+                offerOn(producer, buffers, "2");
+                offerOn(producer, buffers, "3");
+            } finally {
+                producer.shutdown();
+            }
+
+            assertEquals(2, buffers.drain(logEntries, logWriters, 2));
+            assertEquals(1, buffers.drain(logEntries, logWriters, 2));
+            assertEquals(Arrays.asList("1", "2", "3"),
+                    logEntries.stream().map(LogEntry::getMessage).collect(Collectors.toList()));
+        }
+
+        @Test
+        void dropBufferOfTerminatedProducer() throws InterruptedException {
+            PerThreadRingBuffers buffers = new PerThreadRingBuffers(8);
+            Thread producer = new Thread(() -> buffers.offer(logEntry("last"), stubLogWriter));
+            producer.start();
+            producer.join();
+
+            assertEquals(1, buffers.drain(new ArrayList<>(), new ArrayList<>(), 10));
+            assertEquals(1, buffers.producers());
+            assertEquals(0, buffers.drain(new ArrayList<>(), new ArrayList<>(), 10));
+            assertEquals(0, buffers.producers());
+        }
+    }
+
+    @Nested
+    class offer {
+        @Test
+        void fullPerProducer() throws ExecutionException, InterruptedException {
+            PerThreadRingBuffers buffers = new PerThreadRingBuffers(2);
+            ExecutorService other = Executors.newSingleThreadExecutor();
+
+            try {
+                assertTrue(buffers.offer(logEntry("mine"), stubLogWriter));
+                assertTrue(buffers.offer(logEntry("mine again"), stubLogWriter));
+                assertFalse(buffers.offer(logEntry("mine once more"), stubLogWriter));
+                offerOn(other, buffers, "other's");
+            } finally {
+                other.shutdown();
+            }
+            assertEquals(2, buffers.size());
+            assertEquals("mine", buffers.poll().getMessage());
+        }
+    }
+}
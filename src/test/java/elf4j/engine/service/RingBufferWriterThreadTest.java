@@ -0,0 +1,491 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.service;
+
+import elf4j.Level;
+import elf4j.engine.NativeLogger;
+import elf4j.engine.writer.LogWriter;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class RingBufferWriterThreadTest {
+    @Mock LogService stubLogService;
+
+    LogEntry logEntry(Object message) {
+        return logEntry(Level.INFO, message);
+    }
+
+    LogEntry logEntry(Level level, Object message) {
+        return LogEntry.builder()
+                .nativeLogger(new NativeLogger(this.getClass().getName(), level, stubLogService))
+                .message(message)
+                .build();
+    }
+
+    static class CollectingWriter implements LogWriter {
+        final List<Object> messages = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public Level getMinimumOutputLevel() {
+            return Level.TRACE;
+        }
+
+        @Override
+        public void write(LogEntry logEntry) {
+            messages.add(logEntry.getMessage());
+        }
+
+        @Override
+        public boolean includeCallerDetail() {
+            return false;
+        }
+
+        @Override
+        public boolean includeCallerThread() {
+            return false;
+        }
+    }
+
+    static class BlockingWriter extends CollectingWriter {
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void write(LogEntry logEntry) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.write(logEntry);
+        }
+    }
+
+    @Nested
+    class from {
+        @Test
+        void defaults() {
+            RingBufferWriterThread writerThread = RingBufferWriterThread.from(null);
+
+            assertEquals(16384, writerThread.capacity());
+        }
+
+        @Test
+        void capacityRoundedUpToPowerOfTwo() {
+            Properties properties = new Properties();
+            properties.setProperty("async.capacity", "1000");
+            properties.setProperty("async.wait", "busy-spin");
+
+            RingBufferWriterThread writerThread = RingBufferWriterThread.from(properties);
+
+            assertEquals(1024, writerThread.capacity());
+            assertTrue(writerThread.toString().contains("BUSY_SPIN"));
+        }
+
+        @Test
+        void perThreadBuffers() {
+            Properties properties = new Properties();
+            properties.setProperty("async.buffer", "per-thread");
+
+            RingBufferWriterThread writerThread = RingBufferWriterThread.from(properties);
+
+            assertEquals(1024, writerThread.capacity());
+            assertTrue(writerThread.toString().contains("PER_THREAD"));
+        }
+
+        @Test
+        void errorOnUnknownWaitStrategy() {
+            Properties properties = new Properties();
+            properties.setProperty("async.wait", "sleep");
+
+            assertThrows(IllegalArgumentException.class, () -> RingBufferWriterThread.from(properties));
+        }
+    }
+
+    @Nested
+    class write {
+        @Test
+        void preserveOrderOfEachCaller() throws InterruptedException {
+            RingBufferWriterThread writerThread =
+                    new RingBufferWriterThread(8, RingBufferWriterThread.WaitStrategy.YIELD, "test-writer-thread");
+            CollectingWriter collectingWriter = new CollectingWriter();
+            int callers = 4;
+            int entriesPerCaller = 500;
+            List<Thread> threads = IntStream.range(0, callers).mapToObj(c -> new Thread(() -> {
+                for (int i = 0; i < entriesPerCaller; i++) {
+                    writerThread.write(logEntry(c + ":" + i), collectingWriter);
+                }
+            })).collect(Collectors.toList());
+
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            writerThread.shutdown();
+
+            await().until(() -> collectingWriter.messages.size() == callers * entriesPerCaller);
+            for (int c = 0; c < callers; c++) {
+                String prefix = c + ":";
+                List<Object> ofCaller = collectingWriter.messages.stream()
+                        .filter(m -> ((String) m).startsWith(prefix))
+                        .collect(Collectors.toList());
+                List<Object> expected =
+                        IntStream.range(0, entriesPerCaller).mapToObj(i -> prefix + i).collect(Collectors.toList());
+                assertEquals(expected, ofCaller);
+            }
+        }
+
+        @Test
+        void callerWaitsWhenFull() throws InterruptedException {
+            RingBufferWriterThread writerThread =
+                    new RingBufferWriterThread(2, RingBufferWriterThread.WaitStrategy.PARK, "test-writer-thread");
+            BlockingWriter blockingWriter = new BlockingWriter();
+            AtomicBoolean allHandedOff = new AtomicBoolean();
+            Thread caller = new Thread(() -> {
+                for (int i = 0; i < 5; i++) {
+                    writerThread.write(logEntry(i), blockingWriter);
+                }
+                allHandedOff.set(true);
+            });
+
+            caller.start();
+            caller.join(200);
+
+            assertFalse(allHandedOff.get());
+
+            blockingWriter.release.countDown();
+
+            await().untilTrue(allHandedOff);
+            await().until(() -> blockingWriter.messages.size() == 5);
+            writerThread.shutdown();
+        }
+    }
+
+    @Nested
+    class perThread {
+        @Test
+        void preserveOrderOfEachCaller() throws InterruptedException {
+            RingBufferWriterThread writerThread = new RingBufferWriterThread(RingBufferWriterThread.BufferMode.PER_THREAD,
+                    4,
+                    RingBufferWriterThread.WaitStrategy.PARK,
+                    RingBufferWriterThread.OverflowPolicy.BLOCK,
+                    0.8,
+                    Level.WARN,
+                    "test-writer-thread");
+            CollectingWriter collectingWriter = new CollectingWriter();
+            int callers = 4;
+            int entries = 1000;
+            List<Thread> threads = new ArrayList<>();
+            for (int c = 0; c < callers; c++) {
+                int caller = c;
+                threads.add(new Thread(() -> {
+                    for (int i = 0; i < entries; i++) {
+                        writerThread.write(logEntry(caller + ":" + i), collectingWriter);
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            writerThread.shutdown();
+
+            await().until(() -> collectingWriter.messages.size() == callers * entries);
+            for (int c = 0; c < callers; c++) {
+                String prefix = c + ":";
+                assertEquals(IntStream.range(0, entries).mapToObj(i -> prefix + i).collect(Collectors.toList()),
+                        collectingWriter.messages.stream()
+                                .map(String::valueOf)
+                                .filter(message -> message.startsWith(prefix))
+                                .collect(Collectors.toList()));
+            }
+        }
+    }
+
+    @Nested
+    class pooled {
+        @Test
+        void releasedAfterWrite() {
+            RingBufferWriterThread writerThread =
+                    new RingBufferWriterThread(16, RingBufferWriterThread.WaitStrategy.PARK, "test-writer-thread");
+            LogEntryPool logEntryPool = new LogEntryPool(4, 1);
+            CollectingWriter collectingWriter = new CollectingWriter();
+
+            for (int i = 0; i < 4; i++) {
+                LogEntry logEntry = logEntryPool.acquire();
+                logEntry.fill(new NativeLogger(this.getClass().getName(), Level.INFO, stubLogService),
+                        null,
+                        i,
+                        null,
+                        null,
+                        null);
+                writerThread.write(logEntry, collectingWriter);
+                logEntry.release();
+            }
+            writerThread.shutdown();
+
+            await().until(() -> logEntryPool.available() == 4);
+            assertEquals(IntStream.range(0, 4).boxed().collect(Collectors.toList()), collectingWriter.messages);
+        }
+    }
+
+    @Nested
+    class batch {
+        @Test
+        void drainAllAvailableIntoOneBatchPerWriter() {
+            RingBufferWriterThread writerThread =
+                    new RingBufferWriterThread(16, RingBufferWriterThread.WaitStrategy.PARK, "test-writer-thread");
+            BlockingWriter blockingWriter = new BlockingWriter();
+            List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+            CollectingWriter batchingWriter = new CollectingWriter() {
+                @Override
+                public void write(List<LogEntry> logEntries) {
+                    batchSizes.add(logEntries.size());
+                    super.write(logEntries);
+                }
+            };
+
+            writerThread.write(logEntry("blocking"), blockingWriter);
+            await().until(() -> writerThread.size() == 0);
+            for (int i = 0; i < 10; i++) {
+                writerThread.write(logEntry(i), batchingWriter);
+            }
+            blockingWriter.release.countDown();
+            writerThread.shutdown();
+
+            await().until(() -> batchingWriter.messages.size() == 10);
+            assertEquals(Collections.singletonList(10), batchSizes);
+            assertEquals(IntStream.range(0, 10).boxed().collect(Collectors.toList()), batchingWriter.messages);
+        }
+
+        @Test
+        void flushOnceWhenBufferRunsEmpty() {
+            RingBufferWriterThread writerThread =
+                    new RingBufferWriterThread(16, RingBufferWriterThread.WaitStrategy.PARK, "test-writer-thread");
+            BlockingWriter blockingWriter = new BlockingWriter();
+            AtomicInteger flushes = new AtomicInteger();
+            CollectingWriter flushingWriter = new CollectingWriter() {
+                @Override
+                public void flush() {
+                    assertEquals(10, messages.size());
+                    flushes.incrementAndGet();
+                }
+            };
+
+            writerThread.write(logEntry("blocking"), blockingWriter);
+            await().until(() -> writerThread.size() == 0);
+            for (int i = 0; i < 10; i++) {
+                writerThread.write(logEntry(i), flushingWriter);
+            }
+            blockingWriter.release.countDown();
+            writerThread.shutdown(System.nanoTime() + TimeUnit.SECONDS.toNanos(10));
+
+            assertEquals(1, flushes.get());
+        }
+    }
+
+    @Nested
+    class overflow {
+        BlockingWriter blockingWriter = new BlockingWriter();
+
+        RingBufferWriterThread fillUp(RingBufferWriterThread.OverflowPolicy overflowPolicy) {
+            RingBufferWriterThread writerThread = new RingBufferWriterThread(2,
+                    RingBufferWriterThread.WaitStrategy.YIELD,
+                    overflowPolicy,
+                    0.5,
+                    Level.WARN,
+                    "test-writer-thread");
+            writerThread.write(logEntry(Level.ERROR, "taken by consumer"), blockingWriter);
+            await().until(() -> writerThread.size() == 0);
+            writerThread.write(logEntry(Level.ERROR, "first buffered"), blockingWriter);
+            writerThread.write(logEntry(Level.ERROR, "second buffered"), blockingWriter);
+            return writerThread;
+        }
+
+        @Test
+        void dropNew() {
+            RingBufferWriterThread writerThread = fillUp(RingBufferWriterThread.OverflowPolicy.DROP_NEW);
+
+            writerThread.write(logEntry("dropped"), blockingWriter);
+            blockingWriter.release.countDown();
+            writerThread.shutdown();
+
+            await().until(() -> blockingWriter.messages.size() == 3);
+            assertFalse(blockingWriter.messages.contains("dropped"));
+            assertEquals(1, writerThread.getOverflowCounts().getDroppedNew());
+            assertEquals(1, writerThread.getOverflowCounts().getLost());
+        }
+
+        @Test
+        void dropOldest() {
+            RingBufferWriterThread writerThread = fillUp(RingBufferWriterThread.OverflowPolicy.DROP_OLDEST);
+
+            writerThread.write(logEntry("newest"), blockingWriter);
+            blockingWriter.release.countDown();
+            writerThread.shutdown();
+
+            await().until(() -> blockingWriter.messages.size() == 3);
+            assertFalse(blockingWriter.messages.contains("first buffered"));
+            assertTrue(blockingWriter.messages.contains("newest"));
+            assertEquals(1, writerThread.getOverflowCounts().getDroppedOldest());
+        }
+
+        @Test
+        void discardBelowLevel() {
+            RingBufferWriterThread writerThread = fillUp(RingBufferWriterThread.OverflowPolicy.DISCARD_BELOW_LEVEL);
+
+            writerThread.write(logEntry("discarded"), blockingWriter);
+            blockingWriter.release.countDown();
+            writerThread.write(logEntry(Level.ERROR, "kept"), blockingWriter);
+            writerThread.shutdown();
+
+            await().until(() -> blockingWriter.messages.size() == 4);
+            assertFalse(blockingWriter.messages.contains("discarded"));
+            assertTrue(blockingWriter.messages.contains("kept"));
+            assertEquals(1, writerThread.getOverflowCounts().getDiscardedBelowLevel());
+        }
+    }
+
+    @Nested
+    class shutdown {
+        @Test
+        void rejectAfterShutdown() {
+            RingBufferWriterThread writerThread =
+                    new RingBufferWriterThread(4, RingBufferWriterThread.WaitStrategy.PARK, "test-writer-thread");
+
+            writerThread.shutdown();
+
+            assertThrows(RejectedExecutionException.class,
+                    () -> writerThread.write(logEntry("late"), new CollectingWriter()));
+        }
+
+        @Test
+        void drainPendingEntriesWithinDeadline() {
+            RingBufferWriterThread writerThread =
+                    new RingBufferWriterThread(16, RingBufferWriterThread.WaitStrategy.PARK, "test-writer-thread");
+            CollectingWriter collectingWriter = new CollectingWriter();
+            for (int i = 0; i < 10; i++) {
+                writerThread.write(logEntry(i), collectingWriter);
+            }
+
+            WriterThread.DrainCounts drainCounts =
+                    writerThread.shutdown(System.nanoTime() + TimeUnit.SECONDS.toNanos(10));
+
+            assertEquals(10, collectingWriter.messages.size());
+            assertEquals(0, drainCounts.getAbandoned());
+            assertTrue(drainCounts.getWritten() <= 10);
+        }
+
+        @Test
+        void abandonPendingEntriesPastDeadline() throws InterruptedException {
+            RingBufferWriterThread writerThread =
+                    new RingBufferWriterThread(16, RingBufferWriterThread.WaitStrategy.PARK, "test-writer-thread");
+            BlockingWriter blockingWriter = new BlockingWriter();
+            writerThread.write(logEntry("in progress"), blockingWriter);
+            await().until(() -> writerThread.size() == 0);
+            for (int i = 0; i < 10; i++) {
+                writerThread.write(logEntry(i), blockingWriter);
+            }
+            Thread releaser = new Thread(() -> {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(60));
+                blockingWriter.release.countDown();
+            });
+
+            releaser.start();
+            WriterThread.DrainCounts drainCounts =
+                    writerThread.shutdown(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(20));
+            releaser.join();
+
+            assertEquals(new WriterThread.DrainCounts(1, 10), drainCounts);
+            assertEquals(Collections.singletonList("in progress"), blockingWriter.messages);
+        }
+
+        @Test
+        void stopWaitingForFreeSlotOnceConsumerExited() {
+            RingBufferWriterThread writerThread =
+                    new RingBufferWriterThread(2, RingBufferWriterThread.WaitStrategy.PARK, "test-writer-thread");
+            CollectingWriter collectingWriter = new CollectingWriter();
+            writerThread.write(logEntry("started"), collectingWriter);
+            writerThread.shutdown(System.nanoTime() + TimeUnit.SECONDS.toNanos(10));
+
+            List<Boolean> offered = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> IntStream.range(0, 3)
+                            .mapToObj(i -> RingBufferWriterThread.OverflowPolicy.BLOCK.offer(writerThread,
+                                    logEntry(i),
+                                    collectingWriter))
+                            .collect(Collectors.toList()));
+
+            assertEquals(Arrays.asList(true, true, false), offered);
+            assertEquals(new WriterThread.DrainCounts(0, 1), writerThread.shutdown(System.nanoTime()));
+        }
+
+        @Test
+        void abandonEntryOfferedAsConsumerExited() {
+            RingBufferWriterThread writerThread =
+                    new RingBufferWriterThread(8, RingBufferWriterThread.WaitStrategy.PARK, "test-writer-thread");
+            CollectingWriter collectingWriter = new CollectingWriter();
+            writerThread.write(logEntry("started"), collectingWriter);
+            writerThread.shutdown(System.nanoTime() + TimeUnit.SECONDS.toNanos(10));
+            LogEntryPool logEntryPool = new LogEntryPool(2, 0);
+            LogEntry pooled = logEntryPool.acquire();
+            pooled.fill(new NativeLogger(this.getClass().getName(), Level.INFO, stubLogService),
+                    null,
+                    "late",
+                    null,
+                    null,
+                    null);
+
+            writerThread.offer(pooled, collectingWriter);
+            pooled.release();
+
+            assertEquals(0, writerThread.size());
+            assertEquals(2, logEntryPool.available());
+            assertEquals(Collections.singletonList("started"), collectingWriter.messages);
+            assertEquals(new WriterThread.DrainCounts(0, 1), writerThread.shutdown(System.nanoTime()));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import elf4j.engine.service.LogEntry;
+import elf4j.engine.service.WriterThread;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import elf4j.Level;
+import elf4j.engine.NativeLogger;
+import elf4j.engine.service.LogService;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncWriterTest {
+    @Mock LogWriter mockLogWriter;
+    @Mock WriterThread mockWriterThread;
+    @Mock LogEntry stubLogEntry;
+
+    @Nested
+    class write {
+        @Test
+        void handOffToWriterThread() {
+            new AsyncWriter(mockLogWriter, mockWriterThread).write(stubLogEntry);
+
+            then(mockWriterThread).should().write(stubLogEntry, mockLogWriter);
+            then(mockLogWriter).should(never()).write(stubLogEntry);
+        }
+
+        @Test
+        void countAndDropAfterShutdown() {
+            willThrow(new RejectedExecutionException()).given(mockWriterThread).write(stubLogEntry, mockLogWriter);
+            AsyncWriter asyncWriter = new AsyncWriter(mockLogWriter, mockWriterThread);
+
+            asyncWriter.write(stubLogEntry);
+            asyncWriter.write(stubLogEntry);
+
+            then(mockLogWriter).should(never()).write(stubLogEntry);
+            assertEquals(2, asyncWriter.dropped());
+        }
+    }
+
+    @Nested
+    class renderOnCaller {
+        @Mock EncodingWriter mockEncodingWriter;
+        @Mock LogService stubLogService;
+        @Captor ArgumentCaptor<LogEntry> captorLogEntry;
+        @Captor ArgumentCaptor<LogWriter> captorLogWriter;
+
+        @Test
+        void handOffEncodedBytesOnly() {
+            LogEntry logEntry = LogEntry.builder()
+                    .nativeLogger(new NativeLogger("testOwner", Level.INFO, stubLogService))
+                    .message("message {}")
+                    .arguments(new Object[] { new Object() })
+                    .build();
+            given(mockEncodingWriter.encode(same(logEntry), any(ByteArena.class))).willAnswer(invocation -> invocation
+                    .getArgument(1, ByteArena.class)
+                    .encode("rendered", 0));
+
+            new AsyncWriter(mockEncodingWriter, mockWriterThread).write(logEntry);
+
+            then(mockWriterThread).should().write(captorLogEntry.capture(), captorLogWriter.capture());
+            LogEntry handedOff = captorLogEntry.getValue();
+            assertNull(handedOff.getArguments());
+            assertSame(logEntry.getNativeLogger(), handedOff.getNativeLogger());
+            EncodedEntry encodedEntry = (EncodedEntry) handedOff.getMessage();
+            assertEquals("rendered",
+                    new String(encodedEntry.getBytes(),
+                            encodedEntry.getOffset(),
+                            encodedEntry.getLength(),
+                            StandardCharsets.UTF_8));
+
+            captorLogWriter.getValue().write(Collections.singletonList(handedOff));
+
+            then(mockEncodingWriter).should().writeEncoded(Collections.singletonList(encodedEntry));
+        }
+
+        @Test
+        void nothingHandedOffIfFilteredOut() {
+            LogEntry logEntry = LogEntry.builder()
+                    .nativeLogger(new NativeLogger("testOwner", Level.TRACE, stubLogService))
+                    .build();
+
+            new AsyncWriter(mockEncodingWriter, mockWriterThread).write(logEntry);
+
+            then(mockWriterThread).shouldHaveNoInteractions();
+        }
+    }
+}
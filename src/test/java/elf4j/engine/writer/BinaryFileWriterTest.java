@@ -0,0 +1,233 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import elf4j.Level;
+import elf4j.engine.NativeLogger;
+import elf4j.engine.service.LogEntry;
+import elf4j.engine.service.LogService;
+import elf4j.engine.writer.pattern.LogPattern;
+import elf4j.engine.writer.pattern.PatternSegmentGroup;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class BinaryFileWriterTest {
+    static final LogPattern PATTERN = PatternSegmentGroup.from(
+            "{timestamp:yyyy-MM-dd'T'HH:mm:ss.SSSSSSSSS} {level} {class} {thread} {method} - {message}");
+    @Mock LogService stubLogService;
+    @TempDir Path tempDir;
+
+    static String render(LogEntry logEntry) {
+        StringBuilder text = new StringBuilder();
+        BinaryFileReader.render(logEntry, PATTERN, text);
+        return text.toString();
+    }
+
+    static List<String> render(List<LogEntry> logEntries) {
+        return logEntries.stream().map(BinaryFileWriterTest::render).collect(Collectors.toList());
+    }
+
+    LogEntry logEntry(Level level, Throwable exception, String message, Object... arguments) {
+        return LogEntry.builder()
+                .nativeLogger(new NativeLogger(this.getClass().getName(), level, stubLogService))
+                .message(message)
+                .arguments(arguments)
+                .exception(exception)
+                .callerThread(LogEntry.ThreadInformation.builder().name("main-é").id(1).build())
+                .callerFrame(LogEntry.StackTraceFrame.builder()
+                        .className(this.getClass().getName())
+                        .methodName("logEntry")
+                        .lineNumber(42)
+                        .fileName("BinaryFileWriterTest.java")
+                        .build())
+                .build();
+    }
+
+    BinaryFileWriter binaryFileWriter(Path path, int bufferSize) {
+        return new BinaryFileWriter(path, Level.TRACE, bufferSize, FlushPolicy.ALWAYS, true, true);
+    }
+
+    @Nested
+    class from {
+        @Test
+        void errorOnMissingPath() {
+            assertThrows(IllegalArgumentException.class, () -> BinaryFileWriter.from(Collections.emptyMap()));
+        }
+
+        @Test
+        void callerThreadButNotDetailByDefault() {
+            Map<String, String> configuration = new HashMap<>();
+            configuration.put("path", tempDir.resolve("app.bin").toString());
+
+            BinaryFileWriter binaryFileWriter = BinaryFileWriter.from(configuration);
+
+            assertTrue(binaryFileWriter.includeCallerThread());
+            assertFalse(binaryFileWriter.includeCallerDetail());
+        }
+    }
+
+    @Nested
+    class write {
+        @Test
+        void renderSameAsOriginalWhenRead() throws IOException {
+            Path path = tempDir.resolve("typed.bin");
+            BinaryFileWriter binaryFileWriter = binaryFileWriter(path, 64);
+            Supplier<String> supplied = () -> "supplied";
+            List<LogEntry> logEntries = Arrays.asList(logEntry(Level.INFO,
+                            null,
+                            "int {}, long {}, short {}, float {}, double {}, bool {}",
+                            -7,
+                            Long.MIN_VALUE,
+                            (short) 3,
+                            1.5f,
+                            Math.PI,
+                            true),
+                    logEntry(Level.WARN, null, "string {}, null {}, supplier {}, object {}", "héllo 日本", null,
+                            supplied, Collections.singletonList(1)),
+                    logEntry(Level.ERROR, new IllegalStateException("failed"), "with exception {}", false),
+                    logEntry(Level.DEBUG, null, "unmatched {} {}", 1),
+                    logEntry(Level.TRACE, null, null));
+
+            binaryFileWriter.write(logEntries);
+            binaryFileWriter.close();
+
+            assertEquals(render(logEntries), render(BinaryFileReader.read(path)));
+        }
+
+        @Test
+        void defineStringsOncePerSession() throws IOException {
+            Path path = tempDir.resolve("sessions.bin");
+            BinaryFileWriter binaryFileWriter = binaryFileWriter(path, 1024);
+            List<LogEntry> first = IntStream.range(0, 100)
+                    .mapToObj(i -> logEntry(Level.INFO, null, "repeated template {}", i))
+                    .collect(Collectors.toList());
+            binaryFileWriter.write(first);
+            binaryFileWriter.flush();
+            long firstSize = Files.size(path);
+            binaryFileWriter.write(first);
+            binaryFileWriter.flush();
+            long secondSize = Files.size(path) - firstSize;
+            binaryFileWriter.close();
+            LogEntry afterReopen = logEntry(Level.INFO, null, "after reopen {}", "x");
+            BinaryFileWriter reopened = binaryFileWriter(path, 1024);
+
+            binaryFileWriter.write(afterReopen);
+            reopened.write(afterReopen);
+            reopened.close();
+
+            assertTrue(secondSize < firstSize, "second: " + secondSize + ", first: " + firstSize);
+            List<LogEntry> read = BinaryFileReader.read(path);
+            assertEquals(201, read.size());
+            assertEquals(render(afterReopen), render(read.get(200)));
+        }
+
+        @Test
+        void inlineStringsOnceDictionaryBytesFull() throws IOException {
+            Path path = tempDir.resolve("full.bin");
+            BinaryFileWriter binaryFileWriter = binaryFileWriter(path, 1024);
+            String filler = String.join("", Collections.nCopies(16 * 1024, "x"));
+            List<LogEntry> distinct = IntStream.range(0, 80)
+                    .mapToObj(i -> logEntry(Level.INFO, null, i + filler))
+                    .collect(Collectors.toList());
+            binaryFileWriter.write(distinct);
+            LogEntry repeated = logEntry(Level.INFO, null, "repeated " + filler);
+            binaryFileWriter.write(repeated);
+            binaryFileWriter.flush();
+            long sizeBeforeRepeat = Files.size(path);
+
+            binaryFileWriter.write(repeated);
+            binaryFileWriter.close();
+
+            assertTrue(Files.size(path) - sizeBeforeRepeat > filler.length());
+            List<LogEntry> read = BinaryFileReader.read(path);
+            assertEquals(82, read.size());
+            assertEquals(render(repeated), render(read.get(81)));
+            assertEquals(render(distinct.get(79)), render(read.get(79)));
+        }
+    }
+
+    @Nested
+    class read {
+        @Test
+        void stopAtIncompleteLastEntry() throws IOException {
+            Path path = tempDir.resolve("truncated.bin");
+            BinaryFileWriter binaryFileWriter = binaryFileWriter(path, 1024);
+            binaryFileWriter.write(logEntry(Level.INFO, null, "complete {}", 1));
+            binaryFileWriter.flush();
+            long completeSize = Files.size(path);
+            binaryFileWriter.write(logEntry(Level.INFO, null, "cut short {}", 2));
+            binaryFileWriter.close();
+            byte[] bytes = Files.readAllBytes(path);
+            Files.write(path, Arrays.copyOf(bytes, (int) (completeSize + (bytes.length - completeSize) / 2)));
+
+            List<LogEntry> read = BinaryFileReader.read(path);
+
+            assertEquals(1, read.size());
+            assertEquals("complete 1", read.get(0).getResolvedMessage().toString());
+        }
+
+        @Test
+        void errorOnOtherFile() throws IOException {
+            Path path = tempDir.resolve("text.log");
+            Files.write(path, "plain text".getBytes());
+
+            assertThrows(IOException.class, () -> BinaryFileReader.read(path));
+        }
+
+        @Test
+        void placeholdersForCallerDetailNotWritten() throws IOException {
+            Path path = tempDir.resolve("no-caller.bin");
+            BinaryFileWriter binaryFileWriter = new BinaryFileWriter(path, Level.TRACE, 1024, FlushPolicy.ALWAYS,
+                    false, false);
+            binaryFileWriter.write(logEntry(Level.INFO, null, "no caller"));
+            binaryFileWriter.close();
+
+            LogEntry read = BinaryFileReader.read(path).get(0);
+
+            assertNull(read.getCallerFrame());
+            assertTrue(render(read).endsWith(" ? ? - no caller" + System.lineSeparator()), render(read));
+        }
+    }
+}
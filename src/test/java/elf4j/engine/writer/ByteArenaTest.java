@@ -0,0 +1,101 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ByteArenaTest {
+    static byte[] bytesOf(EncodedEntry encodedEntry) {
+        return Arrays.copyOfRange(encodedEntry.getBytes(),
+                encodedEntry.getOffset(),
+                encodedEntry.getOffset() + encodedEntry.getLength());
+    }
+
+    @Nested
+    class encode {
+        @Test
+        void sameAsStringUtf8() {
+            String text = "ascii, café, 日本語, emoji 😀\n";
+
+            EncodedEntry encodedEntry = new ByteArena().encode(text, 1);
+
+            assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), bytesOf(encodedEntry));
+            assertEquals(1, encodedEntry.getTarget());
+        }
+
+        @Test
+        void malformedSurrogateReplaced() {
+            String text = "a\uD83Db";
+
+            assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), bytesOf(new ByteArena().encode(text, 0)));
+        }
+
+        @Test
+        void inOtherCharset() {
+            ByteArena byteArena = new ByteArena();
+
+            assertArrayEquals("ascii\n".getBytes(StandardCharsets.UTF_16BE),
+                    bytesOf(byteArena.encode("ascii\n", 0, StandardCharsets.UTF_16BE)));
+            assertArrayEquals("café\n".getBytes(StandardCharsets.ISO_8859_1),
+                    bytesOf(byteArena.encode("café\n", 0, StandardCharsets.ISO_8859_1)));
+            assertArrayEquals("ascii\n".getBytes(StandardCharsets.ISO_8859_1),
+                    bytesOf(byteArena.encode("ascii\n", 0, StandardCharsets.ISO_8859_1)));
+        }
+
+        @Test
+        void consecutiveEntriesKeepTheirBytes() {
+            ByteArena byteArena = new ByteArena();
+            char[] large = new char[10000];
+            Arrays.fill(large, 'x');
+
+            EncodedEntry first = byteArena.encode("first", 0);
+            EncodedEntry second = byteArena.encode(new String(large), 0);
+            EncodedEntry third = byteArena.encode("third", 0);
+
+            assertEquals("first", new String(bytesOf(first), StandardCharsets.UTF_8));
+            assertEquals(new String(large), new String(bytesOf(second), StandardCharsets.UTF_8));
+            assertEquals("third", new String(bytesOf(third), StandardCharsets.UTF_8));
+            assertNotSame(first.getBytes(), third.getBytes());
+        }
+    }
+
+    @Nested
+    class text {
+        @Test
+        void emptiedForReuse() {
+            ByteArena byteArena = new ByteArena();
+            byteArena.text().append("previous");
+
+            assertEquals(0, byteArena.text().length());
+        }
+    }
+}
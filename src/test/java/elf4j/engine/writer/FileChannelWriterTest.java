@@ -0,0 +1,226 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import elf4j.Level;
+import elf4j.engine.NativeLogger;
+import elf4j.engine.service.LogEntry;
+import elf4j.engine.service.LogService;
+import elf4j.engine.writer.pattern.PatternSegmentGroup;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class FileChannelWriterTest {
+    @Mock LogService stubLogService;
+    @TempDir Path tempDir;
+
+    LogEntry logEntry(Level level, String message) {
+        return LogEntry.builder()
+                .nativeLogger(new NativeLogger(this.getClass().getName(), level, stubLogService))
+                .message(message)
+                .build();
+    }
+
+    FileChannelWriter fileChannelWriter(Path path, int bufferSize, FlushPolicy flushPolicy) {
+        return new FileChannelWriter(path,
+                Level.TRACE,
+                PatternSegmentGroup.from("{message}"),
+                bufferSize,
+                flushPolicy,
+                null);
+    }
+
+    @Nested
+    class from {
+        @Test
+        void errorOnMissingPath() {
+            assertThrows(IllegalArgumentException.class, () -> FileChannelWriter.from(Collections.emptyMap()));
+        }
+
+        @Test
+        void createParentDirectories() throws IOException {
+            Path path = tempDir.resolve("logs").resolve("app.log");
+            Map<String, String> configuration = new HashMap<>();
+            configuration.put("path", path.toString());
+            configuration.put("pattern", "{level} {message}");
+            FileChannelWriter fileChannelWriter = FileChannelWriter.from(configuration);
+
+            fileChannelWriter.write(logEntry(Level.INFO, "created"));
+            fileChannelWriter.close();
+
+            assertEquals(Collections.singletonList("INFO created"), Files.readAllLines(path));
+        }
+    }
+
+    @Nested
+    class write {
+        @Test
+        void encodeLargerThanBuffer() throws IOException {
+            Path path = tempDir.resolve("large.log");
+            FileChannelWriter fileChannelWriter = fileChannelWriter(path, 64, FlushPolicy.ALWAYS);
+            List<LogEntry> logEntries = IntStream.range(0, 50)
+                    .mapToObj(i -> logEntry(Level.INFO, i + ": héllo wörld, 日本語 " + new String(new char[i * 7])))
+                    .collect(Collectors.toList());
+
+            fileChannelWriter.write(logEntries);
+            fileChannelWriter.close();
+
+            assertEquals(logEntries.stream().map(e -> (String) e.getMessage()).collect(Collectors.toList()),
+                    Files.readAllLines(path, StandardCharsets.UTF_8));
+        }
+
+        @Test
+        void holdOutputUntilFlushedUnlessError() throws IOException {
+            Path path = tempDir.resolve("idle.log");
+            FileChannelWriter fileChannelWriter =
+                    fileChannelWriter(path, 4096, FlushPolicy.from(Collections.singletonMap("flush", "idle")));
+
+            fileChannelWriter.write(logEntry(Level.INFO, "buffered"));
+
+            assertFalse(Files.exists(path) && Files.size(path) > 0);
+
+            fileChannelWriter.write(logEntry(Level.ERROR, "urgent"));
+
+            assertEquals(Arrays.asList("buffered", "urgent"), Files.readAllLines(path));
+            fileChannelWriter.close();
+        }
+
+        @Test
+        void noReopenAfterClose() throws IOException {
+            Path path = tempDir.resolve("closed.log");
+            FileChannelWriter fileChannelWriter = fileChannelWriter(path, 4096, FlushPolicy.ALWAYS);
+
+            fileChannelWriter.write(logEntry(Level.INFO, "first"));
+            fileChannelWriter.close();
+            fileChannelWriter.write(logEntry(Level.INFO, "second"));
+            fileChannelWriter.close();
+
+            assertEquals(Collections.singletonList("first"), Files.readAllLines(path));
+        }
+    }
+
+    @Nested
+    class writeEncoded {
+        @Test
+        void sameBytesAsRendered() throws IOException {
+            Path path = tempDir.resolve("encoded.log");
+            FileChannelWriter fileChannelWriter = fileChannelWriter(path, 64, FlushPolicy.ALWAYS);
+            ByteArena byteArena = new ByteArena();
+            List<EncodedEntry> encodedEntries = new ArrayList<>();
+            List<String> messages = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                String message = "encoded " + i + " ünïcödé " + new String(new char[i * 5]).replace('\0', 'x');
+                messages.add(message);
+                encodedEntries.add(fileChannelWriter.encode(logEntry(Level.INFO, message), byteArena));
+            }
+
+            fileChannelWriter.writeEncoded(encodedEntries);
+            fileChannelWriter.close();
+
+            assertEquals(messages, Files.readAllLines(path, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Nested
+    class rollover {
+        @Test
+        void rollBySizeAndCompressInBackground() throws IOException {
+            Path path = tempDir.resolve("rolling.log");
+            Map<String, String> configuration = new HashMap<>();
+            configuration.put("rollover.size", "200");
+            configuration.put("rollover.max-files", "2");
+            FileChannelWriter fileChannelWriter = new FileChannelWriter(path,
+                    Level.TRACE,
+                    PatternSegmentGroup.from("{message}"),
+                    64,
+                    FlushPolicy.ALWAYS,
+                    RolloverPolicy.from(configuration));
+            List<String> messages =
+                    IntStream.range(0, 100).mapToObj(i -> "rolling entry " + i).collect(Collectors.toList());
+
+            messages.forEach(message -> fileChannelWriter.write(logEntry(Level.INFO, message)));
+            fileChannelWriter.close();
+
+            await().until(() -> {
+                List<Path> segments = SegmentArchiver.segmentsOf(path);
+                return segments.size() == 2 && segments.stream().allMatch(s -> s.toString().endsWith(".gz"));
+            });
+            assertTrue(Files.size(path) <= 200);
+            List<String> newest = new ArrayList<>();
+            Path newestSegment = SegmentArchiver.segmentsOf(path).get(0);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(
+                    newestSegment)), StandardCharsets.UTF_8))) {
+                reader.lines().forEach(newest::add);
+            }
+            newest.addAll(Files.readAllLines(path));
+            assertEquals(messages.subList(messages.size() - newest.size(), messages.size()), newest);
+        }
+
+        @Test
+        void keepWritingToActiveFileIfMoveFails() throws IOException {
+            Path path = tempDir.resolve("unmovable.log");
+            FileChannelWriter fileChannelWriter = new FileChannelWriter(path,
+                    Level.TRACE,
+                    PatternSegmentGroup.from("{message}"),
+                    64,
+                    FlushPolicy.ALWAYS,
+                    RolloverPolicy.from(Collections.singletonMap("rollover.size", "20")));
+            fileChannelWriter.write(logEntry(Level.INFO, "first entry"));
+            Files.delete(path);
+
+            fileChannelWriter.write(logEntry(Level.INFO, "second entry"));
+            fileChannelWriter.write(logEntry(Level.INFO, "third entry"));
+            fileChannelWriter.close();
+
+            assertEquals(Arrays.asList("second entry", "third entry"), Files.readAllLines(path));
+            assertTrue(SegmentArchiver.segmentsOf(path).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import elf4j.Level;
+import elf4j.engine.NativeLogger;
+import elf4j.engine.service.LogEntry;
+import elf4j.engine.service.LogService;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class FlightRecorderWriterTest {
+    @Mock LogService stubLogService;
+    @TempDir Path tempDir;
+
+    LogEntry logEntry(Level level, String message, Object... arguments) {
+        return LogEntry.builder()
+                .nativeLogger(new NativeLogger(this.getClass().getName(), level, stubLogService))
+                .message(message)
+                .arguments(arguments)
+                .build();
+    }
+
+    /**
+     * Target writer keeping the resolved messages written to it
+     */
+    static class MessageCollector implements LogWriter {
+        final List<String> messages = new ArrayList<>();
+        int flushes;
+
+        @Override
+        public Level getMinimumOutputLevel() {
+            return Level.TRACE;
+        }
+
+        @Override
+        public void write(LogEntry logEntry) {
+            messages.add(logEntry.getResolvedMessage().toString());
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+
+        @Override
+        public boolean includeCallerDetail() {
+            return false;
+        }
+
+        @Override
+        public boolean includeCallerThread() {
+            return true;
+        }
+    }
+
+    @Nested
+    class from {
+        @Test
+        void errorOnMissingTarget() {
+            assertThrows(IllegalArgumentException.class,
+                    () -> FlightRecorderWriter.from(Collections.emptyMap(), new Properties()));
+        }
+
+        @Test
+        void targetConfiguredByPrefixedEntries() throws IOException {
+            Path path = tempDir.resolve("recorded.log");
+            Map<String, String> configuration = new HashMap<>();
+            configuration.put("target", "file");
+            configuration.put("target.path", path.toString());
+            configuration.put("target.pattern", "{level} {message}");
+            configuration.put("size", "2");
+            FlightRecorderWriter flightRecorderWriter = FlightRecorderWriter.from(configuration, new Properties());
+
+            flightRecorderWriter.write(logEntry(Level.DEBUG, "one"));
+            flightRecorderWriter.write(logEntry(Level.DEBUG, "two"));
+            flightRecorderWriter.write(logEntry(Level.INFO, "three"));
+            flightRecorderWriter.write(logEntry(Level.ERROR, "failed"));
+            flightRecorderWriter.close();
+
+            assertEquals(Arrays.asList("DEBUG two", "INFO three", "ERROR failed"), Files.readAllLines(path));
+        }
+    }
+
+    @Nested
+    class write {
+        @Test
+        void noOutputBelowTrigger() {
+            MessageCollector target = new MessageCollector();
+            FlightRecorderWriter flightRecorderWriter = new FlightRecorderWriter(Level.TRACE, Level.ERROR, 3, target);
+
+            for (int i = 0; i < 10; i++) {
+                flightRecorderWriter.write(logEntry(Level.WARN, "entry {}", i));
+            }
+
+            assertTrue(target.messages.isEmpty());
+            assertEquals(3, flightRecorderWriter.size());
+            flightRecorderWriter.close();
+        }
+
+        @Test
+        void dumpLatestFollowedByTriggerEntry() {
+            MessageCollector target = new MessageCollector();
+            FlightRecorderWriter flightRecorderWriter = new FlightRecorderWriter(Level.DEBUG, Level.WARN, 3, target);
+
+            flightRecorderWriter.write(logEntry(Level.TRACE, "ignored"));
+            for (int i = 0; i < 5; i++) {
+                flightRecorderWriter.write(logEntry(Level.DEBUG, "entry {}", i));
+            }
+            flightRecorderWriter.write(logEntry(Level.WARN, "trigger"));
+
+            assertEquals(Arrays.asList("entry 2", "entry 3", "entry 4", "trigger"), target.messages);
+            assertEquals(1, target.flushes);
+            assertEquals(0, flightRecorderWriter.size());
+            flightRecorderWriter.close();
+        }
+    }
+
+    @Nested
+    class dumpAll {
+        @Test
+        void writeOutRecordedOnDemand() {
+            MessageCollector target = new MessageCollector();
+            FlightRecorderWriter flightRecorderWriter = new FlightRecorderWriter(Level.TRACE, Level.ERROR, 10, target);
+            flightRecorderWriter.write(logEntry(Level.INFO, "recorded"));
+
+            FlightRecorderWriter.dumpAll();
+
+            assertEquals(Collections.singletonList("recorded"), target.messages);
+            flightRecorderWriter.close();
+        }
+
+        @Test
+        void notDumpedOnceClosed() {
+            MessageCollector target = new MessageCollector();
+            FlightRecorderWriter flightRecorderWriter = new FlightRecorderWriter(Level.TRACE, Level.ERROR, 10, target);
+            flightRecorderWriter.close();
+            flightRecorderWriter.write(logEntry(Level.INFO, "after close"));
+
+            FlightRecorderWriter.dumpAll();
+
+            assertTrue(target.messages.isEmpty());
+        }
+    }
+}
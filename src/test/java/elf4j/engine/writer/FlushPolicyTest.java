@@ -0,0 +1,99 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlushPolicyTest {
+    @Nested
+    class from {
+        @Test
+        void flushAlwaysByDefault() {
+            FlushPolicy flushPolicy = FlushPolicy.from(Collections.emptyMap());
+
+            assertSame(FlushPolicy.ALWAYS, flushPolicy);
+            assertTrue(flushPolicy.isDue(1, System.nanoTime()));
+        }
+
+        @Test
+        void idleNeverDueOnWrite() {
+            assertFalse(FlushPolicy.from(Collections.singletonMap("flush", "idle"))
+                    .isDue(Long.MAX_VALUE, 0));
+        }
+
+        @Test
+        void bytesDueAtThreshold() {
+            Map<String, String> configuration = new HashMap<>();
+            configuration.put("flush", "bytes");
+            configuration.put("flush.bytes", "100");
+
+            FlushPolicy flushPolicy = FlushPolicy.from(configuration);
+
+            assertFalse(flushPolicy.isDue(99, System.nanoTime()));
+            assertTrue(flushPolicy.isDue(100, System.nanoTime()));
+        }
+
+        @Test
+        void intervalDueAfterElapsed() {
+            Map<String, String> configuration = new HashMap<>();
+            configuration.put("flush", " Interval ");
+            configuration.put("flush.interval", "50");
+
+            FlushPolicy flushPolicy = FlushPolicy.from(configuration);
+
+            assertFalse(flushPolicy.isDue(1, System.nanoTime()));
+            assertTrue(flushPolicy.isDue(1, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(50)));
+        }
+    }
+
+    @Nested
+    class forSynchronous {
+        @Test
+        void idleFallsBackToAlways() {
+            Map<String, String> configuration = new HashMap<>();
+            configuration.put("flush", "idle");
+
+            assertSame(FlushPolicy.ALWAYS.getMode(),
+                    FlushPolicy.from(FlushPolicy.forSynchronous(configuration)).getMode());
+            assertEquals("idle", configuration.get("flush"));
+        }
+
+        @Test
+        void otherModesAsIs() {
+            Map<String, String> configuration = Collections.singletonMap("flush", "interval");
+
+            assertSame(configuration, FlushPolicy.forSynchronous(configuration));
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import elf4j.Level;
+import elf4j.engine.NativeLogger;
+import elf4j.engine.service.LogEntry;
+import elf4j.engine.service.LogService;
+import elf4j.engine.writer.pattern.PatternSegmentGroup;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class MappedFileWriterTest {
+    private static final String NEW_LINE = System.lineSeparator();
+    @Mock LogService stubLogService;
+    @TempDir Path tempDir;
+
+    LogEntry logEntry(String message) {
+        return LogEntry.builder()
+                .nativeLogger(new NativeLogger(this.getClass().getName(), Level.INFO, stubLogService))
+                .message(message)
+                .build();
+    }
+
+    MappedFileWriter mappedFileWriter(Path path, int capacity) {
+        return new MappedFileWriter(path, Level.TRACE, PatternSegmentGroup.from("{message}"), capacity);
+    }
+
+    @Nested
+    class write {
+        @Test
+        void readBackInOrder() throws IOException {
+            Path path = tempDir.resolve("crash.log");
+            MappedFileWriter mappedFileWriter = mappedFileWriter(path, 4096);
+
+            mappedFileWriter.write(logEntry("first"));
+            mappedFileWriter.write(logEntry("sëcond ☃"));
+
+            assertEquals(Arrays.asList("first" + NEW_LINE, "sëcond ☃" + NEW_LINE), MappedFileReader.read(path));
+        }
+
+        @Test
+        void overwriteOldestWhenFull() throws IOException {
+            Path path = tempDir.resolve("circular.log");
+            MappedFileWriter mappedFileWriter = mappedFileWriter(path, 1024);
+            List<String> messages =
+                    IntStream.range(0, 500).mapToObj(i -> "entry number " + i).collect(Collectors.toList());
+
+            messages.forEach(message -> mappedFileWriter.write(logEntry(message)));
+
+            List<String> recovered = MappedFileReader.read(path);
+            assertTrue(recovered.size() > 10 && recovered.size() < 500);
+            assertEquals(messages.subList(500 - recovered.size(), 500)
+                    .stream()
+                    .map(message -> message + NEW_LINE)
+                    .collect(Collectors.toList()), recovered);
+        }
+
+        @Test
+        void appendAfterRecoveredEntries() throws IOException {
+            Path path = tempDir.resolve("restart.log");
+            mappedFileWriter(path, 4096).write(logEntry("before restart"));
+
+            mappedFileWriter(path, 4096).write(logEntry("after restart"));
+
+            assertEquals(Arrays.asList("before restart" + NEW_LINE, "after restart" + NEW_LINE),
+                    MappedFileReader.read(path));
+        }
+
+        @Test
+        void truncateEntryLargerThanCapacity() throws IOException {
+            Path path = tempDir.resolve("large.log");
+            MappedFileWriter mappedFileWriter = mappedFileWriter(path, 1024);
+
+            mappedFileWriter.write(logEntry(new String(new char[2000]).replace('\0', 'x')));
+
+            List<String> recovered = MappedFileReader.read(path);
+            assertEquals(1, recovered.size());
+            assertEquals(1024 - Integer.BYTES, recovered.get(0).length());
+        }
+    }
+
+    @Nested
+    class writeEncoded {
+        @Test
+        void sameAsRenderedOnWriterThread() throws IOException {
+            Path path = tempDir.resolve("encoded.log");
+            MappedFileWriter mappedFileWriter = mappedFileWriter(path, 4096);
+            ByteArena byteArena = new ByteArena();
+
+            mappedFileWriter.writeEncoded(Arrays.asList(mappedFileWriter.encode(logEntry("one"), byteArena),
+                    mappedFileWriter.encode(logEntry("two"), byteArena)));
+
+            assertEquals(Arrays.asList("one" + NEW_LINE, "two" + NEW_LINE), MappedFileReader.read(path));
+        }
+    }
+
+    @Nested
+    class read {
+        @Test
+        void errorOnOtherFile() throws IOException {
+            Path path = tempDir.resolve("other.log");
+            Files.write(path, new byte[64]);
+
+            assertThrows(IOException.class, () -> MappedFileReader.read(path));
+        }
+    }
+}
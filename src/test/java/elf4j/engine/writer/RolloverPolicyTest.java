@@ -0,0 +1,164 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RolloverPolicyTest {
+    @TempDir Path tempDir;
+
+    @Nested
+    class from {
+        @Test
+        void noRolloverIfNotConfigured() {
+            assertNull(RolloverPolicy.from(Collections.singletonMap("rollover.max-files", "3")));
+        }
+
+        @Test
+        void compressByDefault() {
+            RolloverPolicy rolloverPolicy = RolloverPolicy.from(Collections.singletonMap("rollover.period", "daily"));
+
+            assertNotNull(rolloverPolicy);
+            assertTrue(rolloverPolicy.isCompress());
+            assertEquals(RolloverPolicy.Period.DAILY, rolloverPolicy.getPeriod());
+        }
+    }
+
+    @Nested
+    class isDue {
+        @Test
+        void bySize() {
+            RolloverPolicy rolloverPolicy = RolloverPolicy.from(Collections.singletonMap("rollover.size", "100"));
+
+            assertFalse(rolloverPolicy.isDue(60, 40, 0, rolloverPolicy.periodEnd(0)));
+            assertTrue(rolloverPolicy.isDue(60, 41, 0, rolloverPolicy.periodEnd(0)));
+            assertFalse(rolloverPolicy.isDue(0, 1000, 0, rolloverPolicy.periodEnd(0)));
+        }
+
+        @Test
+        void byPeriod() {
+            RolloverPolicy rolloverPolicy = RolloverPolicy.from(Collections.singletonMap("rollover.period", "hourly"));
+            ZonedDateTime time = ZonedDateTime.of(2023, 5, 1, 10, 30, 0, 0, ZoneId.systemDefault());
+            long periodEnd = rolloverPolicy.periodEnd(time.toInstant().toEpochMilli());
+
+            assertEquals(time.withMinute(0).plusHours(1).toInstant().toEpochMilli(), periodEnd);
+            assertFalse(rolloverPolicy.isDue(1, 1, periodEnd - 1, periodEnd));
+            assertTrue(rolloverPolicy.isDue(1, 1, periodEnd, periodEnd));
+        }
+    }
+
+    @Nested
+    class segmentPath {
+        @Test
+        void notTakenYet() throws IOException {
+            Path active = tempDir.resolve("app.log");
+            Path first = RolloverPolicy.segmentPath(active, 0);
+            Files.createFile(first.resolveSibling(first.getFileName() + ".gz"));
+
+            Path second = RolloverPolicy.segmentPath(active, 0);
+
+            assertNotEquals(first, second);
+            assertTrue(second.getFileName().toString().startsWith(first.getFileName().toString()));
+        }
+    }
+
+    @Nested
+    class archiveNow {
+        @Test
+        void keepNewestWithinTotalSize() throws IOException {
+            Path active = tempDir.resolve("app.log");
+            for (int i = 0; i < 5; i++) {
+                Files.write(active.resolveSibling("app.log.2023010" + i + "-000000-000"), new byte[100]);
+            }
+            Map<String, String> configuration = new HashMap<>();
+            configuration.put("rollover.size", "100");
+            configuration.put("rollover.max-total-size", "250");
+            configuration.put("rollover.compress", "false");
+
+            SegmentArchiver.archiveNow(active, RolloverPolicy.from(configuration));
+
+            assertEquals(2, SegmentArchiver.segmentsOf(active).size());
+            assertTrue(Files.exists(active.resolveSibling("app.log.20230104-000000-000")));
+            assertTrue(Files.exists(active.resolveSibling("app.log.20230103-000000-000")));
+        }
+
+        @Test
+        void leaveAloneOtherFilesOfSamePrefix() throws IOException {
+            Path active = tempDir.resolve("app.log");
+            Path backup = Files.write(active.resolveSibling("app.log.bak"), new byte[100]);
+            Path old = Files.write(active.resolveSibling("app.log.20230101-000000-000.old"), new byte[100]);
+            Path segment = Files.write(active.resolveSibling("app.log.20230101-000000-000"), new byte[100]);
+            Map<String, String> configuration = new HashMap<>();
+            configuration.put("rollover.size", "100");
+            configuration.put("rollover.max-files", "1");
+
+            SegmentArchiver.archiveNow(active, RolloverPolicy.from(configuration));
+
+            assertTrue(Files.exists(backup));
+            assertTrue(Files.exists(old));
+            assertFalse(Files.exists(segment));
+            assertTrue(Files.exists(segment.resolveSibling(segment.getFileName() + ".gz")));
+        }
+    }
+
+    @Nested
+    class segmentsOf {
+        @Test
+        void newestFirstWithCollisionsInNumericOrder() throws IOException {
+            Path active = tempDir.resolve("app.log");
+            for (String name : new String[] {
+                    "app.log.20230101-000000-000", "app.log.20230101-000000-000-2.gz", "app.log.20230101-000000-000-10",
+                    "app.log.20230101-000000-000-1.gz", "app.log.20221231-235959-999.gz" }) {
+                Files.createFile(active.resolveSibling(name));
+            }
+
+            List<Path> segments = SegmentArchiver.segmentsOf(active);
+
+            assertEquals(Arrays.asList("app.log.20230101-000000-000-10",
+                    "app.log.20230101-000000-000-2.gz",
+                    "app.log.20230101-000000-000-1.gz",
+                    "app.log.20230101-000000-000",
+                    "app.log.20221231-235959-999.gz"),
+                    segments.stream().map(segment -> segment.getFileName().toString()).collect(Collectors.toList()));
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import elf4j.Level;
+import elf4j.engine.NativeLogger;
+import elf4j.engine.service.LogEntry;
+import elf4j.engine.service.LogService;
+import elf4j.engine.writer.pattern.PatternSegmentGroup;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class SharedMemoryWriterTest {
+    static final int CAPACITY = 1024;
+    @Mock LogService stubLogService;
+    @TempDir Path tempDir;
+
+    static LogEntry logEntry(LogService logService, String message) {
+        return LogEntry.builder()
+                .nativeLogger(new NativeLogger(SharedMemoryWriterTest.class.getName(), Level.INFO, logService))
+                .message(message)
+                .build();
+    }
+
+    static SharedMemoryWriter sharedMemoryWriter(Path path,
+            SharedMemoryWriter.Backpressure backpressure,
+            long timeoutMillis) {
+        return new SharedMemoryWriter(path,
+                Level.TRACE,
+                PatternSegmentGroup.from("{message}"),
+                CAPACITY,
+                backpressure,
+                timeoutMillis);
+    }
+
+    static Consumer<ByteBuffer> collector(List<String> entries) {
+        return entry -> {
+            byte[] bytes = new byte[entry.remaining()];
+            entry.get(bytes);
+            entries.add(new String(bytes, StandardCharsets.UTF_8).trim());
+        };
+    }
+
+    static List<String> messages(int count) {
+        return IntStream.range(0, count).mapToObj(i -> "entry " + i + " héllo").collect(Collectors.toList());
+    }
+
+    /**
+     * Writer process of the cross-process test, publishing the specified number of entries
+     */
+    public static class WriterProcess {
+        public static void main(String[] args) {
+            SharedMemoryWriter sharedMemoryWriter =
+                    sharedMemoryWriter(Paths.get(args[0]), SharedMemoryWriter.Backpressure.BLOCK, 30_000);
+            LogService logService = Mockito.mock(LogService.class);
+            for (String message : messages(Integer.parseInt(args[1]))) {
+                sharedMemoryWriter.write(logEntry(logService, message));
+            }
+            sharedMemoryWriter.close();
+        }
+    }
+
+    @Nested
+    class write {
+        @Test
+        void readInOrderAcrossWraps() throws IOException {
+            Path path = tempDir.resolve("wrap.ring");
+            SharedMemoryWriter sharedMemoryWriter = sharedMemoryWriter(path, SharedMemoryWriter.Backpressure.DROP, 0);
+            sharedMemoryWriter.write(logEntry(stubLogService, "first"));
+            List<String> read = new ArrayList<>();
+            List<String> expected = messages(200);
+
+            try (SharedMemoryReader sharedMemoryReader = SharedMemoryReader.open(path)) {
+                for (String message : expected) {
+                    sharedMemoryWriter.write(logEntry(stubLogService, message));
+                    sharedMemoryReader.poll(collector(read), Integer.MAX_VALUE);
+                }
+                assertEquals(0, sharedMemoryReader.lag());
+            }
+
+            assertEquals("first", read.get(0));
+            assertEquals(expected, read.subList(1, read.size()));
+        }
+
+        @Test
+        void dropWhenFullAndConsumerBehind() throws IOException {
+            Path path = tempDir.resolve("drop.ring");
+            SharedMemoryWriter sharedMemoryWriter = sharedMemoryWriter(path, SharedMemoryWriter.Backpressure.DROP, 0);
+            List<String> expected = messages(200);
+            for (String message : expected) {
+                sharedMemoryWriter.write(logEntry(stubLogService, message));
+            }
+            List<String> read = new ArrayList<>();
+
+            try (SharedMemoryReader sharedMemoryReader = SharedMemoryReader.open(path)) {
+                sharedMemoryReader.poll(collector(read), Integer.MAX_VALUE);
+            }
+
+            assertFalse(read.isEmpty());
+            assertTrue(read.size() < expected.size());
+            assertEquals(expected.subList(0, read.size()), read);
+        }
+
+        @Test
+        void waitOnlyOnceForStalledConsumer() throws IOException {
+            Path path = tempDir.resolve("stalled.ring");
+            SharedMemoryWriter sharedMemoryWriter =
+                    sharedMemoryWriter(path, SharedMemoryWriter.Backpressure.BLOCK, 200);
+            List<String> expected = messages(200);
+
+            long start = System.nanoTime();
+            for (String message : expected) {
+                sharedMemoryWriter.write(logEntry(stubLogService, message));
+            }
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertTrue(elapsedMillis < 2000, "elapsed millis: " + elapsedMillis);
+            List<String> read = new ArrayList<>();
+            try (SharedMemoryReader sharedMemoryReader = SharedMemoryReader.open(path)) {
+                sharedMemoryReader.poll(collector(read), Integer.MAX_VALUE);
+                sharedMemoryWriter.write(logEntry(stubLogService, "after consumed"));
+                read.clear();
+                sharedMemoryReader.poll(collector(read), Integer.MAX_VALUE);
+            }
+            assertEquals(Collections.singletonList("after consumed"), read);
+        }
+
+        @Test
+        void blockUntilConsumedByAnotherProcess() throws IOException, InterruptedException {
+            Path path = tempDir.resolve("process.ring");
+            int count = 2000;
+            Process writer = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-cp",
+                    System.getProperty("java.class.path"),
+                    WriterProcess.class.getName(),
+                    path.toString(),
+                    String.valueOf(count)).redirectErrorStream(true)
+                    .redirectOutput(tempDir.resolve("writer.out").toFile())
+                    .start();
+            AtomicReference<SharedMemoryReader> reader = new AtomicReference<>();
+            await().atMost(Duration.ofSeconds(30)).until(() -> {
+                try {
+                    reader.set(SharedMemoryReader.open(path));
+                    return true;
+                } catch (IOException e) {
+                    return false;
+                }
+            });
+            List<String> read = new ArrayList<>();
+
+            try (SharedMemoryReader sharedMemoryReader = reader.get()) {
+                await().atMost(Duration.ofSeconds(60)).until(() -> {
+                    sharedMemoryReader.poll(collector(read), 10);
+                    return read.size() >= count;
+                });
+            }
+
+            assertTrue(writer.waitFor(30, TimeUnit.SECONDS));
+            assertEquals(0, writer.exitValue(), new String(Files.readAllBytes(tempDir.resolve("writer.out"))));
+            assertEquals(messages(count), read);
+        }
+    }
+}
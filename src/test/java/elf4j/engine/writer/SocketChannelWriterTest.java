@@ -0,0 +1,222 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import elf4j.Level;
+import elf4j.engine.NativeLogger;
+import elf4j.engine.service.LogEntry;
+import elf4j.engine.service.LogService;
+import elf4j.engine.writer.pattern.PatternSegmentGroup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class SocketChannelWriterTest {
+    @Mock LogService stubLogService;
+    Collector collector;
+
+    static int freePort() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            return serverSocket.getLocalPort();
+        }
+    }
+
+    static List<String> messages(int count) {
+        return IntStream.range(0, count).mapToObj(i -> "entry " + i).collect(Collectors.toList());
+    }
+
+    @AfterEach
+    void stopCollector() throws IOException {
+        if (collector != null) {
+            collector.close();
+        }
+    }
+
+    LogEntry logEntry(String message) {
+        return LogEntry.builder()
+                .nativeLogger(new NativeLogger(this.getClass().getName(), Level.INFO, stubLogService))
+                .message(message)
+                .build();
+    }
+
+    SocketChannelWriter socketChannelWriter(int port, String pattern, int bufferSize, long maxBufferedBytes) {
+        return new SocketChannelWriter("localhost",
+                port,
+                Level.TRACE,
+                PatternSegmentGroup.from(pattern),
+                bufferSize,
+                10,
+                maxBufferedBytes,
+                10,
+                50);
+    }
+
+    /**
+     * Loopback collector accepting connections one after another, collecting the text received
+     */
+    static class Collector implements AutoCloseable {
+        final ServerSocket serverSocket;
+        final StringBuffer received = new StringBuffer();
+
+        Collector(int port) throws IOException {
+            serverSocket = new ServerSocket();
+            serverSocket.setReuseAddress(true);
+            serverSocket.bind(new InetSocketAddress("localhost", port));
+            Thread thread = new Thread(() -> {
+                byte[] bytes = new byte[4096];
+                while (!serverSocket.isClosed()) {
+                    try (Socket socket = serverSocket.accept(); InputStream in = socket.getInputStream()) {
+                        int read;
+                        while ((read = in.read(bytes)) != -1) {
+                            received.append(new String(bytes, 0, read, StandardCharsets.UTF_8));
+                        }
+                    } catch (IOException e) {
+                        // closed
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        List<String> lines() {
+            String text = received.toString();
+            return text.isEmpty() ? Collections.emptyList() : new ArrayList<>(Arrays.asList(text.split("\n")));
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+
+    @Nested
+    class from {
+        @Test
+        void errorOnMissingPort() {
+            assertThrows(IllegalArgumentException.class, () -> SocketChannelWriter.from(Collections.emptyMap()));
+        }
+    }
+
+    @Nested
+    class write {
+        @Test
+        void shipJsonLines() throws IOException {
+            collector = new Collector(0);
+            SocketChannelWriter socketChannelWriter =
+                    socketChannelWriter(collector.serverSocket.getLocalPort(), "{json}", 1024, 64 * 1024);
+
+            for (String message : messages(100)) {
+                socketChannelWriter.write(logEntry(message));
+            }
+
+            await().atMost(Duration.ofSeconds(10)).until(() -> collector.lines().size() == 100);
+            List<String> lines = collector.lines();
+            for (int i = 0; i < lines.size(); i++) {
+                assertTrue(lines.get(i).startsWith("{") && lines.get(i).endsWith("}"), lines.get(i));
+                assertTrue(lines.get(i).contains("\"message\":\"entry " + i + "\""), lines.get(i));
+            }
+            socketChannelWriter.close();
+        }
+
+        @Test
+        void reconnectAndSendBufferedOnceCollectorIsUp() throws IOException {
+            int port = freePort();
+            SocketChannelWriter socketChannelWriter = socketChannelWriter(port, "{message}", 1024, 64 * 1024);
+            List<String> messages = messages(20);
+            for (String message : messages) {
+                socketChannelWriter.write(logEntry(message));
+            }
+
+            collector = new Collector(port);
+
+            await().atMost(Duration.ofSeconds(10)).until(() -> collector.lines().size() == messages.size());
+            assertEquals(messages, collector.lines());
+            socketChannelWriter.close();
+        }
+
+        @Test
+        void dropOldestOverMaxBufferedBytes() throws IOException {
+            int port = freePort();
+            SocketChannelWriter socketChannelWriter = socketChannelWriter(port, "{message}", 64, 256);
+            List<String> messages = messages(100);
+            for (String message : messages) {
+                socketChannelWriter.write(logEntry(message));
+            }
+            socketChannelWriter.flush();
+
+            collector = new Collector(port);
+
+            await().atMost(Duration.ofSeconds(10))
+                    .until(() -> collector.lines().contains(messages.get(messages.size() - 1)));
+            List<String> lines = collector.lines();
+            assertTrue(collector.received.length() <= 256, collector.received::toString);
+            assertEquals(messages.subList(messages.size() - lines.size(), messages.size()), lines);
+            socketChannelWriter.close();
+        }
+
+        @Test
+        void keepEachEntryWholeInOneBatch() throws IOException {
+            int port = freePort();
+            SocketChannelWriter socketChannelWriter = socketChannelWriter(port, "{message}", 64, 256);
+            List<String> messages = messages(100);
+            for (String message : messages) {
+                byte[] bytes = (message + '\n').getBytes(StandardCharsets.UTF_8);
+                socketChannelWriter.writeBytes(bytes, 0, bytes.length);
+            }
+            socketChannelWriter.flush();
+
+            collector = new Collector(port);
+
+            await().atMost(Duration.ofSeconds(10))
+                    .until(() -> collector.lines().contains(messages.get(messages.size() - 1)));
+            List<String> lines = collector.lines();
+            assertEquals(messages.subList(messages.size() - lines.size(), messages.size()), lines);
+            socketChannelWriter.close();
+        }
+    }
+}
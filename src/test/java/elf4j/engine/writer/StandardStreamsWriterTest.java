@@ -0,0 +1,113 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StandardStreamsWriterTest {
+    @Nested
+    class BufferedStandardOutputStream {
+        @Test
+        void blockedStreamNotBlockingTheOther() throws Exception {
+            CountDownLatch writing = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            StandardStreamsWriter.BufferedStandardOutputStream err =
+                    new StandardStreamsWriter.BufferedStandardOutputStream(new WritableByteChannel() {
+                        @Override
+                        public int write(ByteBuffer src) throws IOException {
+                            writing.countDown();
+                            try {
+                                release.await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                throw new InterruptedIOException();
+                            }
+                            int written = src.remaining();
+                            src.position(src.limit());
+                            return written;
+                        }
+
+                        @Override
+                        public boolean isOpen() {
+                            return true;
+                        }
+
+                        @Override
+                        public void close() {
+                        }
+                    }, StandardCharsets.UTF_8);
+            ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+            StandardStreamsWriter.BufferedStandardOutputStream out =
+                    new StandardStreamsWriter.BufferedStandardOutputStream(Channels.newChannel(outBytes),
+                            StandardCharsets.UTF_8);
+            CompletableFuture<Void> blocked =
+                    CompletableFuture.runAsync(() -> err.write("err line\n", FlushPolicy.ALWAYS, true));
+
+            try {
+                assertTrue(writing.await(5, TimeUnit.SECONDS));
+                CompletableFuture.runAsync(() -> out.write("out line\n", FlushPolicy.ALWAYS, true))
+                        .get(5, TimeUnit.SECONDS);
+            } finally {
+                release.countDown();
+            }
+            blocked.get(5, TimeUnit.SECONDS);
+            assertEquals("out line\n", new String(outBytes.toByteArray(), StandardCharsets.UTF_8));
+        }
+
+        @Test
+        void encodeInStreamCharset() {
+            ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+            StandardStreamsWriter.BufferedStandardOutputStream out =
+                    new StandardStreamsWriter.BufferedStandardOutputStream(Channels.newChannel(outBytes),
+                            StandardCharsets.ISO_8859_1);
+
+            out.write("café\n", FlushPolicy.ALWAYS, false);
+
+            assertArrayEquals("café\n".getBytes(StandardCharsets.ISO_8859_1), outBytes.toByteArray());
+        }
+
+        @Test
+        void platformDefaultIfNoConsoleEncoding() {
+            assertEquals(Charset.defaultCharset(),
+                    StandardStreamsWriter.BufferedStandardOutputStream.consoleCharset("elf4j.test.no.such.encoding"));
+        }
+    }
+}
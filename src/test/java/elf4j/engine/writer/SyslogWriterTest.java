@@ -0,0 +1,223 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import elf4j.Level;
+import elf4j.engine.NativeLogger;
+import elf4j.engine.service.LogEntry;
+import elf4j.engine.service.LogService;
+import elf4j.engine.writer.pattern.PatternSegmentGroup;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class SyslogWriterTest {
+    static final String HEADER = "\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\.\\d{6}Z host app \\d+ - - \uFEFF";
+    @Mock LogService stubLogService;
+
+    static String readFrame(DataInputStream in) throws IOException {
+        StringBuilder length = new StringBuilder();
+        int c;
+        while ((c = in.read()) != ' ') {
+            length.append((char) c);
+        }
+        byte[] bytes = new byte[Integer.parseInt(length.toString())];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    LogEntry logEntry(Level level, String message) {
+        return LogEntry.builder()
+                .nativeLogger(new NativeLogger(this.getClass().getName(), level, stubLogService))
+                .message(message)
+                .build();
+    }
+
+    SyslogWriter syslogWriter(SyslogWriter.Protocol protocol, int port, int maxMessageSize) {
+        return new SyslogWriter(protocol,
+                "localhost",
+                port,
+                Level.TRACE,
+                PatternSegmentGroup.from("{message}"),
+                16,
+                "host",
+                "app",
+                maxMessageSize);
+    }
+
+    @Nested
+    class from {
+        @Test
+        void facilityByName() {
+            Map<String, String> configuration = new HashMap<>();
+            configuration.put("facility", "local7");
+            configuration.put("protocol", "udp");
+
+            assertNotNull(SyslogWriter.from(configuration));
+        }
+
+        @Test
+        void errorOnUnknownFacility() {
+            assertThrows(NumberFormatException.class,
+                    () -> SyslogWriter.from(Collections.singletonMap("facility", "nope")));
+        }
+    }
+
+    @Nested
+    class severity {
+        @Test
+        void mapLevels() {
+            assertEquals(7, SyslogWriter.severity(Level.TRACE));
+            assertEquals(7, SyslogWriter.severity(Level.DEBUG));
+            assertEquals(6, SyslogWriter.severity(Level.INFO));
+            assertEquals(4, SyslogWriter.severity(Level.WARN));
+            assertEquals(3, SyslogWriter.severity(Level.ERROR));
+        }
+    }
+
+    @Nested
+    class encode {
+        @Test
+        void timestampOfOwnSecondOnConcurrentCallers() throws InterruptedException {
+            SyslogWriter syslogWriter = syslogWriter(SyslogWriter.Protocol.UDP, 514, 2048);
+            Instant[] timestamps = { Instant.parse("2023-01-01T00:00:00.123456Z"),
+                    Instant.parse("2023-01-01T00:00:01.654321Z") };
+            AtomicReference<String> mismatch = new AtomicReference<>();
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                threads.add(new Thread(() -> {
+                    ByteArena byteArena = new ByteArena();
+                    for (int i = 0; i < 10_000 && mismatch.get() == null; i++) {
+                        Instant timestamp = timestamps[i % 2];
+                        EncodedEntry encodedEntry = syslogWriter.encode(LogEntry.builder()
+                                .nativeLogger(new NativeLogger("owner", Level.INFO, stubLogService))
+                                .message("message")
+                                .timestamp(timestamp)
+                                .build(), byteArena);
+                        String encoded = new String(Objects.requireNonNull(encodedEntry).getBytes(),
+                                encodedEntry.getOffset(),
+                                encodedEntry.getLength(),
+                                StandardCharsets.UTF_8);
+                        if (!encoded.contains(" " + timestamp.toString() + " ")) {
+                            mismatch.set(encoded);
+                        }
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertNull(mismatch.get());
+        }
+    }
+
+    @Nested
+    class write {
+        @Test
+        void oneDatagramPerEntryOverUdp() throws IOException {
+            try (DatagramSocket server = new DatagramSocket(0, InetAddress.getByName("localhost"))) {
+                server.setSoTimeout(10_000);
+                SyslogWriter syslogWriter = syslogWriter(SyslogWriter.Protocol.UDP, server.getLocalPort(), 2048);
+
+                syslogWriter.write(logEntry(Level.INFO, "héllo"));
+                syslogWriter.write(logEntry(Level.WARN, "warned"));
+                syslogWriter.close();
+
+                List<String> received = new ArrayList<>();
+                for (int i = 0; i < 2; i++) {
+                    DatagramPacket packet = new DatagramPacket(new byte[4096], 4096);
+                    server.receive(packet);
+                    received.add(new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8));
+                }
+                assertTrue(received.get(0).matches("<134>1 " + HEADER + "héllo"), received.get(0));
+                assertTrue(received.get(1).matches("<132>1 " + HEADER + "warned"), received.get(1));
+            }
+        }
+
+        @Test
+        void truncateToMaxMessageSize() throws IOException {
+            try (DatagramSocket server = new DatagramSocket(0, InetAddress.getByName("localhost"))) {
+                server.setSoTimeout(10_000);
+                SyslogWriter syslogWriter = syslogWriter(SyslogWriter.Protocol.UDP, server.getLocalPort(), 480);
+
+                syslogWriter.write(logEntry(Level.ERROR, new String(new char[1000]).replace('\0', 'é')));
+                syslogWriter.close();
+
+                DatagramPacket packet = new DatagramPacket(new byte[4096], 4096);
+                server.receive(packet);
+                String received = new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8);
+                assertTrue(packet.getLength() <= 480, received);
+                assertTrue(received.matches("<131>1 " + HEADER + "é+"), received);
+            }
+        }
+
+        @Test
+        void octetCountingFramesOverTcp() throws IOException {
+            try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getByName("localhost"))) {
+                server.setSoTimeout(10_000);
+                SyslogWriter syslogWriter = syslogWriter(SyslogWriter.Protocol.TCP, server.getLocalPort(), 2048);
+
+                for (int i = 0; i < 50; i++) {
+                    syslogWriter.write(logEntry(Level.DEBUG, "entry " + i));
+                }
+                syslogWriter.flush();
+
+                try (Socket socket = server.accept();
+                        DataInputStream in = new DataInputStream(socket.getInputStream())) {
+                    for (int i = 0; i < 50; i++) {
+                        String frame = readFrame(in);
+                        assertTrue(frame.matches("<135>1 " + HEADER + "entry " + i), frame);
+                    }
+                }
+                syslogWriter.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextEncoderTest {
+    static byte[] encode(TextEncoder textEncoder, CharSequence text, int bufferSize) {
+        ByteArrayOutputStream drained = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+        Runnable drain = () -> {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                drained.write(buffer.get());
+            }
+            buffer.clear();
+        };
+        textEncoder.encode(text, buffer, drain);
+        drain.run();
+        return drained.toByteArray();
+    }
+
+    @Nested
+    class encode {
+        TextEncoder textEncoder = new TextEncoder();
+
+        @Test
+        void asciiAcrossDrains() {
+            String text = "2023-01-01 INFO elf4j.engine.Test - ascii only message\n";
+
+            assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), encode(textEncoder, text, 7));
+        }
+
+        @Test
+        void nonAsciiAcrossDrains() {
+            String text = "ascii prefix, then non-ascii: héllo 世界 😀 end\n";
+
+            assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), encode(textEncoder, text, 5));
+        }
+
+        @Test
+        void reusedAcrossTexts() {
+            String longer = "é" + new String(new char[1000]).replace('\0', 'x');
+            String shorter = "über";
+
+            assertArrayEquals(longer.getBytes(StandardCharsets.UTF_8), encode(textEncoder, longer, 64));
+            assertArrayEquals(shorter.getBytes(StandardCharsets.UTF_8), encode(textEncoder, shorter, 64));
+        }
+
+        @Test
+        void replaceLoneSurrogate() {
+            String text = "bad \ud83d surrogate";
+
+            assertEquals("bad ? surrogate", new String(encode(textEncoder, text, 64), StandardCharsets.UTF_8));
+        }
+    
+        @Test
+        void inOtherCharset() {
+            String text = "ascii, café\n";
+
+            assertArrayEquals(text.getBytes(StandardCharsets.ISO_8859_1),
+                    encode(new TextEncoder(StandardCharsets.ISO_8859_1), text, 5));
+            assertArrayEquals(text.getBytes(StandardCharsets.UTF_16BE),
+                    encode(new TextEncoder(StandardCharsets.UTF_16BE), text, 6));
+        }
+    }
+
+    @Nested
+    class isAsciiCompatible {
+        @Test
+        void singleByteAndUtf8() {
+            assertTrue(TextEncoder.isAsciiCompatible(StandardCharsets.UTF_8));
+            assertTrue(TextEncoder.isAsciiCompatible(Charset.forName("windows-1252")));
+        }
+
+        @Test
+        void multiByteAscii() {
+            assertFalse(TextEncoder.isAsciiCompatible(StandardCharsets.UTF_16));
+            assertFalse(TextEncoder.isAsciiCompatible(StandardCharsets.UTF_16LE));
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer;
+
+import elf4j.engine.service.WriterThread;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.timeout;
+
+@ExtendWith(MockitoExtension.class)
+class WriterTypeTest {
+    @Mock LogWriter stubLogWriter;
+    @Mock WriterThread stubWriterThread;
+
+    @Nested
+    class configureAsync {
+        @Test
+        void asyncByDefault() {
+            LogWriter configured = WriterType.configureAsync(stubLogWriter,
+                    Collections.emptyMap(),
+                    new Properties(),
+                    asyncProperties -> stubWriterThread);
+
+            assertTrue(configured instanceof AsyncWriter);
+        }
+
+        @Test
+        void globalSynchronous() {
+            Properties properties = new Properties();
+            properties.setProperty("async", "false");
+
+            LogWriter configured = WriterType.configureAsync(stubLogWriter,
+                    Collections.emptyMap(),
+                    properties,
+                    asyncProperties -> stubWriterThread);
+
+            assertSame(stubLogWriter, configured);
+        }
+
+        @Test
+        void writerSettingTakesPrecedence() {
+            Properties properties = new Properties();
+            properties.setProperty("async", "false");
+
+            LogWriter configured = WriterType.configureAsync(stubLogWriter,
+                    Collections.singletonMap("async", "true"),
+                    properties,
+                    asyncProperties -> stubWriterThread);
+
+            assertTrue(configured instanceof AsyncWriter);
+            assertSame(stubLogWriter,
+                    WriterType.configureAsync(stubLogWriter,
+                            Collections.singletonMap("async", "false"),
+                            new Properties(),
+                            asyncProperties -> stubWriterThread));
+        }
+
+        @Test
+        void synchronousIntervalFlushedOnTimer() {
+            Map<String, String> writerConfiguration = new HashMap<>();
+            writerConfiguration.put("async", "false");
+            writerConfiguration.put("flush", "interval");
+            writerConfiguration.put("flush.interval", "10");
+
+            LogWriter configured = WriterType.configureAsync(stubLogWriter,
+                    writerConfiguration,
+                    new Properties(),
+                    asyncProperties -> stubWriterThread);
+
+            try {
+                assertTrue(configured instanceof IntervalFlushingWriter);
+                then(stubLogWriter).should(timeout(1000).atLeast(2)).flush();
+            } finally {
+                configured.close();
+            }
+            then(stubLogWriter).should().close();
+        }
+    }
+
+    @Nested
+    class configureRender {
+        @Test
+        void unsupportedWriterRendersOnWriterThread() {
+            Properties properties = new Properties();
+            properties.setProperty("async.render", "caller");
+
+            assertTrue(WriterType.configureAsync(stubLogWriter,
+                    Collections.emptyMap(),
+                    properties,
+                    asyncProperties -> stubWriterThread) instanceof AsyncWriter);
+        }
+
+        @Test
+        void errorOnUnknownSetting() {
+            assertThrows(IllegalArgumentException.class,
+                    () -> WriterType.configureAsync(stubLogWriter,
+                            Collections.singletonMap("async.render", "elsewhere"),
+                            new Properties(),
+                            asyncProperties -> stubWriterThread));
+        }
+    }
+
+    @Nested
+    class configureThreads {
+        @Test
+        void encodingWriterPoolHandsOffToSingleSink() {
+            Properties properties = new Properties();
+            properties.setProperty("async.threads", "4");
+            List<String> threads = new ArrayList<>();
+
+            assertTrue(WriterType.configureAsync(StandardStreamsWriter.defaultWriter(),
+                    Collections.emptyMap(),
+                    properties,
+                    asyncProperties -> {
+                        threads.add(asyncProperties.getProperty("async.threads"));
+                        return stubWriterThread;
+                    }) instanceof AsyncWriter);
+            assertEquals(Arrays.asList("1", "4"), threads);
+        }
+
+        @Test
+        void callerRenderingUsesSingleThread() {
+            Properties properties = new Properties();
+            properties.setProperty("async.threads", "4");
+            properties.setProperty("async.render", "caller");
+            List<String> threads = new ArrayList<>();
+
+            WriterType.configureAsync(StandardStreamsWriter.defaultWriter(),
+                    Collections.emptyMap(),
+                    properties,
+                    asyncProperties -> {
+                        threads.add(asyncProperties.getProperty("async.threads"));
+                        return stubWriterThread;
+                    });
+
+            assertEquals(Collections.singletonList("1"), threads);
+        }
+
+        @Test
+        void otherWriterUsesSingleThread() {
+            Properties properties = new Properties();
+            properties.setProperty("async.threads", "4");
+            List<String> threads = new ArrayList<>();
+
+            WriterType.configureAsync(stubLogWriter, Collections.emptyMap(), properties, asyncProperties -> {
+                threads.add(asyncProperties.getProperty("async.threads"));
+                return stubWriterThread;
+            });
+
+            assertEquals(Collections.singletonList("1"), threads);
+        }
+    }
+
+    @Nested
+    class parseAllWriters {
+        @Test
+        void oneWriterThreadPerAsyncWriter() {
+            Properties properties = new Properties();
+            properties.setProperty("async.capacity", "64");
+            properties.setProperty("writer1", "standard");
+            properties.setProperty("writer2", "standard");
+            properties.setProperty("writer2.async.capacity", "128");
+            properties.setProperty("writer3", "standard");
+            properties.setProperty("writer3.async", "false");
+            List<String> capacities = new ArrayList<>();
+
+            assertEquals(3, WriterType.parseAllWriters(properties, asyncProperties -> {
+                capacities.add(asyncProperties.getProperty("async.capacity"));
+                return stubWriterThread;
+            }).size());
+            Collections.sort(capacities);
+            assertEquals(Arrays.asList("128", "64"), capacities);
+        }
+    }
+}
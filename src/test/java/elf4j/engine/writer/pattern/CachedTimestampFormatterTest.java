@@ -0,0 +1,130 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer.pattern;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachedTimestampFormatterTest {
+    static final List<ZoneId> ZONES =
+            Arrays.asList(ZoneOffset.UTC, ZoneId.of("Asia/Kolkata"), ZoneId.of("America/New_York"));
+
+    /**
+     * @return instants in runs within the same second, across seconds, and at a DST change, with sub-second parts
+     *         including zero and trailing zeros
+     */
+    static List<Instant> instants() {
+        List<Instant> instants = new ArrayList<>();
+        Random random = new Random(42);
+        long[] seconds =
+                { 0, 1_700_000_000L, Instant.parse("2023-03-12T06:59:59Z").getEpochSecond(), 253_402_300_799L };
+        int[] nanos = { 0, 1, 100_000_000, 120_000_000, 123_000_000, 123_456_000, 123_456_789, 999_999_999 };
+        for (long second : seconds) {
+            for (int i = 0; i < 3; i++) {
+                for (int nano : nanos) {
+                    instants.add(Instant.ofEpochSecond(second + i, nano));
+                }
+                instants.add(Instant.ofEpochSecond(second + i, random.nextInt(1_000_000_000)));
+            }
+        }
+        return instants;
+    }
+
+    @Nested
+    class formatTo {
+        @Test
+        void sameAsDateTimeFormatterForPatterns() {
+            for (String pattern : Arrays.asList("yyyy-MM-dd'T'HH:mm:ss.SSSZZZZZ",
+                    "HH:mm:ss.S",
+                    "ss.SSSSSSSSS VV",
+                    "yyyy MMM dd EEEE HH:mm:ss",
+                    "'S' HH:mm:ss,SS 'n''SS'",
+                    "ss.SSS.SSS",
+                    "A n N",
+                    "[yyyy-MM-dd] HH:mm:ss.SSSSSS xxx")) {
+                for (ZoneId zone : ZONES) {
+                    CachedTimestampFormatter cachedTimestampFormatter =
+                            CachedTimestampFormatter.ofPattern(pattern, zone);
+                    DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern(pattern).withZone(zone);
+                    for (Instant instant : instants()) {
+                        StringBuilder formatted = new StringBuilder();
+
+                        cachedTimestampFormatter.formatTo(instant, formatted);
+
+                        assertEquals(dateTimeFormatter.format(instant), formatted.toString(), pattern);
+                    }
+                }
+            }
+        }
+
+        @Test
+        void sameAsDateTimeFormatterForIsoOffsetDateTime() {
+            for (ZoneId zone : ZONES) {
+                CachedTimestampFormatter cachedTimestampFormatter = CachedTimestampFormatter.isoOffsetDateTime(zone);
+                DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ISO_OFFSET_DATE_TIME.withZone(zone);
+                for (Instant instant : instants()) {
+                    StringBuilder formatted = new StringBuilder();
+
+                    cachedTimestampFormatter.formatTo(instant, formatted);
+
+                    assertEquals(dateTimeFormatter.format(instant), formatted.toString());
+                }
+            }
+        }
+    
+        @Test
+        void sameForEpochMilliAsForInstant() {
+            List<Instant> instants = instants();
+            instants.add(Instant.ofEpochSecond(-2, 500_000_001));
+            instants.add(Instant.ofEpochMilli(-1));
+            for (CachedTimestampFormatter cachedTimestampFormatter : Arrays.asList(CachedTimestampFormatter.ofPattern(
+                            "yyyy-MM-dd'T'HH:mm:ss.SSSSSSSSS", ZoneOffset.UTC),
+                    CachedTimestampFormatter.ofPattern("A n N", ZoneOffset.UTC),
+                    CachedTimestampFormatter.isoOffsetDateTime(ZoneId.of("Asia/Kolkata")))) {
+                for (Instant instant : instants) {
+                    StringBuilder expected = new StringBuilder();
+                    StringBuilder formatted = new StringBuilder();
+
+                    cachedTimestampFormatter.formatTo(instant, expected);
+                    cachedTimestampFormatter.formatTo(instant.toEpochMilli(), instant.getNano() % 1_000_000, formatted);
+
+                    assertEquals(expected.toString(), formatted.toString());
+                }
+            }
+        }
+    }
+}
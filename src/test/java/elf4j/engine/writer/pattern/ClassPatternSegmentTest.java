@@ -0,0 +1,120 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer.pattern;
+
+import elf4j.engine.service.LogEntry;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ClassPatternSegmentTest {
+    static final String FULL_NAME = "org.example.service.impl.OrderService";
+
+    static String render(ClassPatternSegment classPatternSegment, String className) {
+        LogEntry logEntry = mock(LogEntry.class);
+        when(logEntry.getCallerClassName()).thenReturn(className);
+        StringBuilder target = new StringBuilder();
+        classPatternSegment.render(logEntry, target);
+        return target.toString();
+    }
+
+    @Nested
+    class from {
+        @Test
+        void defaultsToFullName() {
+            assertEquals(FULL_NAME, render(ClassPatternSegment.from("class"), FULL_NAME));
+        }
+
+        @Test
+        void numericOptionAbbreviates() {
+            ClassPatternSegment classPatternSegment = ClassPatternSegment.from("class:20");
+
+            assertEquals(ClassPatternSegment.DisplayOption.ABBREVIATED, classPatternSegment.getClassDisplayOption());
+            assertEquals(20, classPatternSegment.getTargetLength());
+        }
+
+        @Test
+        void abbreviatedRequiresTargetLength() {
+            assertThrows(IllegalArgumentException.class, () -> ClassPatternSegment.from("class:abbreviated"));
+        }
+
+        @Test
+        void errorOnPatternIntendedForAnotherLogPatternType() {
+            assertThrows(IllegalArgumentException.class, () -> ClassPatternSegment.from("thread:name"));
+        }
+    }
+
+    @Nested
+    class render {
+        @Test
+        void simple() {
+            assertEquals("OrderService", render(ClassPatternSegment.from("class:simple"), FULL_NAME));
+        }
+
+        @Test
+        void compressed() {
+            assertEquals("o.e.s.i.OrderService", render(ClassPatternSegment.from("class:compressed"), FULL_NAME));
+        }
+
+        @Test
+        void abbreviatedFromLeftUntilFit() {
+            assertEquals(FULL_NAME, render(ClassPatternSegment.from("class:40"), FULL_NAME));
+            assertEquals("o.example.service.impl.OrderService",
+                    render(ClassPatternSegment.from("class:36"), FULL_NAME));
+            assertEquals("o.e.s.impl.OrderService", render(ClassPatternSegment.from("class:25"), FULL_NAME));
+            assertEquals("o.e.s.i.OrderService", render(ClassPatternSegment.from("class:0"), FULL_NAME));
+        }
+
+        @Test
+        void classInDefaultPackage() {
+            assertEquals("OrderService", render(ClassPatternSegment.from("class:compressed"), "OrderService"));
+            assertEquals("OrderService", render(ClassPatternSegment.from("class:5"), "OrderService"));
+        }
+
+        @Test
+        void sameResultOnceCached() {
+            ClassPatternSegment classPatternSegment = ClassPatternSegment.from("class:compressed");
+
+            assertEquals(render(classPatternSegment, FULL_NAME), render(classPatternSegment, FULL_NAME));
+            assertEquals(1, classPatternSegment.cachedNames());
+        }
+
+        @Test
+        void cacheIsBounded() {
+            ClassPatternSegment classPatternSegment = ClassPatternSegment.from("class:simple");
+
+            for (int i = 0; i < ClassPatternSegment.MAX_CACHED_NAMES + 10; i++) {
+                assertEquals("Type" + i, render(classPatternSegment, "org.example.Type" + i));
+            }
+
+            assertEquals(ClassPatternSegment.MAX_CACHED_NAMES, classPatternSegment.cachedNames());
+        }
+    }
+}
@@ -25,6 +25,8 @@
 
 package elf4j.engine.writer.pattern;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import elf4j.Level;
 import elf4j.engine.NativeLogger;
 import elf4j.engine.service.LogEntry;
@@ -36,6 +38,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -98,6 +101,15 @@ class JsonPatternSegmentTest {
             assertTrue(jsonPatternSegment.includeCallerThread());
             assertTrue(jsonPatternSegment.includeCallerDetail());
         }
+
+        @Test
+        void stackTraceRenderingOptions() {
+            JsonPatternSegment jsonPatternSegment = JsonPatternSegment.from("json:caller-thread,max-depth=1,compact");
+
+            assertTrue(jsonPatternSegment.includeCallerThread());
+            assertTrue(jsonPatternSegment.getStackTraceRenderer().isCompact());
+            assertEquals(1, jsonPatternSegment.getStackTraceRenderer().getMaxDepth());
+        }
     }
 
     @Nested
@@ -114,5 +126,70 @@ class JsonPatternSegmentTest {
             assertFalse(rendered.contains("testLogMessage {}"));
             assertTrue(rendered.contains(mockLogEntry.getResolvedMessage()));
         }
+
+        @Test
+        void defaultMembers() {
+            StringBuilder layout = new StringBuilder();
+
+            jsonPatternSegment.render(mockLogEntry, layout);
+            JsonObject rendered = JsonParser.parseString(layout.toString()).getAsJsonObject();
+
+            assertEquals("ERROR", rendered.get("level").getAsString());
+            assertEquals(mockLogEntry.getCallerClassName(), rendered.get("callerClass").getAsString());
+            assertEquals(mockLogEntry.getResolvedMessage().toString(), rendered.get("message").getAsString());
+            assertTrue(rendered.get("exception").getAsString().startsWith("java.lang.Exception: testExceptionMessage"));
+            assertFalse(rendered.has("callerThread"));
+            assertFalse(rendered.has("callerDetail"));
+            assertFalse(layout.toString().contains("\n"));
+        }
+
+        @Test
+        void callerThreadAndDetail() {
+            StringBuilder layout = new StringBuilder();
+
+            JsonPatternSegment.from("json:caller-thread,caller-detail").render(mockLogEntry, layout);
+            JsonObject rendered = JsonParser.parseString(layout.toString()).getAsJsonObject();
+
+            JsonObject callerThread = rendered.getAsJsonObject("callerThread");
+            assertEquals(Thread.currentThread().getName(), callerThread.get("name").getAsString());
+            assertEquals(Thread.currentThread().getId(), callerThread.get("id").getAsLong());
+            JsonObject callerDetail = rendered.getAsJsonObject("callerDetail");
+            assertEquals(JsonPatternSegment.class.getName(), callerDetail.get("className").getAsString());
+            assertEquals("testMethod", callerDetail.get("methodName").getAsString());
+            assertEquals(42, callerDetail.get("lineNumber").getAsInt());
+            assertEquals("testFileName", callerDetail.get("fileName").getAsString());
+            assertFalse(rendered.has("callerClass"));
+        }
+
+        @Test
+        void prettyPrintSameMembers() {
+            StringBuilder compact = new StringBuilder();
+            StringBuilder pretty = new StringBuilder();
+
+            JsonPatternSegment.from("json:caller-thread,caller-detail").render(mockLogEntry, compact);
+            JsonPatternSegment.from("json:caller-thread,caller-detail,pretty").render(mockLogEntry, pretty);
+
+            assertEquals(JsonParser.parseString(compact.toString()), JsonParser.parseString(pretty.toString()));
+            assertTrue(pretty.toString().startsWith("{\n  \"timestamp\": \""));
+            assertTrue(pretty.toString().contains("\n    \"name\": \""));
+            assertTrue(pretty.toString().endsWith("\"\n}"));
+        }
+
+        @Test
+        void escapeMessage() {
+            String message = "quote\" backslash\\ newline\n tab\t control\u0001 unicode\u00e9\u2028";
+            LogEntry logEntry = LogEntry.builder()
+                    .nativeLogger(new NativeLogger("testLoggerName", Level.INFO, stubLogService))
+                    .message(message)
+                    .build();
+            StringBuilder layout = new StringBuilder();
+
+            jsonPatternSegment.render(logEntry, layout);
+
+            assertTrue(layout.toString()
+                    .contains("quote\\\" backslash\\\\ newline\\n tab\\t control\\u0001 unicode\u00e9\\u2028"));
+            assertEquals(message,
+                    JsonParser.parseString(layout.toString()).getAsJsonObject().get("message").getAsString());
+        }
     }
 }
\ No newline at end of file
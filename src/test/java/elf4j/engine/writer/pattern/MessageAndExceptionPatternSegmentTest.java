@@ -36,6 +36,9 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -74,6 +77,32 @@ class MessageAndExceptionPatternSegmentTest {
             assertThrows(IllegalArgumentException.class,
                     () -> MessageAndExceptionPatternSegment.from("badPatternText"));
         }
+
+        @Test
+        void ownDefaultStackTraceRenderer() {
+            StackTraceRenderer stackTraceRenderer =
+                    MessageAndExceptionPatternSegment.from("message").getStackTraceRenderer();
+
+            assertFalse(stackTraceRenderer.isCompact());
+            assertEquals(0, stackTraceRenderer.getMaxDepth());
+            assertNotSame(stackTraceRenderer,
+                    MessageAndExceptionPatternSegment.from("message").getStackTraceRenderer());
+        }
+
+        @Test
+        void stackTraceRenderingOptions() {
+            StackTraceRenderer stackTraceRenderer =
+                    MessageAndExceptionPatternSegment.from("message:compact, max-depth=3").getStackTraceRenderer();
+
+            assertTrue(stackTraceRenderer.isCompact());
+            assertEquals(3, stackTraceRenderer.getMaxDepth());
+        }
+
+        @Test
+        void errorOnInvalidOption() {
+            assertThrows(IllegalArgumentException.class,
+                    () -> MessageAndExceptionPatternSegment.from("message:pretty"));
+        }
     }
 
     @Nested
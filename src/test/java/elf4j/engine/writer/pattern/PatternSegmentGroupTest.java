@@ -25,7 +25,10 @@
 
 package elf4j.engine.writer.pattern;
 
+import elf4j.Level;
+import elf4j.engine.NativeLogger;
 import elf4j.engine.service.LogEntry;
+import elf4j.engine.service.LogService;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -35,6 +38,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Arrays;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.BDDMockito.then;
 import static org.mockito.Mockito.inOrder;
 
@@ -48,6 +52,13 @@ class PatternSegmentGroupTest {
 
         PatternSegmentGroup patternSegmentGroupEntry;
 
+        @Test
+        void fallBackToEachPatternIfUnknownToFusedRenderer() {
+            patternSegmentGroupEntry = new PatternSegmentGroup(Arrays.asList(mockPattern2, mockPattern));
+
+            assertNull(patternSegmentGroupEntry.getFusedRenderer());
+        }
+
         @Test
         void dispatchAll() {
             patternSegmentGroupEntry = new PatternSegmentGroup(Arrays.asList(mockPattern2, mockPattern));
@@ -60,4 +71,51 @@ class PatternSegmentGroupTest {
             then(mockPattern).should(inOrder).render(stubLogEntry, stringBuilder);
         }
     }
-}
\ No newline at end of file
+
+    @Nested
+    class fusedRenderer {
+        @Mock LogService stubLogService;
+
+        @Test
+        void renderSameAsEachPatternInTurn() {
+            PatternSegmentGroup patternSegmentGroup = PatternSegmentGroup.from(
+                    "{timestamp:yyyy-MM-dd'T'HH:mm:ss.SSSZZZZZ} [{level}] {thread} {class:simple} {method}: {message} "
+                            + "{json:caller-thread,caller-detail}");
+            LogEntry logEntry = LogEntry.builder()
+                    .nativeLogger(new NativeLogger(this.getClass().getName(), Level.WARN, stubLogService))
+                    .message("fused {}")
+                    .arguments(new Object[] { 1 })
+                    .exception(new IllegalStateException("failed"))
+                    .callerThread(LogEntry.ThreadInformation.builder().name("main").id(1).build())
+                    .callerFrame(LogEntry.StackTraceFrame.builder()
+                            .className(this.getClass().getName())
+                            .methodName("renderSameAsEachPatternInTurn")
+                            .lineNumber(1)
+                            .build())
+                    .build();
+            StringBuilder fused = new StringBuilder();
+            StringBuilder interpreted = new StringBuilder();
+
+            patternSegmentGroup.render(logEntry, fused);
+            for (LogPattern logPattern : patternSegmentGroup.getLogPatternEntries()) {
+                logPattern.render(logEntry, interpreted);
+            }
+
+            assertNotNull(patternSegmentGroup.getFusedRenderer());
+            assertEquals(interpreted.toString(), fused.toString());
+        }
+
+        @Test
+        void mergeAdjacentVerbatimSegments() {
+            PatternSegmentGroup patternSegmentGroup = new PatternSegmentGroup(Arrays.asList(
+                    new VerbatimPatternSegment("a"),
+                    new VerbatimPatternSegment("b"),
+                    LevelPatternSegment.from("level"),
+                    new VerbatimPatternSegment("c")));
+            FusedPatternRenderer fusedRenderer = patternSegmentGroup.getFusedRenderer();
+
+            assertNotNull(fusedRenderer);
+            assertEquals(3, fusedRenderer.size());
+        }
+    }
+}
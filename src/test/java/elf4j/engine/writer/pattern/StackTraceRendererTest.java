@@ -0,0 +1,239 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2023 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+
+package elf4j.engine.writer.pattern;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StackTraceRendererTest {
+    static final String LINE_SEPARATOR = System.lineSeparator();
+
+    static String printed(Throwable throwable) {
+        StringWriter stringWriter = new StringWriter();
+        throwable.printStackTrace(new PrintWriter(stringWriter));
+        return stringWriter.toString();
+    }
+
+    static Exception sameSite(String message) {
+        return new IllegalStateException(message, new IllegalArgumentException("cause"));
+    }
+
+    static Exception[] sameSite(String... messages) {
+        Exception[] exceptions = new Exception[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            exceptions[i] = sameSite(messages[i]);
+        }
+        return exceptions;
+    }
+
+    @Nested
+    class from {
+        @Test
+        void noOptionsNewDefault() {
+            StackTraceRenderer stackTraceRenderer = StackTraceRenderer.from(Collections.emptyList());
+
+            assertFalse(stackTraceRenderer.isCompact());
+            assertEquals(0, stackTraceRenderer.getMaxDepth());
+            assertTrue(stackTraceRenderer.getExcludedPackages().isEmpty());
+            assertNotSame(stackTraceRenderer, StackTraceRenderer.from(Collections.emptyList()));
+        }
+
+        @Test
+        void allOptions() {
+            StackTraceRenderer stackTraceRenderer = StackTraceRenderer.from(
+                    Arrays.asList("compact", "max-depth=5", "exclude=org.junit", "exclude=sun."));
+
+            assertTrue(stackTraceRenderer.isCompact());
+            assertEquals(5, stackTraceRenderer.getMaxDepth());
+            assertEquals(Arrays.asList("org.junit.", "sun."), stackTraceRenderer.getExcludedPackages());
+        }
+
+        @Test
+        void errorOnUnknownOption() {
+            assertThrows(IllegalArgumentException.class,
+                    () -> StackTraceRenderer.from(Collections.singletonList("pretty")));
+        }
+    }
+
+    @Nested
+    class render {
+        @Test
+        void sameAsPrintStackTraceByDefault() {
+            Exception exception = sameSite("message");
+            exception.addSuppressed(new RuntimeException("suppressed"));
+
+            assertEquals(printed(exception),
+                    StackTraceRenderer.from(Collections.emptyList()).render(exception).toString());
+        }
+
+        @Test
+        void sameAsPrintStackTraceWithNoFrameFiltered() {
+            Exception exception = sameSite("message");
+            exception.addSuppressed(new RuntimeException("suppressed"));
+            StackTraceRenderer stackTraceRenderer =
+                    new StackTraceRenderer(0, Collections.singletonList("no.such.package."), false);
+
+            assertEquals(printed(exception), stackTraceRenderer.render(exception).toString());
+        }
+
+        @Test
+        void memoizedPerFingerprint() {
+            StackTraceRenderer stackTraceRenderer = new StackTraceRenderer(0, Collections.emptyList(), false);
+            Exception[] exceptions = sameSite("message", "message", "other message");
+
+            CharSequence first = stackTraceRenderer.render(exceptions[0]);
+
+            assertSame(first, stackTraceRenderer.render(exceptions[1]));
+            assertNotEquals(first.toString(), stackTraceRenderer.render(exceptions[2]).toString());
+        }
+
+        @Test
+        void maxDepth() {
+            Exception exception = sameSite("message");
+            int frames = exception.getStackTrace().length;
+
+            String rendered = new StackTraceRenderer(2, Collections.emptyList(), false).render(exception).toString();
+
+            String[] lines = rendered.split(LINE_SEPARATOR);
+            assertEquals(exception.toString(), lines[0]);
+            assertTrue(lines[1].startsWith("\tat "));
+            assertTrue(lines[2].startsWith("\tat "));
+            assertEquals("\t... " + (frames - 2) + " more", lines[3]);
+            assertEquals("Caused by: " + exception.getCause(), lines[4]);
+        }
+
+        @Test
+        void excludePackages() {
+            Exception exception = sameSite("message");
+
+            StackTraceRenderer stackTraceRenderer =
+                    new StackTraceRenderer(0, Collections.singletonList("org.junit."), false);
+
+            String rendered = stackTraceRenderer.render(exception).toString();
+
+            assertFalse(rendered.contains("at org.junit."));
+            assertTrue(rendered.contains(" filtered" + LINE_SEPARATOR));
+            assertTrue(rendered.contains("at " + StackTraceRendererTest.class.getName()));
+        }
+
+        @Test
+        void compactRepeats() {
+            StackTraceRenderer stackTraceRenderer = new StackTraceRenderer(0, Collections.emptyList(), true);
+            Exception[] exceptions = sameSite("message", "message of id 2");
+            Exception exception = exceptions[0];
+
+            String first = stackTraceRenderer.render(exception).toString();
+            String second = stackTraceRenderer.render(exceptions[1]).toString();
+            String third = stackTraceRenderer.render(exception).toString();
+
+            String firstLine = first.substring(0, first.indexOf(LINE_SEPARATOR));
+            assertTrue(firstLine.matches(".+ \\[stack trace #[0-9a-f]{8}]"));
+            assertEquals(printed(exception).substring(exception.toString().length()),
+                    first.substring(firstLine.length()));
+            String tag = firstLine.substring(exception.toString().length(), firstLine.length() - 1);
+            assertEquals(exceptions[1] + tag + ", seen 2 times]" + LINE_SEPARATOR, second);
+            assertEquals(exception + tag + ", seen 3 times]" + LINE_SEPARATOR, third);
+        }
+
+        @Test
+        void circularCause() {
+            Exception first = new Exception("first");
+            Exception second = new Exception("second", first);
+            first.initCause(second);
+
+            String rendered = new StackTraceRenderer(1, Collections.emptyList(), false).render(first).toString();
+
+            assertTrue(rendered.contains("[CIRCULAR REFERENCE: " + first + "]"));
+        }
+
+        @Test
+        void framelessPrintedAsIs() {
+            Exception frameless = new Exception("frameless", null, false, false) {
+            };
+
+            String rendered = new StackTraceRenderer(1, Collections.emptyList(), true).render(frameless).toString();
+
+            assertEquals(printed(frameless), rendered);
+        }
+
+        @Test
+        void cacheIsBounded() {
+            StackTraceRenderer stackTraceRenderer = new StackTraceRenderer(0, Collections.emptyList(), false);
+            int distinct = StackTraceRenderer.MAX_CACHED_TRACES + 1;
+            String[] messages = new String[distinct];
+            for (int i = 0; i < distinct; i++) {
+                messages[i] = "message " + i;
+            }
+            Exception[] exceptions = sameSite(messages);
+
+            for (int i = 0; i < distinct; i++) {
+                assertTrue(stackTraceRenderer.render(exceptions[i]).toString().contains(messages[i]));
+            }
+
+            assertEquals(StackTraceRenderer.MAX_CACHED_TRACES, stackTraceRenderer.cachedTraces());
+            Exception latest = exceptions[distinct - 1];
+            assertSame(stackTraceRenderer.render(latest), stackTraceRenderer.render(latest));
+        }
+    
+        @Test
+        void hotTracesSurviveBurstOfOthers() {
+            StackTraceRenderer stackTraceRenderer = new StackTraceRenderer(0, Collections.emptyList(), false);
+            int hot = StackTraceRenderer.MAX_CACHED_TRACES / 2;
+            int distinct = 2 * StackTraceRenderer.MAX_CACHED_TRACES;
+            String[] messages = new String[hot + distinct];
+            for (int i = 0; i < messages.length; i++) {
+                messages[i] = "message " + i;
+            }
+            Exception[] exceptions = sameSite(messages);
+            CharSequence[] hotTraces = new CharSequence[hot];
+            for (int i = 0; i < hot; i++) {
+                hotTraces[i] = stackTraceRenderer.render(exceptions[i]);
+            }
+
+            for (int i = hot; i < messages.length; i++) {
+                stackTraceRenderer.render(exceptions[i]);
+                for (int j = 0; j < hot; j++) {
+                    assertSame(hotTraces[j], stackTraceRenderer.render(exceptions[j]));
+                }
+            }
+
+            assertEquals(StackTraceRenderer.MAX_CACHED_TRACES, stackTraceRenderer.cachedTraces());
+        }
+    }
+}